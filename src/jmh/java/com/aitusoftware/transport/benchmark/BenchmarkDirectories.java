@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Temporary page-cache directories for benchmarks, created under the directory named by the system property
+ * <code>transport.benchmark.dir</code> (a tmpfs mount such as <code>/dev/shm</code> removes disk I/O from
+ * the results), or the default temporary directory.
+ */
+final class BenchmarkDirectories
+{
+    private static final String BENCHMARK_DIR_PROPERTY = "transport.benchmark.dir";
+
+    private BenchmarkDirectories()
+    {
+    }
+
+    static Path create()
+    {
+        try
+        {
+            return Files.createTempDirectory(Paths.get(System.getProperty(
+                    BENCHMARK_DIR_PROPERTY, System.getProperty("java.io.tmpdir"))), "transport-benchmark");
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void delete(final Path directory)
+    {
+        try (final Stream<Path> paths = Files.walk(directory))
+        {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try
+                {
+                    Files.deleteIfExists(path);
+                }
+                catch (IOException e)
+                {
+                    // ignore
+                }
+            });
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.benchmark;
+
+import com.aitusoftware.transport.messaging.proxy.CharSequenceEncoding;
+import com.aitusoftware.transport.messaging.proxy.CharSequenceFlyweight;
+import com.aitusoftware.transport.messaging.proxy.Decoder;
+import com.aitusoftware.transport.messaging.proxy.Encoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of each supported field type, in big- and little-endian buffers.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoderBenchmark
+{
+    @Param({"BIG_ENDIAN", "LITTLE_ENDIAN"})
+    private String byteOrder;
+
+    @Param({"UTF_16", "COMPACT"})
+    private CharSequenceEncoding charSequenceEncoding;
+
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocateDirect(1024);
+    private final ByteBuffer decodeBuffer = ByteBuffer.allocateDirect(1024);
+    private final StringBuilder builder = new StringBuilder();
+    private final CharSequenceFlyweight flyweight = new CharSequenceFlyweight();
+    private boolean booleanValue = true;
+    private byte byteValue = 17;
+    private short shortValue = 1_700;
+    private int intValue = 1_700_000;
+    private char charValue = 'x';
+    private float floatValue = 17.37f;
+    private long longValue = 17_000_000_000L;
+    private double doubleValue = 17.37d;
+    private CharSequence charSequenceValue = "EUR/USD-20180207";
+    private int booleanOffset;
+    private int byteOffset;
+    private int shortOffset;
+    private int intOffset;
+    private int charOffset;
+    private int floatOffset;
+    private int longOffset;
+    private int doubleOffset;
+    private int varIntOffset;
+    private int varLongOffset;
+    private int charSequenceOffset;
+
+    @Setup
+    public void setUp()
+    {
+        final ByteOrder order = "LITTLE_ENDIAN".equals(byteOrder) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        encodeBuffer.order(order);
+        decodeBuffer.order(order);
+        booleanOffset = decodeBuffer.position();
+        Encoder.encodeBoolean(decodeBuffer, booleanValue);
+        byteOffset = decodeBuffer.position();
+        Encoder.encodeByte(decodeBuffer, byteValue);
+        shortOffset = decodeBuffer.position();
+        Encoder.encodeShort(decodeBuffer, shortValue);
+        intOffset = decodeBuffer.position();
+        Encoder.encodeInt(decodeBuffer, intValue);
+        charOffset = decodeBuffer.position();
+        Encoder.encodeChar(decodeBuffer, charValue);
+        floatOffset = decodeBuffer.position();
+        Encoder.encodeFloat(decodeBuffer, floatValue);
+        longOffset = decodeBuffer.position();
+        Encoder.encodeLong(decodeBuffer, longValue);
+        doubleOffset = decodeBuffer.position();
+        Encoder.encodeDouble(decodeBuffer, doubleValue);
+        varIntOffset = decodeBuffer.position();
+        Encoder.encodeVarInt(decodeBuffer, intValue);
+        varLongOffset = decodeBuffer.position();
+        Encoder.encodeVarLong(decodeBuffer, longValue);
+        charSequenceOffset = decodeBuffer.position();
+        Encoder.encodeCharSequence(decodeBuffer, charSequenceValue, charSequenceEncoding);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeBoolean()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeBoolean(encodeBuffer, booleanValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeByte()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeByte(encodeBuffer, byteValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeShort()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeShort(encodeBuffer, shortValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeInt()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeInt(encodeBuffer, intValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeChar()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeChar(encodeBuffer, charValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeFloat()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeFloat(encodeBuffer, floatValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeLong()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeLong(encodeBuffer, longValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeDouble()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeDouble(encodeBuffer, doubleValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeVarInt()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeVarInt(encodeBuffer, intValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeVarLong()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeVarLong(encodeBuffer, longValue);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeCharSequence()
+    {
+        encodeBuffer.clear();
+        Encoder.encodeCharSequence(encodeBuffer, charSequenceValue, charSequenceEncoding);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public boolean decodeBoolean()
+    {
+        decodeBuffer.position(booleanOffset);
+        return Decoder.decodeBoolean(decodeBuffer);
+    }
+
+    @Benchmark
+    public byte decodeByte()
+    {
+        decodeBuffer.position(byteOffset);
+        return Decoder.decodeByte(decodeBuffer);
+    }
+
+    @Benchmark
+    public short decodeShort()
+    {
+        decodeBuffer.position(shortOffset);
+        return Decoder.decodeShort(decodeBuffer);
+    }
+
+    @Benchmark
+    public int decodeInt()
+    {
+        decodeBuffer.position(intOffset);
+        return Decoder.decodeInt(decodeBuffer);
+    }
+
+    @Benchmark
+    public char decodeChar()
+    {
+        decodeBuffer.position(charOffset);
+        return Decoder.decodeChar(decodeBuffer);
+    }
+
+    @Benchmark
+    public float decodeFloat()
+    {
+        decodeBuffer.position(floatOffset);
+        return Decoder.decodeFloat(decodeBuffer);
+    }
+
+    @Benchmark
+    public long decodeLong()
+    {
+        decodeBuffer.position(longOffset);
+        return Decoder.decodeLong(decodeBuffer);
+    }
+
+    @Benchmark
+    public double decodeDouble()
+    {
+        decodeBuffer.position(doubleOffset);
+        return Decoder.decodeDouble(decodeBuffer);
+    }
+
+    @Benchmark
+    public int decodeVarInt()
+    {
+        decodeBuffer.position(varIntOffset);
+        return Decoder.decodeVarInt(decodeBuffer);
+    }
+
+    @Benchmark
+    public long decodeVarLong()
+    {
+        decodeBuffer.position(varLongOffset);
+        return Decoder.decodeVarLong(decodeBuffer);
+    }
+
+    @Benchmark
+    public CharSequence decodeCharSequence()
+    {
+        decodeBuffer.position(charSequenceOffset);
+        return Decoder.decodeCharSequence(decodeBuffer, builder);
+    }
+
+    @Benchmark
+    public CharSequence decodeCharSequenceFlyweight()
+    {
+        decodeBuffer.position(charSequenceOffset);
+        return Decoder.decodeCharSequence(decodeBuffer, flyweight);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.benchmark;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.WritableRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim and commit of single records, with between one and eight contending writers.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageCacheWriteBenchmark
+{
+    private static final int PAGE_SIZE = 16 * 1024 * 1024;
+
+    @Param({"32", "256"})
+    private int recordLength;
+
+    private Path directory;
+    private PageCache pageCache;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException
+    {
+        directory = BenchmarkDirectories.create();
+        pageCache = PageCache.create(directory, PAGE_SIZE);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+        BenchmarkDirectories.delete(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void writers1()
+    {
+        write();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void writers2()
+    {
+        write();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void writers4()
+    {
+        write();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void writers8()
+    {
+        write();
+    }
+
+    private void write()
+    {
+        final WritableRecord record = pageCache.acquireRecordBuffer(recordLength);
+        record.buffer().putLong(recordLength);
+        record.commit();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.benchmark;
+
+import com.aitusoftware.transport.factory.IdlerConfig;
+import com.aitusoftware.transport.factory.LocalSubscriberMode;
+import com.aitusoftware.transport.factory.Media;
+import com.aitusoftware.transport.factory.Service;
+import com.aitusoftware.transport.factory.ServiceFactory;
+import com.aitusoftware.transport.factory.SubscriberDefinition;
+import com.aitusoftware.transport.factory.SubscriberThreading;
+import com.aitusoftware.transport.net.AddressSpace;
+import com.aitusoftware.transport.net.ServerSocketFactoryImpl;
+import com.aitusoftware.transport.threads.Idler;
+import com.aitusoftware.transport.threads.Idlers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of a message between two services, via IPC (local subscribers reading the
+ * other service's publisher page-cache) or loopback TCP.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoundTripBenchmark
+{
+    private static final CharSequence PAYLOAD = "EUR/USD-20180207";
+
+    @Param({"IPC", "TCP"})
+    private Media media;
+
+    private final PongReceiver receiver = new PongReceiver();
+    private Path clientDirectory;
+    private Path echoDirectory;
+    private Service clientService;
+    private Service echoService;
+    private Ping ping;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        clientDirectory = BenchmarkDirectories.create();
+        echoDirectory = BenchmarkDirectories.create();
+        final AddressSpace addressSpace = new LoopbackAddressSpace(freePort(), freePort());
+        final ServiceFactory clientServiceFactory = serviceFactory(clientDirectory, addressSpace);
+        final ServiceFactory echoServiceFactory = serviceFactory(echoDirectory, addressSpace);
+
+        ping = clientServiceFactory.createPublisher(Ping.class, media);
+        final Pong pong = echoServiceFactory.createPublisher(Pong.class, media);
+        final Ping echo = (pingSequence, payload) -> pong.pong(pingSequence);
+        if (media == Media.TCP)
+        {
+            echoServiceFactory.registerRemoteSubscriber(new SubscriberDefinition<>(Ping.class, echo, media));
+            clientServiceFactory.registerRemoteSubscriber(new SubscriberDefinition<>(Pong.class, receiver, media));
+        }
+        else
+        {
+            echoServiceFactory.registerLocalSubscriber(new SubscriberDefinition<>(Ping.class, echo, media),
+                    clientDirectory.resolve(ServiceFactory.PUBLISHER_PAGE_CACHE_PATH), LocalSubscriberMode.DIRECT);
+            clientServiceFactory.registerLocalSubscriber(new SubscriberDefinition<>(Pong.class, receiver, media),
+                    echoDirectory.resolve(ServiceFactory.PUBLISHER_PAGE_CACHE_PATH), LocalSubscriberMode.DIRECT);
+        }
+        echoService = echoServiceFactory.create();
+        clientService = clientServiceFactory.create();
+        echoService.start();
+        clientService.start();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        clientService.stop(5, TimeUnit.SECONDS);
+        echoService.stop(5, TimeUnit.SECONDS);
+        BenchmarkDirectories.delete(clientDirectory);
+        BenchmarkDirectories.delete(echoDirectory);
+    }
+
+    @Benchmark
+    public long roundTrip()
+    {
+        final long expected = ++sequence;
+        ping.ping(expected, PAYLOAD);
+        while (receiver.lastSequence != expected)
+        {
+            Thread.onSpinWait();
+        }
+        return expected;
+    }
+
+    private static ServiceFactory serviceFactory(final Path directory, final AddressSpace addressSpace) throws IOException
+    {
+        final Idler idler = Idlers.yielding();
+        return new ServiceFactory(directory, new ServerSocketFactoryImpl(), addressSpace, cls -> idler,
+                SubscriberThreading.SINGLE_THREADED, new IdlerConfig()
+                {
+                    @Override
+                    public Idler getInvokerIdler()
+                    {
+                        return idler;
+                    }
+
+                    @Override
+                    public Idler getPublisherIdler(final Class<?> topicDefinition)
+                    {
+                        return idler;
+                    }
+
+                    @Override
+                    public Idler getSubscriberIdler(final Class<?> topicDefinition)
+                    {
+                        return idler;
+                    }
+                });
+    }
+
+    private static int freePort() throws IOException
+    {
+        try (final ServerSocket socket = new ServerSocket(0))
+        {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static final class PongReceiver implements Pong
+    {
+        private volatile long lastSequence;
+
+        @Override
+        public void pong(final long sequence)
+        {
+            lastSequence = sequence;
+        }
+    }
+
+    private static final class LoopbackAddressSpace implements AddressSpace
+    {
+        private final int pingPort;
+        private final int pongPort;
+
+        LoopbackAddressSpace(final int pingPort, final int pongPort)
+        {
+            this.pingPort = pingPort;
+            this.pongPort = pongPort;
+        }
+
+        @Override
+        public int portOf(final Class<?> topicClass)
+        {
+            return Ping.class.isAssignableFrom(topicClass) ? pingPort : pongPort;
+        }
+
+        @Override
+        public String hostOf(final Class<?> topicClass)
+        {
+            return "127.0.0.1";
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.benchmark;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.WritableRecord;
+import com.aitusoftware.transport.reader.StreamingReader;
+import com.aitusoftware.transport.threads.Idlers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan of a populated page-cache from start to end; scores are records per microsecond.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StreamingReaderBenchmark
+{
+    private static final int PAGE_SIZE = 16 * 1024 * 1024;
+    private static final int RECORD_COUNT = 1_000_000;
+
+    @Param({"32", "256"})
+    private int recordLength;
+
+    private Path directory;
+    private PageCache pageCache;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) throws IOException
+    {
+        this.blackhole = blackhole;
+        directory = BenchmarkDirectories.create();
+        pageCache = PageCache.create(directory, PAGE_SIZE);
+        for (int i = 0; i < RECORD_COUNT; i++)
+        {
+            final WritableRecord record = pageCache.acquireRecordBuffer(recordLength);
+            record.buffer().putInt(i);
+            record.commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        BenchmarkDirectories.delete(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORD_COUNT)
+    public long scan()
+    {
+        final StreamingReader reader = new StreamingReader(pageCache,
+                (data, pageNumber, position) -> blackhole.consume(data.getInt()), false, Idlers.busy());
+        reader.process();
+        return reader.getMessageCount();
+    }
+}
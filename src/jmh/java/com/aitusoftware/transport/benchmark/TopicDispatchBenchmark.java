@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.benchmark;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.messaging.TopicDispatcherRecordHandler;
+import com.aitusoftware.transport.messaging.proxy.PublisherFactory;
+import com.aitusoftware.transport.messaging.proxy.Subscriber;
+import com.aitusoftware.transport.messaging.proxy.SubscriberFactory;
+import com.aitusoftware.transport.reader.StreamingReader;
+import com.aitusoftware.transport.threads.Idlers;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch of a record to the subscriber for its topic, including decoding of the message.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TopicDispatchBenchmark
+{
+    @Param({"1", "16"})
+    private int topicCount;
+
+    private final ByteBuffer record = ByteBuffer.allocateDirect(256);
+    private TopicDispatcherRecordHandler recordHandler;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) throws IOException
+    {
+        final Path directory = BenchmarkDirectories.create();
+        try
+        {
+            final PageCache pageCache = PageCache.create(directory, 4096);
+            new PublisherFactory(pageCache).getPublisherProxy(Ping.class).ping(17L, "EUR/USD-20180207");
+            new StreamingReader(pageCache, (data, pageNumber, position) -> record.put(data), false, Idlers.busy()).process();
+            record.flip();
+        }
+        finally
+        {
+            BenchmarkDirectories.delete(directory);
+        }
+
+        final Int2ObjectHashMap<Subscriber> topicIdToSubscriber = new Int2ObjectHashMap<>();
+        final Subscriber<Ping> subscriber = new SubscriberFactory().getSubscriber(Ping.class,
+                (sequence, payload) -> blackhole.consume(sequence + payload.length()));
+        topicIdToSubscriber.put(subscriber.getTopicId(), subscriber);
+        for (int i = 1; i < topicCount; i++)
+        {
+            topicIdToSubscriber.put(subscriber.getTopicId() + (i * 7919), subscriber);
+        }
+        recordHandler = new TopicDispatcherRecordHandler(topicIdToSubscriber);
+    }
+
+    @Benchmark
+    public void dispatch()
+    {
+        record.position(0);
+        recordHandler.onRecord(record, 0, 0);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.files.Filenames;
+
+import java.nio.file.Files;
+
+/**
+ * Inspects the pages already present in a page-cache directory. Only {@link #recoverWritePageNumber(PageCache)}
+ * modifies pages, and must only be used by the owner of the page-cache.
+ */
+final class ExistingPages
+{
+    private static final int INITIAL_PAGE_NUMBER = 0;
+
+    private ExistingPages()
+    {
+    }
+
+    /**
+     * Finds the page from which the owner of a page-cache should resume writing; an incomplete record
+     * on the highest page containing data is marked as EOF, and writing resumes on the next page.
+     */
+    static int recoverWritePageNumber(final PageCache pageCache)
+    {
+        final int pageNumber = highestPageContainingData(pageCache);
+
+        if (!Files.exists(Filenames.forPageNumber(pageNumber, pageCache.getPath())))
+        {
+            return pageNumber;
+        }
+
+        final Page page = pageCache.getPage(pageNumber);
+        try
+        {
+            return page.recoverWritePosition() < 0 ? pageNumber + 1 : pageNumber;
+        }
+        finally
+        {
+            page.releaseReference();
+        }
+    }
+
+    /**
+     * Estimates the data length of a page-cache written by another service, without modifying it.
+     */
+    static long estimateLength(final PageCache pageCache)
+    {
+        final int pageNumber = highestPageContainingData(pageCache);
+        if (!pageCache.isPageAvailable(pageNumber))
+        {
+            return 0L;
+        }
+        final Page page = pageCache.getPage(pageNumber);
+        try
+        {
+            return ((long) pageNumber) * page.totalDataSize() +
+                    Math.min(page.nextAvailablePosition(), page.totalDataSize());
+        }
+        finally
+        {
+            page.releaseReference();
+        }
+    }
+
+    private static int highestPageContainingData(final PageCache pageCache)
+    {
+        int pageNumber = Math.max(INITIAL_PAGE_NUMBER, pageCache.getPageIndex().getHighestPageNumber());
+        // skip over pages that have been allocated ahead of the writer
+        while (pageNumber > INITIAL_PAGE_NUMBER && !containsData(pageCache, pageNumber))
+        {
+            pageNumber--;
+        }
+        return pageNumber;
+    }
+
+    private static boolean containsData(final PageCache pageCache, final int pageNumber)
+    {
+        if (!Files.exists(Filenames.forPageNumber(pageNumber, pageCache.getPath())))
+        {
+            return false;
+        }
+        final Page page = pageCache.getPage(pageNumber);
+        try
+        {
+            return page.header(0) != 0 || page.nextAvailablePosition() != 0;
+        }
+        finally
+        {
+            page.releaseReference();
+        }
+    }
+}
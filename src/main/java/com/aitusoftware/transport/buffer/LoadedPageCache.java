@@ -20,7 +20,7 @@ import java.util.function.IntFunction;
 
 final class LoadedPageCache
 {
-    private static final int CACHED_PAGE_COUNT = 32;
+    static final int CACHED_PAGE_COUNT = 32;
     private final int indexMask;
     private final AtomicReferenceArray<Page> cachedPages;
     private final IntFunction<Page> pageAllocator;
@@ -69,6 +69,17 @@ final class LoadedPageCache
         return existing;
     }
 
+    void evict(final int pageNumber)
+    {
+        final int cachedPageIndex = toCachedPageIndex(pageNumber);
+        final Page cachedPage = cachedPages.get(cachedPageIndex);
+        if (cachedPage != null && cachedPage.getPageNumber() == pageNumber &&
+                cachedPages.compareAndSet(cachedPageIndex, cachedPage, null))
+        {
+            cachedPage.releaseReference();
+        }
+    }
+
     private int toCachedPageIndex(final int pageNumber)
     {
         return pageNumber & indexMask;
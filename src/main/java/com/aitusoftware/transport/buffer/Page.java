@@ -18,6 +18,7 @@ package com.aitusoftware.transport.buffer;
 import com.aitusoftware.transport.memory.ReferenceCounter;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
@@ -33,7 +34,7 @@ public final class Page
     private static final int EOF_MARKER = 0b0010_0000_0000_0000_0000_0000_0000_0000;
     private static final int READY_MARKER_MASK = 0b0100_0000_0000_0000_0000_0000_0000_0000;
 
-    private static final int MAX_DATA_LENGTH = 0b0010_0000_0000_0000_0000_0000_0000_0000 - 1;
+    static final int MAX_DATA_LENGTH = 0b0010_0000_0000_0000_0000_0000_0000_0000 - 1;
     static final int ERR_MESSAGE_TOO_LARGE = -1;
     static final int ERR_NOT_ENOUGH_SPACE = -2;
 
@@ -69,7 +70,6 @@ public final class Page
         {
             return WriteResult.NOT_ENOUGH_SPACE;
         }
-        pageHeader.updateNextWritePosition(response + remaining + Record.HEADER_LENGTH);
         slab.copy(toPageOffset(response) + Record.HEADER_LENGTH, data);
         slab.writeOrderedInt(toPageOffset(response), READY_MARKER | remaining);
         return WriteResult.SUCCESS;
@@ -80,41 +80,120 @@ public final class Page
         slab.writeOrderedInt(toPageOffset(headerOffset), READY_MARKER | recordLength);
     }
 
+    /**
+     * Allocates space for a record with a single fetch-and-add on the page's tail.
+     * <p>
+     * If the allocation straddles the end of the page, the allocating writer owns the remainder
+     * of the page, and fills it with a padding (EOF) record so that readers move on to the next page.
+     *
+     * @param remaining length of the record
+     * @return the position of the record, or an error code
+     */
     int acquireSpaceInBuffer(final int remaining)
     {
         if (remaining > MAX_DATA_LENGTH)
         {
             return ERR_MESSAGE_TOO_LARGE;
         }
-        while (true)
+        final int footprint = Offsets.getAlignedPosition(remaining + Record.HEADER_LENGTH);
+        final long position = pageHeader.allocate(footprint);
+        if (position + footprint > availableDataLength())
         {
-            final int position = pageHeader.nextAvailableWritePosition();
+            writePadding(position);
+            return ERR_NOT_ENOUGH_SPACE;
+        }
+        return (int) position;
+    }
 
-            if (position + remaining + Record.HEADER_LENGTH > availableDataLength())
-            {
-                return ERR_NOT_ENOUGH_SPACE;
-            }
-            if ((slab.getIntVolatile(toPageOffset(position)) & EOF_MARKER) != 0)
+    int acquireSpaceInBuffer(final RecordBatch batch, final int recordCount)
+    {
+        if (batch.recordLength(0) > MAX_DATA_LENGTH)
+        {
+            return ERR_MESSAGE_TOO_LARGE;
+        }
+        // never allocate more than a page, so that the tail cannot overflow
+        final int requested = batch.claimableRecordCount(0, availableDataLength(), recordCount);
+        if (requested == 0)
+        {
+            return ERR_MESSAGE_TOO_LARGE;
+        }
+        final long position = pageHeader.allocate(batch.claimedLength(0, requested));
+        if (position >= availableDataLength())
+        {
+            return ERR_NOT_ENOUGH_SPACE;
+        }
+        final int claimable = batch.claimableRecordCount((int) position, availableDataLength(), requested);
+        if (claimable < requested)
+        {
+            writePadding(position + batch.claimedLength((int) position, claimable));
+        }
+        if (claimable == 0)
+        {
+            return ERR_NOT_ENOUGH_SPACE;
+        }
+        batch.set(this, (int) position, claimable);
+        return (int) position;
+    }
+
+    /**
+     * Walks the record headers from the start of the page to find the end of the last committed record.
+     * <p>
+     * If the page is full, or contains an incomplete record, it is marked with an EOF record so that readers
+     * will move on to the next page.
+     *
+     * @return the next write position, or <code>-1</code> if the page should no longer be written to
+     */
+    int recoverWritePosition()
+    {
+        final int dataLength = totalDataSize();
+        int position = 0;
+        while (position < dataLength && isReady(header(position)))
+        {
+            position = Offsets.getAlignedPosition(position + recordLength(header(position)) + Record.HEADER_LENGTH);
+        }
+
+        if (position >= dataLength)
+        {
+            return -1;
+        }
+        final int header = header(position);
+        if (header == 0 && position == nextAvailablePosition())
+        {
+            return position;
+        }
+        if (!isEof(header))
+        {
+            slab.compareAndSetInt(toPageOffset(position), header, EOF_MARKER);
+        }
+        return -1;
+    }
+
+    /**
+     * Touches one word in every <code>stride</code> bytes of the page, so that page faults are taken
+     * before the page is written. Safe to call while the page is being written.
+     *
+     * @param stride distance between touched words; the operating-system page size
+     * @param touch  whether to read or write each word
+     */
+    void touch(final int stride, final PageTouch touch)
+    {
+        // the first word of the page header is the tail; touch an unused part of the header instead
+        for (int offset = PageHeader.HEADER_SIZE / 2; offset < slab.capacity(); offset += stride)
+        {
+            if (touch == PageTouch.WRITE)
             {
-                return ERR_NOT_ENOUGH_SPACE;
+                slab.getAndAddInt(offset, 0);
             }
-            if (claimPosition(position))
+            else
             {
-                pageHeader.updateNextWritePosition(Offsets.getAlignedPosition(position + remaining + Record.HEADER_LENGTH));
-                return position;
+                slab.getIntVolatile(offset);
             }
         }
     }
 
-    void tryWriteEof()
+    void load()
     {
-        final int position = pageHeader.nextAvailableWritePosition();
-        final int offset = toPageOffset(position);
-
-        if (offset < slab.capacity() - 4)
-        {
-            slab.compareAndSetInt(offset, 0, EOF_MARKER);
-        }
+        slab.load();
     }
 
     void read(final int position, final ByteBuffer buffer)
@@ -127,7 +206,9 @@ public final class Page
         final ByteBuffer slice = getSlice();
 
         final int newPosition = toPageOffset(position) + Record.HEADER_LENGTH;
+        // record headers are big-endian; publishers may switch to the payload order of their topic
         slice.clear();
+        slice.order(ByteOrder.BIG_ENDIAN);
         final int newLimit = newPosition + recordLength;
         if (newLimit > slab.capacity())
         {
@@ -167,7 +248,7 @@ public final class Page
 
     int nextAvailablePosition()
     {
-        return pageHeader.nextAvailableWritePosition();
+        return (int) Math.min(pageHeader.tail(), availableDataLength());
     }
 
     public static boolean isReady(final int recordHeader)
@@ -190,9 +271,12 @@ public final class Page
         return slab.capacity() - PageHeader.HEADER_SIZE;
     }
 
-    private boolean claimPosition(final int position)
+    private void writePadding(final long position)
     {
-        return slab.compareAndSetInt(toPageOffset(position), 0, CLAIMED_MARKER);
+        if (position < availableDataLength())
+        {
+            slab.writeOrderedInt(toPageOffset((int) position), EOF_MARKER);
+        }
     }
 
     @Override
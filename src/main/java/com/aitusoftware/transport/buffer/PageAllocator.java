@@ -17,6 +17,7 @@ package com.aitusoftware.transport.buffer;
 
 import com.aitusoftware.transport.files.Buffers;
 import com.aitusoftware.transport.files.Filenames;
+import com.aitusoftware.transport.metrics.Counter;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
@@ -36,6 +37,7 @@ final class PageAllocator
     private final int pageSize;
     private final PageIndex pageIndex;
     private final Unmapper unmapper;
+    private Counter pageAllocations;
 
     PageAllocator(
             final Path path, final int pageSize,
@@ -48,6 +50,13 @@ final class PageAllocator
     }
 
     Page safelyAllocatePage(final int pageNumber)
+    {
+        createPageFile(pageNumber);
+
+        return loadExisting(pageNumber);
+    }
+
+    void createPageFile(final int pageNumber)
     {
         final Path pagePath = Filenames.forPageNumber(pageNumber, path);
         final long startNanos = System.nanoTime();
@@ -62,6 +71,10 @@ final class PageAllocator
                     file.setLength(pageSize + PageHeader.HEADER_SIZE);
                     pageIndex.onPageCreated(pageNumber);
                 }
+                if (pageAllocations != null)
+                {
+                    pageAllocations.increment();
+                }
             }
             catch (IOException e)
             {
@@ -72,8 +85,11 @@ final class PageAllocator
                 }
             }
         }
+    }
 
-        return loadExisting(pageNumber);
+    void countAllocations(final Counter pageAllocations)
+    {
+        this.pageAllocations = pageAllocations;
     }
 
     Page loadExisting(final int pageNumber)
@@ -17,6 +17,7 @@ package com.aitusoftware.transport.buffer;
 
 import com.aitusoftware.transport.files.Directories;
 import com.aitusoftware.transport.files.Filenames;
+import com.aitusoftware.transport.metrics.Counter;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
@@ -36,7 +37,6 @@ public final class PageCache
 {
     private static final VarHandle CURRENT_PAGE_VH;
     private static final VarHandle CURRENT_PAGE_NUMBER_VH;
-    private static final int INITIAL_PAGE_NUMBER = 0;
 
     static
     {
@@ -56,6 +56,8 @@ public final class PageCache
 
     private static final ThreadLocal<WritableRecord> RECORD_BUFFER =
             ThreadLocal.withInitial(WritableRecord::new);
+    private static final ThreadLocal<RecordBatch> RECORD_BATCH =
+            ThreadLocal.withInitial(RecordBatch::new);
     private static final ThreadLocal<Slice> SLICE =
             ThreadLocal.withInitial(Slice::new);
     private final PageAllocator allocator;
@@ -64,21 +66,28 @@ public final class PageCache
     private final Unmapper unmapper = new Unmapper();
     private final LoadedPageCache loadedPageCache;
     private final Path path;
+    private final boolean attached;
+    private Counter pageRollovers;
+    private volatile PagePreallocator preallocator;
     @SuppressWarnings("unused")
     private volatile Page currentPage;
     @SuppressWarnings("unused")
     private volatile int currentPageNumber;
 
-    private PageCache(final int pageSize, final Path path, final PageIndex pageIndex)
+    private PageCache(final int pageSize, final Path path, final PageIndex pageIndex, final boolean attached)
     {
-        // TODO should handle initialisation from existing file-system resources
         allocator = new PageAllocator(path, pageSize, pageIndex, unmapper);
-        CURRENT_PAGE_VH.setRelease(this, allocator.safelyAllocatePage(INITIAL_PAGE_NUMBER));
-        CURRENT_PAGE_NUMBER_VH.setRelease(this, INITIAL_PAGE_NUMBER);
         this.pageSize = pageSize;
         this.pageIndex = pageIndex;
         loadedPageCache = new LoadedPageCache(allocator);
         this.path = path;
+        this.attached = attached;
+        if (!attached)
+        {
+            final int initialPageNumber = ExistingPages.recoverWritePageNumber(this);
+            CURRENT_PAGE_VH.setRelease(this, allocator.safelyAllocatePage(initialPageNumber));
+            CURRENT_PAGE_NUMBER_VH.setRelease(this, initialPageNumber);
+        }
     }
 
     /**
@@ -89,7 +98,7 @@ public final class PageCache
      */
     public WritableRecord acquireRecordBuffer(final int recordLength)
     {
-        final Page page = (Page) CURRENT_PAGE_VH.getVolatile(this);
+        final Page page = currentPageForWriting();
         if (!page.claimReference())
         {
             return acquireRecordBuffer(recordLength);
@@ -110,42 +119,94 @@ public final class PageCache
         else if (position == Page.ERR_NOT_ENOUGH_SPACE)
         {
             page.releaseReference();
-            int pageNumber = page.getPageNumber();
-            while (!Thread.currentThread().isInterrupted())
-            {
-                page.tryWriteEof();
-                if (((int) CURRENT_PAGE_NUMBER_VH.get(this)) > pageNumber)
-                {
-                    // another write has won, and will allocate a new page
-                    while ((((Page) CURRENT_PAGE_VH.get(this)).getPageNumber() == pageNumber))
-                    {
-                        Thread.yield();
-                    }
+            advanceCurrentPage(page);
+            return acquireRecordBuffer(recordLength);
+        }
+        else
+        {
+            throw new IllegalStateException();
+        }
+    }
 
-                    break;
-                }
+    /**
+     * Acquire space for up to <code>recordCount</code> records of the specified length
+     * with a single claim on the current page.
+     * <p>
+     * If the current page does not have space for every record, the returned batch
+     * will contain fewer slots; the remainder should be requested with a subsequent call.
+     *
+     * @param recordLength required capacity of each record
+     * @param recordCount  number of records required
+     * @return cursor over placeholders for data
+     */
+    public RecordBatch acquireRecordBatch(final int recordLength, final int recordCount)
+    {
+        final RecordBatch batch = RECORD_BATCH.get();
+        batch.prepare(recordLength, recordCount);
+        return acquireRecordBatch(batch, recordCount);
+    }
 
-                if (CURRENT_PAGE_NUMBER_VH.compareAndSet(this, pageNumber, pageNumber + 1))
-                {
-                    page.releaseReference();
-                    // this thread won, allocate a new page
-                    if (pageIndex.isPageCreated(pageNumber + 1))
-                    {
-                        CURRENT_PAGE_VH.setRelease(this, getPage(pageNumber + 1));
-                    }
-                    else
-                    {
-                        CURRENT_PAGE_VH.setRelease(this, allocator.safelyAllocatePage(pageNumber + 1));
-                    }
-                    break;
-                }
-            }
-            if (Thread.currentThread().isInterrupted())
-            {
-                Thread.currentThread().interrupt();
-                throw new IllegalStateException("Thread was interrupted");
-            }
-            return acquireRecordBuffer(recordLength);
+    /**
+     * Acquire space for up to <code>recordCount</code> records with a single claim on the current page.
+     * <p>
+     * If the current page does not have space for every record, the returned batch
+     * will contain fewer slots; the remainder should be requested with a subsequent call.
+     *
+     * @param recordLengths required capacity of each record
+     * @param recordCount   number of entries of <code>recordLengths</code> to use
+     * @return cursor over placeholders for data
+     */
+    public RecordBatch acquireRecordBatch(final int[] recordLengths, final int recordCount)
+    {
+        return acquireRecordBatch(recordLengths, 0, recordCount);
+    }
+
+    /**
+     * Acquire space for up to <code>recordCount</code> records with a single claim on the current page.
+     * <p>
+     * If the current page does not have space for every record, the returned batch
+     * will contain fewer slots; the remainder should be requested with a subsequent call.
+     *
+     * @param recordLengths required capacity of each record
+     * @param offset        index of the first entry of <code>recordLengths</code> to use
+     * @param recordCount   number of entries of <code>recordLengths</code> to use
+     * @return cursor over placeholders for data
+     */
+    public RecordBatch acquireRecordBatch(final int[] recordLengths, final int offset, final int recordCount)
+    {
+        final RecordBatch batch = RECORD_BATCH.get();
+        batch.prepare(recordLengths, offset, recordCount);
+        return acquireRecordBatch(batch, recordCount);
+    }
+
+    private RecordBatch acquireRecordBatch(final RecordBatch batch, final int recordCount)
+    {
+        if (recordCount < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Record count must be positive: %d", recordCount));
+        }
+        final Page page = currentPageForWriting();
+        if (!page.claimReference())
+        {
+            return acquireRecordBatch(batch, recordCount);
+        }
+        final int position = page.acquireSpaceInBuffer(batch, recordCount);
+        if (position >= 0)
+        {
+            return batch;
+        }
+        else if (position == Page.ERR_MESSAGE_TOO_LARGE)
+        {
+            page.releaseReference();
+            throw new IllegalArgumentException(String.format(
+                    "Message too large for current page: %s", currentPage));
+        }
+        else if (position == Page.ERR_NOT_ENOUGH_SPACE)
+        {
+            page.releaseReference();
+            advanceCurrentPage(page);
+            return acquireRecordBatch(batch, recordCount);
         }
         else
         {
@@ -160,6 +221,10 @@ public final class PageCache
      */
     public long estimateTotalLength()
     {
+        if (attached)
+        {
+            return ExistingPages.estimateLength(this);
+        }
         final Page page = (Page) CURRENT_PAGE_VH.get(this);
         return ((long) page.getPageNumber()) * page.totalDataSize() +
                 page.nextAvailablePosition();
@@ -173,6 +238,10 @@ public final class PageCache
      */
     public boolean isPageAvailable(final int pageNumber)
     {
+        if (pageIndex.isPageRemoved(pageNumber))
+        {
+            return false;
+        }
         if (pageIndex.isLessThanLowestTrackedPageNumber(pageNumber))
         {
             final Path pagePath = Filenames.forPageNumber(pageNumber, path);
@@ -196,9 +265,43 @@ public final class PageCache
         return loadedPageCache.acquire(pageNumber);
     }
 
+    /**
+     * Retrieve the lowest page number that has not been removed by a retention policy
+     *
+     * @return the lowest retained page number
+     */
+    public int getLowestRetainedPageNumber()
+    {
+        return pageIndex.getLowestRetainedPageNumber();
+    }
+
+    int getCurrentPageNumber()
+    {
+        return (int) CURRENT_PAGE_NUMBER_VH.getVolatile(this);
+    }
+
+    void evict(final int pageNumber)
+    {
+        loadedPageCache.evict(pageNumber);
+    }
+
+    /**
+     * Retrieve the directory containing the page-cache files
+     *
+     * @return the page-cache directory
+     */
+    public Path getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Creates a page if it does not exist, and loads it through the cache of loaded pages,
+     * so that the memory-mapping is shared with writers moving to the page.
+     */
     Page allocate(final int pageNumber)
     {
-        allocator.safelyAllocatePage(pageNumber).releaseReference();
+        allocator.createPageFile(pageNumber);
         return getPage(pageNumber);
     }
 
@@ -221,6 +324,16 @@ public final class PageCache
         return pageSize;
     }
 
+    /**
+     * Retrieve the maximum length of a record that can be written to the page-cache
+     *
+     * @return maximum record length in bytes
+     */
+    public int getMaxRecordLength()
+    {
+        return Math.min(pageSize - Record.HEADER_LENGTH, Page.MAX_DATA_LENGTH);
+    }
+
     public PageIndex getPageIndex()
     {
         return pageIndex;
@@ -232,7 +345,119 @@ public final class PageCache
     }
 
     /**
-     * Create a page-cache in the specified directory
+     * Count page events; must be called before the page-cache is shared with other threads.
+     *
+     * @param rollovers   incremented when a writer moves to a new page
+     * @param allocations incremented when a page file is created
+     * @param unmaps      incremented when a page is unmapped by the {@link Unmapper}
+     */
+    public void countPageEvents(final Counter rollovers, final Counter allocations, final Counter unmaps)
+    {
+        this.pageRollovers = rollovers;
+        allocator.countAllocations(allocations);
+        unmapper.countUnmaps(unmaps);
+    }
+
+    /**
+     * Keep the specified number of pages created and mapped ahead of the current page, so that writers
+     * moving to a new page do not perform file-system operations. Pages are allocated by the returned
+     * {@link PagePreallocator}, which must be executed on a background thread.
+     *
+     * @param pageCount number of pages to allocate ahead of the current page
+     * @return the pre-allocator
+     */
+    public PagePreallocator preallocatePages(final int pageCount)
+    {
+        return preallocatePages(pageCount, null);
+    }
+
+    /**
+     * Keep the specified number of pages created and mapped ahead of the current page,
+     * counting occasions on which a writer reaches a page before it is ready.
+     *
+     * @param pageCount number of pages to allocate ahead of the current page
+     * @param misses    incremented when a page is allocated on a writing thread; may be <code>null</code>
+     * @return the pre-allocator
+     */
+    public synchronized PagePreallocator preallocatePages(final int pageCount, final Counter misses)
+    {
+        if (preallocator != null)
+        {
+            throw new IllegalStateException("Pages are already pre-allocated for " + path);
+        }
+        final PagePreallocator pagePreallocator = new PagePreallocator(this, pageCount, misses);
+        preallocator = pagePreallocator;
+        return pagePreallocator;
+    }
+
+    private Page currentPageForWriting()
+    {
+        final Page page = (Page) CURRENT_PAGE_VH.getVolatile(this);
+        if (page == null)
+        {
+            throw new IllegalStateException("Page-cache is attached for reading: " + path);
+        }
+        return page;
+    }
+
+    private void advanceCurrentPage(final Page page)
+    {
+        final int pageNumber = page.getPageNumber();
+        // the writer whose allocation straddled the end of the page has written a padding record
+        while (!Thread.currentThread().isInterrupted())
+        {
+            if (((int) CURRENT_PAGE_NUMBER_VH.get(this)) > pageNumber)
+            {
+                // another write has won, and will allocate a new page
+                while ((((Page) CURRENT_PAGE_VH.get(this)).getPageNumber() == pageNumber))
+                {
+                    Thread.yield();
+                }
+
+                break;
+            }
+
+            if (CURRENT_PAGE_NUMBER_VH.compareAndSet(this, pageNumber, pageNumber + 1))
+            {
+                page.releaseReference();
+                if (pageRollovers != null)
+                {
+                    // rollovers are serialised; the next cannot start until the new page is published
+                    pageRollovers.incrementOrdered();
+                }
+                // this thread won, allocate a new page
+                final PagePreallocator pagePreallocator = preallocator;
+                final Page readyPage = pagePreallocator != null ? pagePreallocator.take(pageNumber + 1) : null;
+                if (readyPage != null)
+                {
+                    CURRENT_PAGE_VH.setRelease(this, readyPage);
+                }
+                else if (pageIndex.isPageCreated(pageNumber + 1))
+                {
+                    CURRENT_PAGE_VH.setRelease(this, getPage(pageNumber + 1));
+                }
+                else
+                {
+                    CURRENT_PAGE_VH.setRelease(this, allocate(pageNumber + 1));
+                }
+                break;
+            }
+        }
+        if (Thread.currentThread().isInterrupted())
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Thread was interrupted");
+        }
+    }
+
+    /**
+     * Create a page-cache in the specified directory.
+     * <p>
+     * If the directory contains existing pages, writing resumes after the last
+     * committed record of the highest page containing data. A page that ends
+     * with an incomplete record is marked as full, and writing resumes on the next page.
+     * Since recovery modifies the pages, only the owner of the page-cache should create it;
+     * other processes should use {@link #attach(Path, int)}.
      *
      * @param path     file-system path in which to store data
      * @param pageSize size of each page in bytes
@@ -244,7 +469,27 @@ public final class PageCache
         Directories.ensureDirectoryExists(path);
         final PageIndex pageIndex = PageIndex.forPageCache(path);
 
-        return new PageCache(pageSize, path, pageIndex);
+        return new PageCache(pageSize, path, pageIndex, false);
+    }
+
+    /**
+     * Attach to a page-cache written by another service, for reading only.
+     * <p>
+     * Unlike {@link #create(Path, int)}, the write position is not recovered, so pages are neither
+     * created nor marked as full; records claimed by the owner's writers remain valid. Records cannot be
+     * written to an attached page-cache.
+     *
+     * @param path     file-system path of the page-cache
+     * @param pageSize size of each page in bytes
+     * @return the PageCache
+     * @throws IOException if the page-cache cannot be initialised
+     */
+    public static PageCache attach(final Path path, final int pageSize) throws IOException
+    {
+        Directories.ensureDirectoryExists(path);
+        final PageIndex pageIndex = PageIndex.forPageCache(path);
+
+        return new PageCache(pageSize, path, pageIndex, true);
     }
 
 }
\ No newline at end of file
@@ -15,12 +15,16 @@
  */
 package com.aitusoftware.transport.buffer;
 
+/**
+ * Holds the tail of a {@link Page}: the position at which the next record will be allocated.
+ * <p>
+ * Space is allocated with a single fetch-and-add on the tail, so the tail may be advanced
+ * beyond the end of the page by writers whose records do not fit.
+ */
 public final class PageHeader
 {
     static final int HEADER_SIZE = 64 * 2;
-    private static final int MAX_POSITION_DATA_OFFSET = 0;
-    private static final int NUMBER_OF_POSITION_RECORDS = 4;
-    private static final int POSITION_RECORD_SIZE = 8;
+    private static final int TAIL_OFFSET = 0;
 
     private final Slab slab;
 
@@ -29,44 +33,25 @@ public final class PageHeader
         this.slab = slab;
     }
 
-    void updateNextWritePosition(final int position)
+    /**
+     * Advances the tail by <code>length</code>.
+     *
+     * @param length number of bytes to allocate
+     * @return the position of the allocated space, which may lie beyond the end of the page
+     */
+    long allocate(final int length)
     {
-        final int positionRecordSlot = (position & (NUMBER_OF_POSITION_RECORDS - 1));
-        final int recordOffset = getRecordOffset(positionRecordSlot);
-        int currentPosition;
-        while ((currentPosition = slab.getIntVolatile(recordOffset)) < position)
-        {
-            slab.compareAndSetInt(recordOffset, currentPosition, position);
-        }
+        return slab.getAndAddLong(TAIL_OFFSET, length);
     }
 
-    int nextAvailableWritePosition()
+    long tail()
     {
-        int maxPosition = 0;
-        for (int i = 0; i < NUMBER_OF_POSITION_RECORDS; i++)
-        {
-            maxPosition = Math.max(slab.getIntVolatile(getRecordOffset(i)), maxPosition);
-        }
-
-        return Offsets.getAlignedPosition(maxPosition);
+        return slab.getLongVolatile(TAIL_OFFSET);
     }
 
     @Override
     public String toString()
     {
-        final StringBuilder buffer = new StringBuilder();
-
-        buffer.append('\n');
-        for (int i = 0; i < NUMBER_OF_POSITION_RECORDS; i++)
-        {
-            buffer.append(i).append(": ").append(slab.getLongVolatile(getRecordOffset(i))).append('\n');
-        }
-
-        return buffer.toString();
-    }
-
-    private static int getRecordOffset(final int positionRecordSlot)
-    {
-        return MAX_POSITION_DATA_OFFSET + (positionRecordSlot * POSITION_RECORD_SIZE);
+        return "tail: " + tail();
     }
-}
\ No newline at end of file
+}
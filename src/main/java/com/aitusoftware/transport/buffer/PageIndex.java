@@ -26,12 +26,27 @@ import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Comparator;
 
+/**
+ * Directory of the pages in a page-cache, stored in a memory-mapped file.
+ * <p>
+ * The highest created page number is cached in the header, so that it can be retrieved with
+ * a single volatile read. Creation of recent pages is tracked in a ring of slots, each
+ * holding the exact page number assigned to it; pages that have fallen out of the ring
+ * must be located on the file-system.
+ */
 final class PageIndex
 {
-    static final int SLOTS = 128;
+    static final int SLOTS = 1024;
     private static final int SLOT_MASK = SLOTS - 1;
     private static final int SLOT_SIZE = 4;
-    private static final int FILE_SIZE = SLOTS * SLOT_SIZE;
+    private static final long FORMAT_MAGIC = 0x5452_5850_4449_5232L;
+    private static final int FORMAT_MAGIC_OFFSET = 0;
+    private static final int HIGHEST_PAGE_OFFSET = 64;
+    private static final int LOWEST_RETAINED_PAGE_OFFSET = 128;
+    private static final int SLOTS_OFFSET = 192;
+    private static final int FILE_SIZE = SLOTS_OFFSET + SLOTS * SLOT_SIZE;
+    // slot and high-watermark values are stored as (pageNumber + 1), so that zero denotes an empty entry
+    private static final int EMPTY = 0;
 
     private final Slab slab;
     private final Path path;
@@ -54,6 +69,7 @@ final class PageIndex
 
         final PageIndex pageIndex = new PageIndex(SlabFactory.createSlab(Buffers.map(
                         indexFile, FILE_SIZE)), path);
+        pageIndex.initialiseFormat();
         pageIndex.refresh();
         return pageIndex;
     }
@@ -75,47 +91,105 @@ final class PageIndex
             {
                 onPageCreated(Filenames.toPageNumber(file));
             }
+            if (files.length != 0)
+            {
+                advanceLowestRetainedPageNumber(Filenames.toPageNumber(files[0]));
+            }
         }
     }
 
     void onPageCreated(final int pageNumber)
     {
         final int offset = toOffset(pageNumber);
-        final int pageAtSlot = slab.getIntVolatile(offset);
-        if (pageNumber > pageAtSlot)
+        final int value = toValue(pageNumber);
+        int valueAtSlot;
+        while ((valueAtSlot = slab.getIntVolatile(offset)) < value)
+        {
+            if (slab.compareAndSetInt(offset, valueAtSlot, value))
+            {
+                break;
+            }
+        }
+        int highestValue;
+        while ((highestValue = slab.getIntVolatile(HIGHEST_PAGE_OFFSET)) < value)
         {
-            slab.compareAndSetInt(offset, pageAtSlot, pageNumber);
+            if (slab.compareAndSetInt(HIGHEST_PAGE_OFFSET, highestValue, value))
+            {
+                break;
+            }
         }
     }
 
     boolean isPageCreated(final int pageNumber)
     {
-        final int offset = toOffset(pageNumber);
-        return slab.getIntVolatile(offset) == pageNumber;
+        return slab.getIntVolatile(toOffset(pageNumber)) == toValue(pageNumber);
     }
 
     boolean isLessThanLowestTrackedPageNumber(final int pageNumber)
     {
-        int min = Integer.MAX_VALUE;
-        for (int i = 0; i < SLOTS; i++)
+        return pageNumber < getHighestPageNumber() - SLOT_MASK;
+    }
+
+    /**
+     * Records that a page, and all pages before it, have been removed from the page-cache directory.
+     *
+     * @param pageNumber the highest removed page
+     */
+    void onPageRemoved(final int pageNumber)
+    {
+        advanceLowestRetainedPageNumber(pageNumber + 1);
+    }
+
+    boolean isPageRemoved(final int pageNumber)
+    {
+        return pageNumber < getLowestRetainedPageNumber();
+    }
+
+    int getLowestRetainedPageNumber()
+    {
+        return slab.getIntVolatile(LOWEST_RETAINED_PAGE_OFFSET);
+    }
+
+    /**
+     * Retrieve the highest page number created in the page-cache directory.
+     *
+     * @return the highest page number, or <code>-1</code> if no pages have been created
+     */
+    int getHighestPageNumber()
+    {
+        return slab.getIntVolatile(HIGHEST_PAGE_OFFSET) - 1;
+    }
+
+    private void advanceLowestRetainedPageNumber(final int pageNumber)
+    {
+        int current;
+        while ((current = slab.getIntVolatile(LOWEST_RETAINED_PAGE_OFFSET)) < pageNumber)
         {
-            min = Math.min(min, slab.getIntVolatile(toOffset(i)));
+            slab.compareAndSetInt(LOWEST_RETAINED_PAGE_OFFSET, current, pageNumber);
         }
-        return pageNumber < min;
     }
 
-    int getHighestPageNumber()
+    private void initialiseFormat()
     {
-        int max = -1;
-        for (int i = 0; i < SLOTS; i++)
+        if (slab.getLongVolatile(FORMAT_MAGIC_OFFSET) == FORMAT_MAGIC)
+        {
+            return;
+        }
+        // new file, or written in an earlier format; contents are rebuilt from the page files
+        for (int offset = FORMAT_MAGIC_OFFSET + 8; offset < FILE_SIZE; offset += 8)
         {
-            max = Math.max(max, slab.getIntVolatile(toOffset(i)));
+            slab.writeOrderedLong(offset, EMPTY);
         }
-        return max;
+        slab.writeOrderedLong(FORMAT_MAGIC_OFFSET, FORMAT_MAGIC);
+    }
+
+    private static int toValue(final int pageNumber)
+    {
+        return pageNumber + 1;
     }
 
     private static int toOffset(final int pageNumber)
     {
-        return 4 * (pageNumber & SLOT_MASK);
+        return SLOTS_OFFSET + SLOT_SIZE * (pageNumber & SLOT_MASK);
     }
-}
\ No newline at end of file
+}
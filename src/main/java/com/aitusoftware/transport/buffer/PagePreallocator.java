@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.metrics.Counter;
+import com.aitusoftware.transport.threads.Idler;
+import com.aitusoftware.transport.threads.Idlers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Creates and maps pages ahead of the writers of a {@link PageCache}, so that moving to a new page
+ * does not require file-system operations on a publishing thread.
+ * <p>
+ * Holds a reference to each ready page until a writer takes it; if the writers reach a page
+ * before it is ready, the page is allocated on the writing thread, as it would be without pre-allocation.
+ * <p>
+ * Obtained from {@link PageCache#preallocatePages(int, Counter)}; <code>execute()</code> should be run on a dedicated thread.
+ */
+public final class PagePreallocator
+{
+    private final PageCache pageCache;
+    private final int pageCount;
+    private final AtomicReferenceArray<Page> readyPages;
+    private final Idler idler = Idlers.staticPause(100, TimeUnit.MICROSECONDS);
+    private final Counter misses;
+
+    PagePreallocator(final PageCache pageCache, final int pageCount, final Counter misses)
+    {
+        if (pageCount < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Page count must be positive: %d", pageCount));
+        }
+        this.pageCache = pageCache;
+        this.pageCount = pageCount;
+        this.misses = misses;
+        // slots are indexed by page number; pages are replaced once the writer has moved past them
+        readyPages = new AtomicReferenceArray<>(Integer.highestOneBit(pageCount * 2 - 1));
+    }
+
+    public void execute()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            if (preallocate())
+            {
+                idler.reset();
+            }
+            else
+            {
+                idler.idle();
+            }
+        }
+    }
+
+    boolean preallocate()
+    {
+        final int currentPageNumber = pageCache.getCurrentPageNumber();
+        boolean allocated = false;
+        for (int pageNumber = currentPageNumber + 1; pageNumber <= currentPageNumber + pageCount; pageNumber++)
+        {
+            final int index = toIndex(pageNumber);
+            final Page readyPage = readyPages.get(index);
+            if (readyPage != null)
+            {
+                if (readyPage.getPageNumber() >= pageNumber)
+                {
+                    continue;
+                }
+                // the writer has moved past this page without taking it
+                if (readyPages.compareAndSet(index, readyPage, null))
+                {
+                    readyPage.releaseReference();
+                }
+            }
+            final Page page = pageCache.allocate(pageNumber);
+            if (!readyPages.compareAndSet(index, null, page))
+            {
+                page.releaseReference();
+            }
+            allocated = true;
+        }
+        return allocated;
+    }
+
+    /**
+     * Takes ownership of a ready page; called by the single writer that has won the race to move to the page.
+     *
+     * @param pageNumber the page number
+     * @return the page, with a reference held on behalf of the caller, or <code>null</code> if it is not ready
+     */
+    Page take(final int pageNumber)
+    {
+        final int index = toIndex(pageNumber);
+        final Page page = readyPages.get(index);
+        if (page != null && page.getPageNumber() == pageNumber && readyPages.compareAndSet(index, page, null))
+        {
+            return page;
+        }
+        if (misses != null)
+        {
+            // rollovers are serialised
+            misses.incrementOrdered();
+        }
+        return null;
+    }
+
+    private int toIndex(final int pageNumber)
+    {
+        return pageNumber & (readyPages.length() - 1);
+    }
+}
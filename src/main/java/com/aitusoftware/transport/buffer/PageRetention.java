@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.files.Filenames;
+import com.aitusoftware.transport.threads.Idler;
+import com.aitusoftware.transport.threads.Idlers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Removes pages from a page-cache directory according to a {@link RetentionPolicy}.
+ * <p>
+ * A page is only removed once every registered reader has moved past it, and
+ * the {@link Unmapper} has released its memory-mapping. Pages are removed in order,
+ * so that all pages below {@link PageCache#getLowestRetainedPageNumber()} are known to be absent.
+ * <p>
+ * Only readers in this process can be registered; readers in other processes
+ * (e.g. local IPC subscribers) are not taken into account.
+ */
+public final class PageRetention
+{
+    private final PageCache pageCache;
+    private final PageIndex pageIndex;
+    private final Unmapper unmapper;
+    private final RetentionPolicy retentionPolicy;
+    private final RetentionAction retentionAction;
+    private final List<IntSupplier> readerPageNumbers = new CopyOnWriteArrayList<>();
+    private final Idler idler = Idlers.staticPause(100, TimeUnit.MILLISECONDS);
+
+    public PageRetention(
+            final PageCache pageCache, final RetentionPolicy retentionPolicy,
+            final RetentionAction retentionAction)
+    {
+        this.pageCache = pageCache;
+        this.pageIndex = pageCache.getPageIndex();
+        this.unmapper = pageCache.getUnmapper();
+        this.retentionPolicy = retentionPolicy;
+        this.retentionAction = retentionAction;
+    }
+
+    /**
+     * Register a reader of the page-cache; pages will not be removed until the reader has moved past them.
+     *
+     * @param readerPageNumber supplier of the page number that the reader is currently processing
+     */
+    public void registerReader(final IntSupplier readerPageNumber)
+    {
+        readerPageNumbers.add(readerPageNumber);
+    }
+
+    public void execute()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            if (removeRetiredPages())
+            {
+                idler.reset();
+            }
+            else
+            {
+                idler.idle();
+            }
+        }
+    }
+
+    boolean removeRetiredPages()
+    {
+        final int currentPageNumber = pageCache.getCurrentPageNumber();
+        final int limit = Math.min(currentPageNumber, lowestReaderPageNumber());
+        boolean pageRemoved = false;
+        int pageNumber = pageIndex.getLowestRetainedPageNumber();
+        while (pageNumber < limit)
+        {
+            final Path pagePath = Filenames.forPageNumber(pageNumber, pageCache.getPath());
+            if (Files.exists(pagePath))
+            {
+                if (retentionPolicy.shouldRetain(pageNumber, currentPageNumber,
+                        pageCache.getPageSize(), lastModifiedMillis(pagePath)))
+                {
+                    break;
+                }
+                pageCache.evict(pageNumber);
+                if (unmapper.isMapped(pageNumber))
+                {
+                    break;
+                }
+                pageIndex.onPageRemoved(pageNumber);
+                dispose(pageNumber, pagePath);
+            }
+            else
+            {
+                pageIndex.onPageRemoved(pageNumber);
+            }
+            pageRemoved = true;
+            pageNumber++;
+        }
+        return pageRemoved;
+    }
+
+    private int lowestReaderPageNumber()
+    {
+        int lowest = Integer.MAX_VALUE;
+        for (int i = 0; i < readerPageNumbers.size(); i++)
+        {
+            lowest = Math.min(lowest, readerPageNumbers.get(i).getAsInt());
+        }
+        return lowest;
+    }
+
+    private void dispose(final int pageNumber, final Path pagePath)
+    {
+        try
+        {
+            if (retentionAction == RetentionAction.COMPRESS)
+            {
+                final Path archivePath = Filenames.forArchivedPageNumber(pageNumber, pageCache.getPath());
+                final Path tmpPath = archivePath.resolveSibling(archivePath.getFileName() + ".tmp");
+                try (final OutputStream output = new GZIPOutputStream(Files.newOutputStream(tmpPath)))
+                {
+                    Files.copy(pagePath, output);
+                }
+                Files.move(tmpPath, archivePath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.delete(pagePath);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long lastModifiedMillis(final Path pagePath)
+    {
+        try
+        {
+            return Files.getLastModifiedTime(pagePath).toMillis();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
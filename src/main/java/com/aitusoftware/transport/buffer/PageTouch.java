@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+/**
+ * How the {@link Preloader} faults in the memory of a page before it is written.
+ */
+public enum PageTouch
+{
+    /**
+     * Read one word of each operating-system page; the first write to each page may still take a fault,
+     * as the kernel tracks writes to file mappings.
+     */
+    READ,
+    /**
+     * Atomically add zero to one word of each operating-system page, which dirties the page
+     * without overwriting concurrent writes.
+     */
+    WRITE
+}
@@ -15,55 +15,82 @@
  */
 package com.aitusoftware.transport.buffer;
 
+import com.aitusoftware.transport.metrics.Counter;
 import com.aitusoftware.transport.threads.Idler;
 import com.aitusoftware.transport.threads.Idlers;
 
-import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 import static java.lang.Integer.getInteger;
 
+/**
+ * Faults in the memory of pages ahead of the writers of a {@link PageCache}, creating the pages if required,
+ * so that writers moving to a new page do not wait for the operating system to map its memory.
+ * <p>
+ * Pages are touched through the page-cache's loaded pages, so the memory-mapping is shared with writers
+ * in this process. <code>execute()</code> should be run on a dedicated thread.
+ */
 public final class Preloader
 {
-    private static final int PAGE_SIZE = getInteger("aitusoftware.transport.pageSize", 64);
-    private static final String THREAD_NAME = "transport-preloader";
+    public static final int DEFAULT_DEPTH = 5;
+    private static final int OS_PAGE_SIZE = getInteger("aitusoftware.transport.osPageSize", 4096);
 
     private final PageCache pageCache;
-    private final PageIndex pageIndex;
-    private final ByteBuffer buffer = ByteBuffer.allocate(1);
-    private final Idler idler = Idlers.staticPause(1, TimeUnit.MICROSECONDS);
-    private boolean pageZeroLoaded = false;
-    private int lastLoadedPage = -1;
+    private final int depth;
+    private final PageTouch touch;
+    private final boolean load;
+    private final Idler idler = Idlers.staticPause(100, TimeUnit.MICROSECONDS);
+    private Counter preloadedPages;
+    private Counter misses;
+    private int preloadedPageNumber = -1;
+    private boolean started;
 
     public Preloader(final PageCache pageCache)
     {
+        this(pageCache, DEFAULT_DEPTH, PageTouch.READ, false);
+    }
+
+    /**
+     * Creates a preloader for a page-cache.
+     *
+     * @param pageCache the page-cache
+     * @param depth     number of pages to preload ahead of the current page
+     * @param touch     how to fault in each page
+     * @param load      whether to also load the contents of each page using {@link java.nio.MappedByteBuffer#load()}
+     */
+    public Preloader(final PageCache pageCache, final int depth, final PageTouch touch, final boolean load)
+    {
+        if (depth < 1 || depth >= LoadedPageCache.CACHED_PAGE_COUNT)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Depth must be between 1 and %d: %d", LoadedPageCache.CACHED_PAGE_COUNT - 1, depth));
+        }
         this.pageCache = pageCache;
-        this.pageIndex = pageCache.getPageIndex();
+        this.depth = depth;
+        this.touch = touch;
+        this.load = load;
+    }
+
+    /**
+     * Count preloaded pages, and pages reached by a writer before they were preloaded;
+     * must be called before <code>execute()</code>.
+     *
+     * @param preloadedPages incremented when a page has been preloaded
+     * @param misses         incremented when a writer reaches a page before it has been preloaded
+     */
+    public void countPages(final Counter preloadedPages, final Counter misses)
+    {
+        this.preloadedPages = preloadedPages;
+        this.misses = misses;
     }
 
     public void execute()
     {
-        Thread.currentThread().setName(THREAD_NAME);
         while (!Thread.currentThread().isInterrupted())
         {
-            final int highestPageNumber = pageIndex.getHighestPageNumber();
-            if (highestPageNumber == 0 && !pageZeroLoaded)
+            if (preload())
             {
-                preloadPage(0);
-                pageZeroLoaded = true;
-            }
-
-            final Page page = pageCache.getPage(highestPageNumber);
-            final int position = page.nextAvailablePosition();
-            page.releaseReference();
-            if (position != 0 && highestPageNumber > lastLoadedPage)
-            {
-                preloadPage(highestPageNumber + 1);
-                preloadPage(highestPageNumber + 2);
-                preloadPage(highestPageNumber + 3);
-                preloadPage(highestPageNumber + 4);
-                preloadPage(highestPageNumber + 5);
-                lastLoadedPage = highestPageNumber + 2;
+                idler.reset();
             }
             else
             {
@@ -72,14 +99,58 @@ public final class Preloader
         }
     }
 
+    boolean preload()
+    {
+        final int currentPageNumber = pageCache.getCurrentPageNumber();
+        if (started && currentPageNumber > preloadedPageNumber)
+        {
+            countMisses(currentPageNumber - preloadedPageNumber);
+        }
+        started = true;
+
+        boolean preloaded = false;
+        final int lastPageNumber = currentPageNumber + depth;
+        for (int pageNumber = Math.max(preloadedPageNumber + 1, currentPageNumber);
+             pageNumber <= lastPageNumber; pageNumber++)
+        {
+            preloadPage(pageNumber);
+            preloadedPageNumber = pageNumber;
+            preloaded = true;
+            if (pageNumber > currentPageNumber && pageCache.getCurrentPageNumber() >= pageNumber)
+            {
+                // a writer reached the page while it was being preloaded
+                countMisses(1);
+            }
+        }
+        return preloaded;
+    }
+
     private void preloadPage(final int pageNumber)
     {
-        final Page newPage = pageCache.allocate(pageNumber);
-        for (int i = 0; i < pageCache.getPageSize() - 32; i += PAGE_SIZE)
+        final Page page = pageCache.allocate(pageNumber);
+        try
+        {
+            if (load)
+            {
+                page.load();
+            }
+            page.touch(OS_PAGE_SIZE, touch);
+        }
+        finally
+        {
+            page.releaseReference();
+        }
+        if (preloadedPages != null)
+        {
+            preloadedPages.incrementOrdered();
+        }
+    }
+
+    private void countMisses(final int pageCount)
+    {
+        if (misses != null)
         {
-            buffer.clear();
-            newPage.read(i, buffer);
+            misses.addOrdered(pageCount);
         }
-        newPage.releaseReference();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.threads.SingleThreaded;
+
+/**
+ * A contiguous run of records claimed from a single {@link Page} with one header claim
+ * and one page reference.
+ * <p>
+ * Slots are handed out in order by <code>next()</code>; each slot must be committed
+ * before the next one is requested. The page reference is released when the last
+ * slot is committed.
+ */
+@SingleThreaded
+public final class RecordBatch
+{
+    private final WritableRecord record = new WritableRecord();
+    private int[] recordLengths = new int[16];
+    private int claimedCount;
+    private int nextRecord;
+    private int nextPosition;
+    private int uncommittedCount;
+    private Page page;
+
+    /**
+     * The number of slots claimed; may be less than the requested count
+     * if the current page did not have space for every record.
+     *
+     * @return claimed slot count
+     */
+    public int size()
+    {
+        return claimedCount;
+    }
+
+    public boolean hasNext()
+    {
+        return nextRecord < claimedCount;
+    }
+
+    /**
+     * Move to the next claimed slot.
+     *
+     * @return placeholder for data, valid until <code>commit()</code> is called
+     */
+    public WritableRecord next()
+    {
+        if (!hasNext())
+        {
+            throw new IllegalStateException(String.format(
+                    "All %d records in batch have been handed out", claimedCount));
+        }
+        final int recordLength = recordLengths[nextRecord];
+        record.set(page.slice(nextPosition, recordLength), page, nextPosition, this);
+        nextPosition = Offsets.getAlignedPosition(nextPosition + recordLength + Record.HEADER_LENGTH);
+        nextRecord++;
+        return record;
+    }
+
+    void prepare(final int recordLength, final int recordCount)
+    {
+        ensureCapacity(recordCount);
+        for (int i = 0; i < recordCount; i++)
+        {
+            recordLengths[i] = recordLength;
+        }
+    }
+
+    void prepare(final int[] recordLengths, final int offset, final int recordCount)
+    {
+        ensureCapacity(recordCount);
+        System.arraycopy(recordLengths, offset, this.recordLengths, 0, recordCount);
+    }
+
+    /**
+     * Calculates how many of the requested records fit between <code>position</code>
+     * and the end of the page.
+     */
+    int claimableRecordCount(final int position, final long availableDataLength, final int recordCount)
+    {
+        int claimable = 0;
+        int recordPosition = position;
+        while (claimable < recordCount)
+        {
+            final int recordEnd = recordPosition + recordLengths[claimable] + Record.HEADER_LENGTH;
+            if (recordEnd > availableDataLength)
+            {
+                break;
+            }
+            recordPosition = Offsets.getAlignedPosition(recordEnd);
+            claimable++;
+        }
+        return claimable;
+    }
+
+    int claimedLength(final int position, final int claimedCount)
+    {
+        int recordPosition = position;
+        for (int i = 0; i < claimedCount; i++)
+        {
+            recordPosition = Offsets.getAlignedPosition(recordPosition + recordLengths[i] + Record.HEADER_LENGTH);
+        }
+        return recordPosition - position;
+    }
+
+    int recordLength(final int index)
+    {
+        return recordLengths[index];
+    }
+
+    void set(final Page page, final int position, final int claimedCount)
+    {
+        this.page = page;
+        this.nextPosition = position;
+        this.claimedCount = claimedCount;
+        this.uncommittedCount = claimedCount;
+        this.nextRecord = 0;
+    }
+
+    void onRecordCommitted()
+    {
+        if (--uncommittedCount == 0)
+        {
+            page.releaseReference();
+            page = null;
+        }
+    }
+
+    private void ensureCapacity(final int recordCount)
+    {
+        if (recordCount > recordLengths.length)
+        {
+            recordLengths = new int[Math.max(recordCount, recordLengths.length * 2)];
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import java.util.concurrent.TimeUnit;
+
+public final class RetentionPolicies
+{
+    private RetentionPolicies()
+    {
+    }
+
+    public static RetentionPolicy pageCount(final int maxPageCount)
+    {
+        return (pageNumber, currentPageNumber, pageSize, lastModifiedMillis) ->
+                currentPageNumber - pageNumber < maxPageCount;
+    }
+
+    public static RetentionPolicy age(final long maxAge, final TimeUnit maxAgeUnit)
+    {
+        final long maxAgeMillis = maxAgeUnit.toMillis(maxAge);
+        return (pageNumber, currentPageNumber, pageSize, lastModifiedMillis) ->
+                System.currentTimeMillis() - lastModifiedMillis < maxAgeMillis;
+    }
+
+    public static RetentionPolicy totalBytes(final long maxTotalBytes)
+    {
+        return (pageNumber, currentPageNumber, pageSize, lastModifiedMillis) ->
+                (currentPageNumber - pageNumber + 1) * (long) pageSize <= maxTotalBytes;
+    }
+}
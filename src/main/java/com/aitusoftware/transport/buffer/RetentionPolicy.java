@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+/**
+ * Determines whether a page that has been consumed by all readers should be kept.
+ */
+@FunctionalInterface
+public interface RetentionPolicy
+{
+    /**
+     * @param pageNumber         the candidate page
+     * @param currentPageNumber  the page currently being written to
+     * @param pageSize           the size of each page in bytes
+     * @param lastModifiedMillis the last-modified time of the candidate page file
+     * @return whether the page should be kept
+     */
+    boolean shouldRetain(int pageNumber, int currentPageNumber, int pageSize, long lastModifiedMillis);
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.files.Buffers;
+import com.aitusoftware.transport.threads.SingleThreaded;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A sparse index mapping record sequence numbers and timestamps to positions in a page-cache.
+ * <p>
+ * Entries are appended by a single writer in ascending sequence and timestamp order;
+ * lookups may be performed from any thread.
+ */
+public final class SeekIndex
+{
+    public static final String FILENAME = "seek.idx";
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_COUNT_OFFSET = 0;
+    private static final int ENTRY_SIZE = 32;
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = 8;
+    private static final int PAGE_NUMBER_OFFSET = 16;
+    private static final int POSITION_OFFSET = 20;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / ENTRY_SIZE;
+
+    private final Path indexFile;
+    private volatile Slab slab;
+
+    private SeekIndex(final Path indexFile, final Slab slab)
+    {
+        this.indexFile = indexFile;
+        this.slab = slab;
+    }
+
+    public static SeekIndex forPageCache(final Path path) throws IOException
+    {
+        final Path indexFile = path.resolve(FILENAME);
+        try
+        {
+            try (final FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+            {
+                // created empty; the mapping below sets the initial length
+            }
+        }
+        catch (IOException e)
+        {
+            // already created
+        }
+        final long existingLength = indexFile.toFile().length();
+        final long capacity = Math.max(toFileSize(INITIAL_CAPACITY), existingLength);
+
+        return new SeekIndex(indexFile, SlabFactory.createSlab(Buffers.map(indexFile, capacity)));
+    }
+
+    @SingleThreaded
+    public void append(final long sequence, final long timestampMillis, final int pageNumber, final int position)
+    {
+        final int entryCount = getEntryCount();
+        if (entryCount != 0 &&
+                (sequence <= sequenceAt(entryCount - 1) || timestampMillis < timestampAt(entryCount - 1)))
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Entries must be appended in order: sequence %d, timestamp %d", sequence, timestampMillis));
+        }
+        final Slab target = ensureCapacity(entryCount + 1);
+        final int offset = toEntryOffset(entryCount);
+        target.writeOrderedLong(offset + SEQUENCE_OFFSET, sequence);
+        target.writeOrderedLong(offset + TIMESTAMP_OFFSET, timestampMillis);
+        target.writeOrderedInt(offset + PAGE_NUMBER_OFFSET, pageNumber);
+        target.writeOrderedInt(offset + POSITION_OFFSET, position);
+        target.writeOrderedInt(ENTRY_COUNT_OFFSET, entryCount + 1);
+    }
+
+    public int getEntryCount()
+    {
+        final Slab current = slab;
+        return Math.min(current.getIntVolatile(ENTRY_COUNT_OFFSET), toCapacity(current));
+    }
+
+    /**
+     * Find the last entry with a sequence number less than or equal to <code>sequence</code>.
+     *
+     * @param sequence the target sequence number
+     * @return the entry index, or <code>-1</code> if there is no such entry
+     */
+    public int findBySequence(final long sequence)
+    {
+        int low = 0;
+        int high = getEntryCount() - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (sequenceAt(mid) <= sequence)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Find the last entry with a timestamp less than or equal to <code>timestampMillis</code>.
+     *
+     * @param timestampMillis the target epoch timestamp in milliseconds
+     * @return the entry index, or <code>-1</code> if there is no such entry
+     */
+    public int findByTimestamp(final long timestampMillis)
+    {
+        int low = 0;
+        int high = getEntryCount() - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (timestampAt(mid) <= timestampMillis)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    public long sequenceAt(final int entry)
+    {
+        return slab.getLongVolatile(toEntryOffset(entry) + SEQUENCE_OFFSET);
+    }
+
+    public long timestampAt(final int entry)
+    {
+        return slab.getLongVolatile(toEntryOffset(entry) + TIMESTAMP_OFFSET);
+    }
+
+    public int pageNumberAt(final int entry)
+    {
+        return slab.getIntVolatile(toEntryOffset(entry) + PAGE_NUMBER_OFFSET);
+    }
+
+    public int positionAt(final int entry)
+    {
+        return slab.getIntVolatile(toEntryOffset(entry) + POSITION_OFFSET);
+    }
+
+    private Slab ensureCapacity(final int entryCount)
+    {
+        final Slab current = slab;
+        final int capacity = toCapacity(current);
+        if (entryCount <= capacity)
+        {
+            return current;
+        }
+        if (capacity == MAX_CAPACITY)
+        {
+            throw new IllegalStateException("Seek index is full: " + indexFile);
+        }
+        try
+        {
+            final int newCapacity = (int) Math.min((long) capacity * 2, MAX_CAPACITY);
+            final Slab resized = SlabFactory.createSlab(Buffers.map(indexFile, toFileSize(newCapacity)));
+            slab = resized;
+            return resized;
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to resize seek index: " + indexFile, e);
+        }
+    }
+
+    private static int toEntryOffset(final int entry)
+    {
+        return HEADER_SIZE + (entry * ENTRY_SIZE);
+    }
+
+    private static int toCapacity(final Slab slab)
+    {
+        return (slab.capacity() - HEADER_SIZE) / ENTRY_SIZE;
+    }
+
+    private static long toFileSize(final int capacity)
+    {
+        return HEADER_SIZE + ((long) capacity * ENTRY_SIZE);
+    }
+}
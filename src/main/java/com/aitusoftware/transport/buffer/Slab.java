@@ -69,6 +69,11 @@ public final class Slab
         return (long) LONG_ARRAY_VIEW.getVolatile(backingStore, offset);
     }
 
+    public void writeOrderedLong(final int offset, final long value)
+    {
+        LONG_ARRAY_VIEW.setRelease(backingStore, offset, value);
+    }
+
     public boolean compareAndSetInt(final int offset, final int expected, final int updated)
     {
         return INT_ARRAY_VIEW.compareAndSet(backingStore, offset, expected, updated);
@@ -127,6 +132,14 @@ public final class Slab
         return buffer.toString();
     }
 
+    void load()
+    {
+        if (backingStore instanceof MappedByteBuffer)
+        {
+            ((MappedByteBuffer) backingStore).load();
+        }
+    }
+
     void unmap()
     {
         try
@@ -15,6 +15,7 @@
  */
 package com.aitusoftware.transport.buffer;
 
+import com.aitusoftware.transport.metrics.Counter;
 import com.aitusoftware.transport.threads.Idler;
 import com.aitusoftware.transport.threads.Idlers;
 
@@ -28,12 +29,30 @@ public final class Unmapper
 {
     private final Queue<Page> activePages = new ConcurrentLinkedQueue<>();
     private final Idler idler = Idlers.staticPause(1, TimeUnit.MILLISECONDS);
+    private Counter pageUnmaps;
 
     void registerPage(final Page page)
     {
         activePages.add(page);
     }
 
+    void countUnmaps(final Counter pageUnmaps)
+    {
+        this.pageUnmaps = pageUnmaps;
+    }
+
+    boolean isMapped(final int pageNumber)
+    {
+        for (Page page : activePages)
+        {
+            if (page.getPageNumber() == pageNumber)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void execute()
     {
         while (!Thread.currentThread().isInterrupted())
@@ -47,6 +66,10 @@ public final class Unmapper
                     idle = false;
                     page.unmap();
                     forRemoval.add(page);
+                    if (pageUnmaps != null)
+                    {
+                        pageUnmaps.incrementOrdered();
+                    }
                 }
             }
             activePages.removeAll(forRemoval);
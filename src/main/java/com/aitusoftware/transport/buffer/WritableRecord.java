@@ -26,6 +26,7 @@ public final class WritableRecord
     private Page page;
     private int headerOffset;
     private int recordLength;
+    private RecordBatch batch;
 
     public ByteBuffer buffer()
     {
@@ -35,14 +36,27 @@ public final class WritableRecord
     public void commit()
     {
         page.writeReadyHeader(headerOffset, recordLength);
-        page.releaseReference();
+        if (batch == null)
+        {
+            page.releaseReference();
+        }
+        else
+        {
+            batch.onRecordCommitted();
+        }
     }
 
     void set(final ByteBuffer buffer, final Page page, final int headerOffset)
+    {
+        set(buffer, page, headerOffset, null);
+    }
+
+    void set(final ByteBuffer buffer, final Page page, final int headerOffset, final RecordBatch batch)
     {
         this.buffer = buffer;
         this.recordLength = buffer.remaining();
         this.page = page;
         this.headerOffset = headerOffset;
+        this.batch = batch;
     }
 }
\ No newline at end of file
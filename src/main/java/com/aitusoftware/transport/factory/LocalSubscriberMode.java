@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.factory;
+
+/**
+ * Determines how a local subscriber receives messages from another service's publisher page-cache.
+ */
+public enum LocalSubscriberMode
+{
+    /**
+     * Records are copied into this service's subscriber page-cache, and dispatched
+     * to the subscriber on the inbound message thread.
+     */
+    COPYING,
+    /**
+     * Records are dispatched to the subscriber directly from the publisher's page-cache,
+     * on a thread dedicated to the subscription.
+     */
+    DIRECT
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.factory;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.messaging.RecordTimestamps;
+import com.aitusoftware.transport.messaging.proxy.AbstractPublisher;
+import com.aitusoftware.transport.metrics.StageLatencies;
+import com.aitusoftware.transport.net.AddressSpace;
+import com.aitusoftware.transport.net.DemultiplexingTopicMessageHandler;
+import com.aitusoftware.transport.net.MultiChannelTopicMessageHandler;
+import com.aitusoftware.transport.net.OutputChannel;
+import com.aitusoftware.transport.net.ResendPositions;
+import com.aitusoftware.transport.net.SingleChannelTopicMessageHandler;
+import com.aitusoftware.transport.net.TopicMessageHandler;
+import com.aitusoftware.transport.net.TopicToChannelMapper;
+import com.aitusoftware.transport.net.WriteCoalescing;
+import com.aitusoftware.transport.reader.ReaderCursor;
+import com.aitusoftware.transport.reader.StreamingReader;
+import com.aitusoftware.transport.threads.Idler;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.aitusoftware.transport.factory.Named.named;
+import static com.aitusoftware.transport.factory.SocketMapper.connectSocket;
+import static com.aitusoftware.transport.net.FilteringTopicMessageHandler.filter;
+import static com.aitusoftware.transport.net.TimestampingTopicMessageHandler.timestamp;
+
+/**
+ * Creates the readers that send messages published by a service to remote subscribers.
+ */
+final class OutboundReaders
+{
+    private static final String DEMULTIPLEXING_READER_NAME = "outbound-publisher";
+
+    private final SocketMapper socketMapper = new SocketMapper();
+    private final Int2ObjectHashMap<Media[]> publisherMedia = new Int2ObjectHashMap<>();
+    private final Int2ObjectHashMap<PageCache> topicPublisherPageCaches = new Int2ObjectHashMap<>();
+    private final PageCache publisherPageCache;
+    private final AddressSpace addressSpace;
+    private final Function<Class<?>, Idler> publisherIdlerFactory;
+    private final StageLatencies stageLatencies;
+    private final ServiceCounters serviceCounters;
+    private final PageCacheMaintenance pageCacheMaintenance;
+    private final Function<String, ReaderCursor> cursors;
+    private WriteCoalescing writeCoalescing = WriteCoalescing.DISABLED;
+    private Idler demultiplexingReaderIdler;
+
+    OutboundReaders(
+            final PageCache publisherPageCache, final AddressSpace addressSpace,
+            final Function<Class<?>, Idler> publisherIdlerFactory, final StageLatencies stageLatencies,
+            final ServiceCounters serviceCounters, final PageCacheMaintenance pageCacheMaintenance,
+            final Function<String, ReaderCursor> cursors)
+    {
+        this.publisherPageCache = publisherPageCache;
+        this.addressSpace = addressSpace;
+        this.publisherIdlerFactory = publisherIdlerFactory;
+        this.stageLatencies = stageLatencies;
+        this.serviceCounters = serviceCounters;
+        this.pageCacheMaintenance = pageCacheMaintenance;
+        this.cursors = cursors;
+    }
+
+    void addPublisher(final int topicId, final PageCache pageCache, final Media[] media)
+    {
+        if (pageCache != publisherPageCache)
+        {
+            topicPublisherPageCaches.put(topicId, pageCache);
+        }
+        publisherMedia.put(topicId, media);
+    }
+
+    void coalesceWrites(final WriteCoalescing writeCoalescing)
+    {
+        this.writeCoalescing = writeCoalescing;
+    }
+
+    void demultiplex(final Idler idler)
+    {
+        this.demultiplexingReaderIdler = idler;
+    }
+
+    Collection<Named<StreamingReader>> createReaders(
+            final Collection<AbstractPublisher> publishers, final Int2ObjectHashMap<Class<?>> topicIdToTopic)
+    {
+        final Collection<Named<StreamingReader>> namedPublishers = new ArrayList<>(publishers.size());
+        // only used by the demultiplexing reader's thread
+        final TopicToChannelMapper channelMapper = serviceCounters.channelMapper(DEMULTIPLEXING_READER_NAME, socketMapper);
+        final DemultiplexingTopicMessageHandler demultiplexingHandler = new DemultiplexingTopicMessageHandler();
+        final ResendPositions demultiplexingResendPositions = new ResendPositions();
+        publishers.forEach(publisher -> {
+            final int topicId = publisher.getTopicId();
+            if (Arrays.binarySearch(publisherMedia.get(topicId), Media.TCP) < 0)
+            {
+                return;
+            }
+
+            final Class<?> topicDefinition = topicIdToTopic.get(topicId);
+
+            final List<SocketAddress> receiverAddresses = addressSpace.addressesOf(topicDefinition);
+            final String readerName = "outbound-publisher-" + topicDefinition.getName();
+            final PageCache pageCache = topicPublisherPageCaches.getOrDefault(topicId, publisherPageCache);
+            if (demultiplexingReaderIdler != null && pageCache == publisherPageCache)
+            {
+                if (receiverAddresses.size() == 1)
+                {
+                    socketMapper.addAddress(topicId, addressSpace.addressOf(topicDefinition));
+                    demultiplexingHandler.register(topicId,
+                            timestamped(new SingleChannelTopicMessageHandler(
+                                    channelMapper, writeCoalescing, demultiplexingResendPositions)));
+                }
+                else
+                {
+                    demultiplexingHandler.register(topicId, timestamped(new MultiChannelTopicMessageHandler(
+                            serviceCounters.channelMapper(topicDefinition.getName(),
+                                    i -> connectSocket(receiverAddresses.get(i))),
+                            receiverAddresses.size(), writeCoalescing, demultiplexingResendPositions)));
+                }
+            }
+            else if (receiverAddresses.size() == 1)
+            {
+                final SocketAddress receiverAddress = addressSpace.addressOf(topicDefinition);
+                final ResendPositions resendPositions = new ResendPositions();
+                namedPublishers.add(createPublisherReader(readerName, topicDefinition, topicId, pageCache,
+                        new SingleChannelTopicMessageHandler(serviceCounters.channelMapper(
+                                topicDefinition.getName(), t -> connectSocket(receiverAddress)),
+                                writeCoalescing, resendPositions), resendPositions));
+            }
+            else
+            {
+                // each destination has its own reader, so that a slow subscriber does not delay the others
+                for (int i = 0; i < receiverAddresses.size(); i++)
+                {
+                    final SocketAddress receiverAddress = receiverAddresses.get(i);
+                    final String destinationName = topicDefinition.getName() + "-" + i;
+                    final ResendPositions resendPositions = new ResendPositions();
+                    namedPublishers.add(createPublisherReader(readerName + "-" + i, topicDefinition, topicId, pageCache,
+                            new SingleChannelTopicMessageHandler(
+                                    serviceCounters.channelMapper(destinationName, t -> connectSocket(receiverAddress)),
+                                    writeCoalescing, resendPositions), resendPositions));
+                }
+            }
+        });
+        if (!demultiplexingHandler.isEmpty())
+        {
+            final String readerName = DEMULTIPLEXING_READER_NAME;
+            final StreamingReader outboundReader = new StreamingReader(publisherPageCache,
+                    new OutputChannel(demultiplexingHandler), true,
+                    serviceCounters.countIdleCycles(readerName, demultiplexingReaderIdler), cursors.apply(readerName));
+            pageCacheMaintenance.addReader(outboundReader, publisherPageCache, demultiplexingResendPositions);
+            namedPublishers.add(named(readerName, outboundReader));
+        }
+        return namedPublishers;
+    }
+
+    private Named<StreamingReader> createPublisherReader(
+            final String readerName, final Class<?> topicDefinition,
+            final int topicId, final PageCache pageCache, final TopicMessageHandler messageHandler,
+            final ResendPositions resendPositions)
+    {
+        // a page-cache dedicated to the topic needs no filtering
+        final TopicMessageHandler timestampedHandler = timestamped(messageHandler);
+        final OutputChannel outputChannel = new OutputChannel(
+                pageCache == publisherPageCache ? filter(topicId, timestampedHandler) : timestampedHandler);
+        final StreamingReader outboundReader =
+                new StreamingReader(pageCache, outputChannel,
+                        true, serviceCounters.countIdleCycles(readerName, publisherIdlerFactory.apply(topicDefinition)),
+                        cursors.apply(readerName));
+        pageCacheMaintenance.addReader(outboundReader, pageCache, resendPositions);
+        return named(readerName, outboundReader);
+    }
+
+    private TopicMessageHandler timestamped(final TopicMessageHandler messageHandler)
+    {
+        return RecordTimestamps.ENABLED ? timestamp(stageLatencies, messageHandler) : messageHandler;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.factory;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.PageRetention;
+import com.aitusoftware.transport.buffer.PageTouch;
+import com.aitusoftware.transport.buffer.Preloader;
+import com.aitusoftware.transport.buffer.RetentionAction;
+import com.aitusoftware.transport.buffer.RetentionPolicy;
+import com.aitusoftware.transport.buffer.SeekIndex;
+import com.aitusoftware.transport.metrics.Counters;
+import com.aitusoftware.transport.net.ResendPositions;
+import com.aitusoftware.transport.reader.SeekIndexer;
+import com.aitusoftware.transport.reader.StreamingReader;
+import com.aitusoftware.transport.threads.Idlers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static com.aitusoftware.transport.factory.Named.named;
+
+/**
+ * Tracks the page-caches of a service, and the readers of each, in order to create the tasks
+ * that maintain them: page retention, unmapping, pre-allocation, preloading and seek indexing.
+ */
+final class PageCacheMaintenance
+{
+    private static final String SEEK_INDEXER_NAME_PREFIX = "seek-indexer-";
+
+    private final Map<String, PageCache> pageCaches = new LinkedHashMap<>();
+    private final Map<StreamingReader, PageCache> readerPageCaches = new IdentityHashMap<>();
+    private final Map<StreamingReader, ResendPositions> readerResendPositions = new IdentityHashMap<>();
+    private final ServiceCounters serviceCounters;
+    private RetentionPolicy retentionPolicy;
+    private RetentionAction retentionAction;
+    private int seekIndexRecordInterval;
+    private int preallocatedPageCount;
+    private int preloadDepth;
+    private PageTouch preloadTouch;
+    private boolean preloadLoad;
+
+    PageCacheMaintenance(final ServiceCounters serviceCounters)
+    {
+        this.serviceCounters = serviceCounters;
+    }
+
+    void addPageCache(final String directoryName, final PageCache pageCache)
+    {
+        serviceCounters.countPageEvents(directoryName, pageCache);
+        pageCaches.put(directoryName, pageCache);
+    }
+
+    PageCache getPageCache(final String directoryName)
+    {
+        return pageCaches.get(directoryName);
+    }
+
+    void addReader(final StreamingReader reader, final PageCache pageCache)
+    {
+        readerPageCaches.put(reader, pageCache);
+    }
+
+    void addReader(final StreamingReader reader, final PageCache pageCache, final ResendPositions resendPositions)
+    {
+        addReader(reader, pageCache);
+        readerResendPositions.put(reader, resendPositions);
+    }
+
+    void retainPages(final RetentionPolicy retentionPolicy, final RetentionAction retentionAction)
+    {
+        this.retentionPolicy = retentionPolicy;
+        this.retentionAction = retentionAction;
+    }
+
+    void indexPages(final int recordInterval)
+    {
+        if (recordInterval < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Record interval must be positive: %d", recordInterval));
+        }
+        this.seekIndexRecordInterval = recordInterval;
+    }
+
+    void preallocatePages(final int pageCount)
+    {
+        if (pageCount < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Page count must be positive: %d", pageCount));
+        }
+        this.preallocatedPageCount = pageCount;
+    }
+
+    void preloadPages(final int depth, final PageTouch touch, final boolean load)
+    {
+        if (depth < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Depth must be positive: %d", depth));
+        }
+        this.preloadDepth = depth;
+        this.preloadTouch = touch;
+        this.preloadLoad = load;
+    }
+
+    Collection<Named<StreamingReader>> createIndexingReaders()
+    {
+        final Collection<Named<StreamingReader>> indexingReaders = new ArrayList<>();
+        if (seekIndexRecordInterval != 0)
+        {
+            pageCaches.forEach((directoryName, pageCache) -> {
+                final String readerName = SEEK_INDEXER_NAME_PREFIX + directoryName;
+                final StreamingReader indexingReader = createIndexingReader(readerName, pageCache);
+                indexingReaders.add(named(readerName, indexingReader));
+                readerPageCaches.put(indexingReader, pageCache);
+            });
+        }
+        return indexingReaders;
+    }
+
+    Collection<Named<Runnable>> createMaintenanceTasks()
+    {
+        final Collection<Named<Runnable>> maintenanceTasks = new ArrayList<>();
+        if (retentionPolicy != null)
+        {
+            final Map<PageCache, PageRetention> pageRetentions = new IdentityHashMap<>();
+            pageCaches.values().forEach(pageCache -> pageRetentions.put(pageCache,
+                    new PageRetention(pageCache, retentionPolicy, retentionAction)));
+            readerPageCaches.forEach((reader, pageCache) ->
+                    pageRetentions.get(pageCache).registerReader(lowestRequiredPageNumber(reader)));
+
+            pageCaches.forEach((directoryName, pageCache) -> maintenanceTasks.add(
+                    named("unmapper-" + directoryName, pageCache.getUnmapper()::execute)));
+            pageCaches.forEach((directoryName, pageCache) -> maintenanceTasks.add(
+                    named("page-retention-" + directoryName, pageRetentions.get(pageCache)::execute)));
+        }
+        if (preallocatedPageCount != 0)
+        {
+            pageCaches.forEach((directoryName, pageCache) -> maintenanceTasks.add(
+                    named("page-preallocator-" + directoryName, pageCache.preallocatePages(preallocatedPageCount,
+                            serviceCounters.newCounter(Counters.PAGE_PREALLOCATION_MISSES + directoryName))::execute)));
+        }
+        if (preloadDepth != 0)
+        {
+            pageCaches.forEach((directoryName, pageCache) -> maintenanceTasks.add(
+                    named("preloader-" + directoryName, createPreloader(directoryName, pageCache)::execute)));
+        }
+        return maintenanceTasks;
+    }
+
+    private IntSupplier lowestRequiredPageNumber(final StreamingReader reader)
+    {
+        // outbound readers may be rewound to records that were buffered, but not sent
+        final ResendPositions resendPositions = readerResendPositions.get(reader);
+        if (resendPositions == null)
+        {
+            return reader::getPageNumber;
+        }
+        return () -> resendPositions.lowestPageNumber(reader.getPageNumber());
+    }
+
+    private StreamingReader createIndexingReader(final String readerName, final PageCache pageCache)
+    {
+        try
+        {
+            return SeekIndexer.createIndexingReader(pageCache, SeekIndex.forPageCache(pageCache.getPath()),
+                    seekIndexRecordInterval,
+                    serviceCounters.countIdleCycles(readerName, Idlers.staticPause(1, TimeUnit.MILLISECONDS)));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Preloader createPreloader(final String directoryName, final PageCache pageCache)
+    {
+        final Preloader preloader = new Preloader(pageCache, preloadDepth, preloadTouch, preloadLoad);
+        preloader.countPages(serviceCounters.newCounter(Counters.PAGE_PRELOADS + directoryName),
+                serviceCounters.newCounter(Counters.PAGE_PRELOAD_MISSES + directoryName));
+        return preloader;
+    }
+}
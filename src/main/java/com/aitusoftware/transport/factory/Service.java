@@ -15,12 +15,15 @@
  */
 package com.aitusoftware.transport.factory;
 
+import com.aitusoftware.transport.metrics.StageLatencies;
 import com.aitusoftware.transport.net.Server;
+import com.aitusoftware.transport.reader.ReaderLagConsumer;
 import com.aitusoftware.transport.reader.StreamingReader;
 
 import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
 
 import static com.aitusoftware.transport.threads.Threads.daemonFactory;
 import static com.aitusoftware.transport.threads.Threads.loggingRunnable;
@@ -31,19 +34,28 @@ public final class Service
 {
     private final StreamingReader inboundReader;
     private final Collection<Named<StreamingReader>> readers;
+    private final Collection<Named<StreamingReader>> outboundReaders;
+    private final Collection<Named<Runnable>> maintenanceTasks;
     private final Server server;
     private final boolean hasRemoteSubscribers;
+    private final StageLatencies stageLatencies;
     private final ExecutorService executor =
             newCachedThreadPool(daemonFactory());
 
     Service(final StreamingReader inboundReader,
             final Collection<Named<StreamingReader>> readers,
-            final Server server, final boolean hasRemoteSubscribers)
+            final Collection<Named<StreamingReader>> outboundReaders,
+            final Server server, final boolean hasRemoteSubscribers,
+            final Collection<Named<Runnable>> maintenanceTasks,
+            final StageLatencies stageLatencies)
     {
         this.inboundReader = inboundReader;
         this.readers = readers;
+        this.outboundReaders = outboundReaders;
+        this.maintenanceTasks = maintenanceTasks;
         this.server = server;
         this.hasRemoteSubscribers = hasRemoteSubscribers;
+        this.stageLatencies = stageLatencies;
     }
 
     public void start()
@@ -52,7 +64,10 @@ public final class Service
             executor.submit(loggingRunnable(namedThread(reader.name(),
                     reader.value()::process)));
         });
-        executor.submit(loggingRunnable(namedThread("inbound-message-dispatcher", inboundReader::process)));
+        executor.submit(loggingRunnable(namedThread(ServiceFactory.INBOUND_READER_NAME, inboundReader::process)));
+        maintenanceTasks.forEach(task -> {
+            executor.submit(loggingRunnable(namedThread(task.name(), task.value())));
+        });
         if (hasRemoteSubscribers)
         {
             server.start(executor);
@@ -60,6 +75,51 @@ public final class Service
         }
     }
 
+    /**
+     * Reports the lag, in bytes, of each reader sending published messages to remote subscribers.
+     * <p>
+     * Readers are named <code>outbound-publisher-&lt;topic&gt;</code>, using the fully-qualified name of the
+     * topic class; where a topic has several remote subscribers, each destination has its own reader,
+     * suffixed with the index of its address.
+     * If outbound messages are demultiplexed, topics in the shared publisher page-cache are sent
+     * by a single reader named <code>outbound-publisher</code>.
+     *
+     * @param consumer receives the reader name and its lag
+     */
+    public void outboundLag(final ObjLongConsumer<String> consumer)
+    {
+        outboundReaders.forEach(reader -> consumer.accept(reader.name(), reader.value().getLag()));
+    }
+
+    /**
+     * Reports the lag of each of this service's readers behind the writer of its page-cache,
+     * in bytes and estimated records; see {@link StreamingReader#getLagRecords()}.
+     *
+     * @param consumer receives the reader name and its lag
+     */
+    public void readerLag(final ReaderLagConsumer consumer)
+    {
+        consumer.accept(ServiceFactory.INBOUND_READER_NAME, inboundReader.getLag(), inboundReader.getLagRecords());
+        readers.forEach(reader ->
+                consumer.accept(reader.name(), reader.value().getLag(), reader.value().getLagRecords()));
+    }
+
+    /**
+     * Reports, for each topic and {@link com.aitusoftware.transport.metrics.LatencyStage}, a histogram
+     * of the latencies recorded since the previous call.
+     * <p>
+     * Latencies are only recorded when the JVM is started with
+     * <code>-D{@value com.aitusoftware.transport.messaging.RecordTimestamps#SYSTEM_PROPERTY}=true</code>;
+     * otherwise no snapshots are reported. Stages that span two hosts compare <code>System.nanoTime()</code>
+     * values from different clocks, and are only meaningful when both services share a host.
+     *
+     * @param consumer receives the topic, stage and interval histogram
+     */
+    public void stageLatencies(final StageLatencies.SnapshotConsumer consumer)
+    {
+        stageLatencies.snapshot(consumer);
+    }
+
     public boolean stop(final long timeout, final TimeUnit timeUnit)
     {
         executor.shutdownNow();
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.factory;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.metrics.Counter;
+import com.aitusoftware.transport.metrics.Counters;
+import com.aitusoftware.transport.net.TopicToChannelMapper;
+import com.aitusoftware.transport.reader.ReaderLagListener;
+import com.aitusoftware.transport.reader.ReaderLagMonitor;
+import com.aitusoftware.transport.reader.StreamingReader;
+import com.aitusoftware.transport.threads.Idler;
+import com.aitusoftware.transport.threads.Idlers;
+
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static com.aitusoftware.transport.factory.Named.named;
+
+/**
+ * Creates the counters of the components built by {@link ServiceFactory}, and monitors reader lag.
+ */
+final class ServiceCounters
+{
+    private final Counters counters;
+    private ReaderLagMonitor readerLagMonitor;
+
+    ServiceCounters(final Counters counters)
+    {
+        this.counters = counters;
+    }
+
+    void monitorReaderLag(
+            final long maxLagBytes, final long maxLagRecords,
+            final long checkInterval, final TimeUnit unit, final ReaderLagListener listener)
+    {
+        this.readerLagMonitor = new ReaderLagMonitor(
+                maxLagBytes, maxLagRecords, listener, Idlers.staticPause(checkInterval, unit));
+    }
+
+    void monitorLag(final Collection<Named<StreamingReader>> readers)
+    {
+        if (readerLagMonitor != null)
+        {
+            readers.forEach(reader -> readerLagMonitor.registerReader(reader.name(), reader.value(),
+                    counters.newCounter(Counters.READER_LAG_BYTES + reader.name()),
+                    counters.newCounter(Counters.SLOW_CONSUMER_EVENTS + reader.name())));
+        }
+    }
+
+    void addLagMonitorTask(final Collection<Named<Runnable>> maintenanceTasks)
+    {
+        if (readerLagMonitor != null)
+        {
+            maintenanceTasks.add(named("reader-lag-monitor", readerLagMonitor::execute));
+        }
+    }
+
+    Counter newCounter(final String label)
+    {
+        return counters.newCounter(label);
+    }
+
+    void countPageEvents(final String directoryName, final PageCache pageCache)
+    {
+        pageCache.countPageEvents(counters.newCounter(Counters.PAGE_ROLLOVERS + directoryName),
+                counters.newCounter(Counters.PAGE_ALLOCATIONS + directoryName),
+                counters.newCounter(Counters.PAGE_UNMAPS + directoryName));
+    }
+
+    Idler countIdleCycles(final String threadName, final Idler idler)
+    {
+        return Idlers.counting(idler, counters.newCounter(Counters.IDLE_CYCLES + threadName));
+    }
+
+    // each mapper is used by a single thread, so has its own counters
+    TopicToChannelMapper channelMapper(final String name, final IntFunction<SocketChannel> connector)
+    {
+        return new TopicToChannelMapper(connector,
+                counters.newCounter(Counters.RECONNECTS + name), counters.newCounter(Counters.DROPPED_WRITES + name));
+    }
+}
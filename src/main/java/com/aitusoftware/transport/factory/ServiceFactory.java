@@ -16,21 +16,30 @@
 package com.aitusoftware.transport.factory;
 
 import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.PageTouch;
+import com.aitusoftware.transport.buffer.RetentionAction;
+import com.aitusoftware.transport.buffer.RetentionPolicy;
+import com.aitusoftware.transport.messaging.SingleTopicRecordHandler;
+import com.aitusoftware.transport.messaging.RecordTimestamps;
+import com.aitusoftware.transport.messaging.Storage;
+import com.aitusoftware.transport.messaging.Topic;
 import com.aitusoftware.transport.messaging.TopicDispatcherRecordHandler;
 import com.aitusoftware.transport.messaging.TopicIdCalculator;
 import com.aitusoftware.transport.messaging.proxy.AbstractPublisher;
+import com.aitusoftware.transport.messaging.proxy.AbstractSubscriber;
 import com.aitusoftware.transport.messaging.proxy.PublisherFactory;
 import com.aitusoftware.transport.messaging.proxy.Subscriber;
 import com.aitusoftware.transport.messaging.proxy.SubscriberFactory;
+import com.aitusoftware.transport.metrics.Counters;
+import com.aitusoftware.transport.metrics.StageLatencies;
 import com.aitusoftware.transport.net.AddressSpace;
-import com.aitusoftware.transport.net.MultiChannelTopicMessageHandler;
-import com.aitusoftware.transport.net.OutputChannel;
 import com.aitusoftware.transport.net.Server;
 import com.aitusoftware.transport.net.ServerSocketFactory;
-import com.aitusoftware.transport.net.SingleChannelTopicMessageHandler;
-import com.aitusoftware.transport.net.TopicMessageHandler;
-import com.aitusoftware.transport.net.TopicToChannelMapper;
+import com.aitusoftware.transport.net.WriteCoalescing;
 import com.aitusoftware.transport.reader.CopyingRecordHandler;
+import com.aitusoftware.transport.reader.ReaderCursor;
+import com.aitusoftware.transport.reader.ReaderLagListener;
+import com.aitusoftware.transport.reader.RecordHandler;
 import com.aitusoftware.transport.reader.StreamingReader;
 import com.aitusoftware.transport.threads.Idler;
 import com.aitusoftware.transport.threads.Idlers;
@@ -40,27 +49,27 @@ import org.agrona.collections.IntHashSet;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.SocketAddress;
-import java.nio.channels.SocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.function.IntFunction;
 import java.util.function.ToIntFunction;
 
 import static com.aitusoftware.transport.factory.Named.named;
-import static com.aitusoftware.transport.net.FilteringTopicMessageHandler.filter;
 
 public final class ServiceFactory
 {
     public static final String PUBLISHER_PAGE_CACHE_PATH = "pub";
     public static final String SUBSCRIBER_PAGE_CACHE_PATH = "sub";
+    public static final String READER_CURSOR_PATH = "readers";
     public static final int PAGE_SIZE = 4096 * 64;
+    static final String INBOUND_READER_NAME = "inbound-message-dispatcher";
 
     private final PublisherFactory publisherFactory;
     private final PageCache subscriberPageCache;
@@ -70,18 +79,22 @@ public final class ServiceFactory
     private final IntHashSet topicIds = new IntHashSet();
     private final SubscriberFactory subscriberFactory;
     private final PageCache publisherPageCache;
-    private final SocketMapper socketMapper = new SocketMapper();
     private final List<AbstractPublisher> publishers = new ArrayList<>();
     private final List<Subscriber<?>> subscribers = new ArrayList<>();
     private final List<StreamingReader> readers = new ArrayList<>();
     private final ServerSocketFactory socketFactory;
-    private final Function<Class<?>, Idler> publisherIdlerFactory;
     private final ToIntFunction<Class<?>> topicToSubscriberIndexMapper;
     private final SubscriberThreading subscriberThreading;
-    private final Int2ObjectHashMap<Media[]> publisherMedia = new Int2ObjectHashMap<>();
     private final Collection<Named<StreamingReader>> localIpcReaders = new ArrayList<>();
     private final IdlerConfig idlerConfig;
+    private final Path readerCursorPath;
+    private final Path pageCachePath;
+    private final StageLatencies stageLatencies = new StageLatencies();
+    private final ServiceCounters serviceCounters;
+    private final PageCacheMaintenance pageCacheMaintenance;
+    private final OutboundReaders outboundReaders;
     private boolean hasRemoteSubscribers = false;
+    private int serverIoThreadCount = 1;
 
     public ServiceFactory(
             final Path pageCachePath, final ServerSocketFactory socketFactory,
@@ -93,14 +106,22 @@ public final class ServiceFactory
     {
         createRequiredDirectories(pageCachePath);
         this.idlerConfig = idlerConfig;
+        readerCursorPath = readerCursorDirectory(pageCachePath);
+        serviceCounters = new ServiceCounters(
+                Counters.create(countersPath(pageCachePath), Counters.DEFAULT_CAPACITY));
+        pageCacheMaintenance = new PageCacheMaintenance(serviceCounters);
         publisherPageCache = PageCache.create(publisherDirectory(pageCachePath), PAGE_SIZE);
         subscriberPageCache = PageCache.create(subscriberDirectory(pageCachePath), PAGE_SIZE);
+        this.pageCachePath = pageCachePath;
+        pageCacheMaintenance.addPageCache(PUBLISHER_PAGE_CACHE_PATH, publisherPageCache);
+        pageCacheMaintenance.addPageCache(SUBSCRIBER_PAGE_CACHE_PATH, subscriberPageCache);
         this.addressSpace = addressSpace;
         this.topicToSubscriberIndexMapper = topicToSubscriberIndexMapper;
         publisherFactory = new PublisherFactory(publisherPageCache);
         subscriberFactory = new SubscriberFactory();
         this.socketFactory = socketFactory;
-        this.publisherIdlerFactory = publisherIdlerFactory;
+        outboundReaders = new OutboundReaders(publisherPageCache, addressSpace, publisherIdlerFactory,
+                stageLatencies, serviceCounters, pageCacheMaintenance, this::cursorFor);
         this.subscriberThreading = subscriberThreading;
     }
 
@@ -113,12 +134,28 @@ public final class ServiceFactory
         this(pageCachePath, socketFactory, addressSpace, cls -> 0, publisherIdlerFactory, subscriberThreading, idlerConfig);
     }
 
+    /**
+     * Creates a publisher for a topic.
+     * <p>
+     * Messages are written to the shared publisher page-cache, unless the topic is annotated
+     * with {@link Storage#PER_TOPIC}, in which case the topic has its own page-cache,
+     * located by {@link #publisherPageCachePath(Path, Class)}.
+     *
+     * @param topicDefinition the topic
+     * @param media           how messages are delivered to subscribers
+     * @param <T>             the topic type
+     * @return the publisher
+     */
     public <T> T createPublisher(final Class<T> topicDefinition, final Media... media)
     {
-        final T publisher = publisherFactory.getPublisherProxy(topicDefinition);
+        final PageCache pageCache = publisherPageCacheFor(topicDefinition);
+        final T publisher = publisherFactory.getPublisherProxy(topicDefinition, pageCache);
+        ((AbstractPublisher) publisher).countMessages(
+                serviceCounters.newCounter(Counters.PUBLISHED_MESSAGES + topicDefinition.getName()),
+                serviceCounters.newCounter(Counters.PUBLISHED_BYTES + topicDefinition.getName()));
         publishers.add((AbstractPublisher) publisher);
         topicIdToTopic.put(((AbstractPublisher) publisher).getTopicId(), topicDefinition);
-        publisherMedia.put(((AbstractPublisher) publisher).getTopicId(), media);
+        outboundReaders.addPublisher(((AbstractPublisher) publisher).getTopicId(), pageCache, media);
         Arrays.sort(media);
         return publisher;
     }
@@ -133,9 +170,7 @@ public final class ServiceFactory
                     "Cannot have more than one subscriber for %s", definition.getTopic()));
         }
 
-        final Subscriber<T> subscriber = subscriberFactory.getSubscriber(definition.getTopic(),
-                definition.getImplementation());
-        subscribers.add(subscriber);
+        final Subscriber<T> subscriber = createSubscriber(definition);
         topicToSubscriber.put(topicId, subscriber);
         final List<SocketAddress> socketAddresses = addressSpace.addressesOf(definition.getTopic());
         socketFactory.registerTopicAddress(topicId, socketAddresses.get(
@@ -147,6 +182,25 @@ public final class ServiceFactory
 
     public <T> void registerLocalSubscriber(
             final SubscriberDefinition<T> definition, final Path localPublisherPageCachePath)
+    {
+        registerLocalSubscriber(definition, localPublisherPageCachePath, LocalSubscriberMode.COPYING);
+    }
+
+    /**
+     * Subscribe to a topic published by another service on this host.
+     * <p>
+     * In {@link LocalSubscriberMode#DIRECT} mode, the subscriber is invoked on the thread reading
+     * the publisher's page-cache, rather than the inbound message thread; implementations shared
+     * between several subscriptions must be safe for invocation from multiple threads.
+     *
+     * @param definition                  the subscriber
+     * @param localPublisherPageCachePath path of the publishing service's publisher page-cache
+     * @param mode                        how messages are delivered to the subscriber
+     * @param <T>                         the topic type
+     */
+    public <T> void registerLocalSubscriber(
+            final SubscriberDefinition<T> definition, final Path localPublisherPageCachePath,
+            final LocalSubscriberMode mode)
     {
         final int topicId = TopicIdCalculator.calculate(definition.getTopic());
 
@@ -156,21 +210,24 @@ public final class ServiceFactory
                     "Cannot have more than one subscriber for %s", definition.getTopic()));
         }
 
-        final Subscriber<T> subscriber = subscriberFactory.getSubscriber(definition.getTopic(),
-                definition.getImplementation());
-        subscribers.add(subscriber);
+        final Subscriber<T> subscriber = createSubscriber(definition);
         topicToSubscriber.put(topicId, subscriber);
 
         try
         {
+            final String readerName = "local-subscriber-" + definition.getTopic().getName();
+            final RecordHandler recordHandler = mode == LocalSubscriberMode.DIRECT ?
+                    new SingleTopicRecordHandler(subscriber) :
+                    new CopyingRecordHandler(subscriberPageCache);
             final StreamingReader outboundReader =
-                    new StreamingReader(PageCache.create(localPublisherPageCachePath, PAGE_SIZE),
-                    new CopyingRecordHandler(subscriberPageCache),
+                    new StreamingReader(PageCache.attach(localPublisherPageCachePath, PAGE_SIZE),
+                    recordHandler,
                     true,
                     // TODO configure through SubscriberIdlerFactory
-                    AdaptiveIdlerFactory.idleUpTo(1, TimeUnit.MILLISECONDS).apply(definition.getTopic()));
-            localIpcReaders.add(named("local-subscriber-" +
-                    definition.getTopic().getSimpleName(), outboundReader));
+                    serviceCounters.countIdleCycles(readerName,
+                            AdaptiveIdlerFactory.idleUpTo(1, TimeUnit.MILLISECONDS).apply(definition.getTopic())),
+                    cursorFor(readerName));
+            localIpcReaders.add(named(readerName, outboundReader));
             readers.add(outboundReader);
 
             topicIds.add(topicId);
@@ -182,23 +239,174 @@ public final class ServiceFactory
         }
     }
 
+    /**
+     * Remove pages from the publisher and subscriber page-caches once they have been
+     * consumed by this service's readers, and are no longer required by the retention policy.
+     *
+     * @param retentionPolicy determines which consumed pages are kept
+     * @param retentionAction action to take on pages that are no longer retained
+     */
+    public void retainPages(final RetentionPolicy retentionPolicy, final RetentionAction retentionAction)
+    {
+        pageCacheMaintenance.retainPages(retentionPolicy, retentionAction);
+    }
+
+    /**
+     * Maintain a sparse {@link com.aitusoftware.transport.buffer.SeekIndex} alongside the publisher and subscriber page-caches,
+     * allowing readers to be started from a sequence number or timestamp.
+     *
+     * @param recordInterval number of records between index entries
+     */
+    public void indexPages(final int recordInterval)
+    {
+        pageCacheMaintenance.indexPages(recordInterval);
+    }
+
+    /**
+     * Set the number of I/O threads used to receive messages from remote publishers,
+     * when using {@link SubscriberThreading#SINGLE_THREADED}.
+     *
+     * @param ioThreadCount number of threads; connections are assigned to threads in turn
+     */
+    public void serverIoThreads(final int ioThreadCount)
+    {
+        if (ioThreadCount < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "I/O thread count must be positive: %d", ioThreadCount));
+        }
+        this.serverIoThreadCount = ioThreadCount;
+    }
+
+    /**
+     * Combine messages sent to remote subscribers into larger socket writes.
+     *
+     * @param writeCoalescing batching thresholds
+     */
+    public void coalesceWrites(final WriteCoalescing writeCoalescing)
+    {
+        outboundReaders.coalesceWrites(writeCoalescing);
+    }
+
+    /**
+     * Send messages for all topics in the shared publisher page-cache to remote subscribers
+     * from a single reader, rather than a reader per topic (and destination).
+     * <p>
+     * This reduces thread count and memory traffic, at the cost of isolation:
+     * a slow subscriber delays delivery to all others. Topics using {@link Storage#PER_TOPIC}
+     * keep their own readers.
+     *
+     * @param idler idle strategy for the reader
+     */
+    public void demultiplexOutboundMessages(final Idler idler)
+    {
+        outboundReaders.demultiplex(idler);
+    }
+
+    /**
+     * Monitor the lag of this service's readers behind the writers of their page-cache, notifying
+     * the listener when a reader falls behind; see {@link com.aitusoftware.transport.reader.ReaderLagMonitor}.
+     * Each reader's lag, and the number of times that it has exceeded a threshold, are also recorded
+     * in the service's {@link Counters}.
+     *
+     * @param maxLagBytes   lag in bytes above which a reader is slow
+     * @param maxLagRecords estimated lag in records above which a reader is slow
+     * @param checkInterval interval between checks
+     * @param unit          unit of the check interval
+     * @param listener      notified when a reader becomes slow, or recovers
+     */
+    public void monitorReaderLag(
+            final long maxLagBytes, final long maxLagRecords,
+            final long checkInterval, final TimeUnit unit, final ReaderLagListener listener)
+    {
+        serviceCounters.monitorReaderLag(maxLagBytes, maxLagRecords, checkInterval, unit, listener);
+    }
+
+    /**
+     * Keep the specified number of pages created and mapped ahead of the writers of each of this service's
+     * page-caches, so that publishing threads do not perform file-system operations when a page is full.
+     * A background thread is started for each page-cache; writers reaching a page before it is ready are
+     * recorded in the service's {@link Counters}.
+     *
+     * @param pageCount number of pages to allocate ahead of each page-cache's current page
+     */
+    public void preallocatePages(final int pageCount)
+    {
+        pageCacheMaintenance.preallocatePages(pageCount);
+    }
+
+    /**
+     * Fault in the memory of pages ahead of the writers of each of this service's page-caches, using a
+     * {@link com.aitusoftware.transport.buffer.Preloader} on a background thread for each page-cache.
+     * Preloaded pages, and pages reached by a writer before they were preloaded, are recorded
+     * in the service's {@link Counters}.
+     *
+     * @param depth number of pages to preload ahead of each page-cache's current page
+     * @param touch how to fault in each page
+     * @param load  whether to also load the contents of each page from its file
+     */
+    public void preloadPages(final int depth, final PageTouch touch, final boolean load)
+    {
+        pageCacheMaintenance.preloadPages(depth, touch, load);
+    }
+
     public Service create()
     {
-        final TopicDispatcherRecordHandler topicDispatcher =
-                new TopicDispatcherRecordHandler(topicToSubscriber);
+        if (RecordTimestamps.ENABLED)
+        {
+            topicIdToTopic.forEach(stageLatencies::register);
+        }
+        final TopicDispatcherRecordHandler topicDispatcher = new TopicDispatcherRecordHandler(
+                topicToSubscriber, RecordTimestamps.ENABLED ? stageLatencies : null);
 
         final StreamingReader inboundReader =
                 new StreamingReader(subscriberPageCache, topicDispatcher, true,
-                        Idlers.staticPause(1, TimeUnit.MILLISECONDS));
-        final TopicToChannelMapper channelMapper = new TopicToChannelMapper(socketMapper);
+                        serviceCounters.countIdleCycles(INBOUND_READER_NAME, Idlers.staticPause(1, TimeUnit.MILLISECONDS)),
+                        cursorFor(INBOUND_READER_NAME));
+        pageCacheMaintenance.addReader(inboundReader, subscriberPageCache);
 
-        final Collection<Named<StreamingReader>> namedPublishers = createPublisherReaders(channelMapper);
+        final Collection<Named<StreamingReader>> namedPublishers = outboundReaders.createReaders(publishers, topicIdToTopic);
+        namedPublishers.forEach(reader -> readers.add(reader.value()));
         readers.add(inboundReader);
         final Server server = new Server(topicIds, socketFactory::acquire, subscriberPageCache,
-                subscriberThreading, topicIdToTopic);
+                subscriberThreading, topicIdToTopic, serverIoThreadCount);
         final Collection<Named<StreamingReader>> namedReaders = new ArrayList<>(namedPublishers);
         namedReaders.addAll(localIpcReaders);
-        return new Service(inboundReader, namedReaders, server, hasRemoteSubscribers);
+        final Collection<Named<StreamingReader>> indexingReaders = pageCacheMaintenance.createIndexingReaders();
+        indexingReaders.forEach(reader -> readers.add(reader.value()));
+        namedReaders.addAll(indexingReaders);
+        serviceCounters.monitorLag(Collections.singletonList(named(INBOUND_READER_NAME, inboundReader)));
+        serviceCounters.monitorLag(namedReaders);
+        final Collection<Named<Runnable>> maintenanceTasks = pageCacheMaintenance.createMaintenanceTasks();
+        serviceCounters.addLagMonitorTask(maintenanceTasks);
+        return new Service(inboundReader, namedReaders, namedPublishers, server, hasRemoteSubscribers,
+                maintenanceTasks, stageLatencies);
+    }
+
+    /**
+     * Returns the directory of the page-cache to which a service writes messages published on a topic;
+     * for use by local subscribers. Topics with their own page-cache use a directory named after the
+     * fully-qualified topic class name.
+     *
+     * @param pageCachePath   the publishing service's page-cache path
+     * @param topicDefinition the topic
+     * @return the publisher page-cache directory
+     */
+    public static Path publisherPageCachePath(final Path pageCachePath, final Class<?> topicDefinition)
+    {
+        return pageCachePath.resolve(publisherDirectoryName(topicDefinition));
+    }
+
+    /**
+     * Returns the location of the {@link Counters} file of a service, for reading with
+     * {@link com.aitusoftware.transport.metrics.CountersReader}.
+     *
+     * @param pageCachePath the service's page-cache path
+     * @return the counters file
+     */
+    public static Path countersPath(final Path pageCachePath)
+    {
+        return pageCachePath.resolve(Counters.FILE_NAME);
     }
 
     public void publishers(final Consumer<AbstractPublisher> consumer)
@@ -216,78 +424,51 @@ public final class ServiceFactory
         readers.forEach(consumer);
     }
 
-    private Collection<Named<StreamingReader>> createPublisherReaders(final TopicToChannelMapper channelMapper)
+    private <T> Subscriber<T> createSubscriber(final SubscriberDefinition<T> definition)
     {
-        final Collection<Named<StreamingReader>> namedPublishers = new ArrayList<>(publishers.size());
-        publishers.forEach(publisher -> {
-            final int topicId = publisher.getTopicId();
-            if (Arrays.binarySearch(publisherMedia.get(topicId), Media.TCP) < 0)
-            {
-                return;
-            }
-
-            final Class<?> topicDefinition = topicIdToTopic.get(topicId);
+        final Subscriber<T> subscriber = subscriberFactory.getSubscriber(definition.getTopic(),
+                definition.getImplementation());
+        ((AbstractSubscriber<T>) subscriber).countMessages(
+                serviceCounters.newCounter(Counters.DISPATCHED_MESSAGES + definition.getTopic().getName()),
+                serviceCounters.newCounter(Counters.DISPATCHED_BYTES + definition.getTopic().getName()));
+        subscribers.add(subscriber);
+        return subscriber;
+    }
 
-            final List<SocketAddress> receiverAddresses = addressSpace.addressesOf(topicDefinition);
-            final TopicMessageHandler messageHandler;
-            if (receiverAddresses.size() == 1)
+    private PageCache publisherPageCacheFor(final Class<?> topicDefinition)
+    {
+        final String directoryName = publisherDirectoryName(topicDefinition);
+        PageCache pageCache = pageCacheMaintenance.getPageCache(directoryName);
+        if (pageCache == null)
+        {
+            try
             {
-                socketMapper.addAddress(TopicIdCalculator.calculate(topicDefinition),
-                        addressSpace.addressOf(topicDefinition));
-                messageHandler = new SingleChannelTopicMessageHandler(channelMapper);
+                pageCache = PageCache.create(pageCachePath.resolve(directoryName), PAGE_SIZE);
             }
-            else
+            catch (IOException e)
             {
-                messageHandler = new MultiChannelTopicMessageHandler(
-                        new TopicToChannelMapper(i -> connectSocket(receiverAddresses.get(i))),
-                        receiverAddresses.size());
+                throw new UncheckedIOException(e);
             }
-            final OutputChannel outputChannel = new OutputChannel(
-                    filter(topicId, messageHandler));
-            final StreamingReader outboundReader =
-                    new StreamingReader(publisherPageCache, outputChannel,
-                            true, publisherIdlerFactory.apply(topicDefinition));
-            namedPublishers.add(named("outbound-publisher-" +
-                    topicIdToTopic.get(publisher.getTopicId()).getSimpleName(), outboundReader));
-            readers.add(outboundReader);
-        });
-        return namedPublishers;
+            pageCacheMaintenance.addPageCache(directoryName, pageCache);
+        }
+        return pageCache;
     }
-    private static final class SocketMapper implements IntFunction<SocketChannel>
-    {
-
-        private final Int2ObjectHashMap<SocketAddress> topicToAddress =
-                new Int2ObjectHashMap<>();
 
-        @Override
-        public SocketChannel apply(final int topicId)
+    private static String publisherDirectoryName(final Class<?> topicDefinition)
+    {
+        final Topic topic = topicDefinition.getAnnotation(Topic.class);
+        if (topic != null && topic.storage() == Storage.PER_TOPIC)
         {
-            final SocketAddress socketAddress = topicToAddress.get(topicId);
-            return connectSocket(socketAddress);
-        }
-
-        void addAddress(final int topicId, final SocketAddress address)
-        {
-            if (topicToAddress.containsKey(topicId))
-            {
-                throw new IllegalStateException("Already contains an address for " + topicId);
-            }
-            topicToAddress.put(topicId, address);
+            return PUBLISHER_PAGE_CACHE_PATH + "-" + topicDefinition.getName();
         }
+        return PUBLISHER_PAGE_CACHE_PATH;
     }
 
-    private static SocketChannel connectSocket(final SocketAddress socketAddress)
+    private ReaderCursor cursorFor(final String readerName)
     {
         try
         {
-            final SocketChannel channel = SocketChannel.open(socketAddress);
-            channel.configureBlocking(false);
-            while (!channel.finishConnect())
-            {
-                Thread.yield();
-            }
-
-            return channel;
+            return ReaderCursor.forReader(readerCursorPath, readerName);
         }
         catch (IOException e)
         {
@@ -295,6 +476,11 @@ public final class ServiceFactory
         }
     }
 
+    private static Path readerCursorDirectory(final Path pageCachePath)
+    {
+        return pageCachePath.resolve(READER_CURSOR_PATH);
+    }
+
     private static Path subscriberDirectory(final Path pageCachePath)
     {
         return pageCachePath.resolve(SUBSCRIBER_PAGE_CACHE_PATH);
@@ -309,5 +495,6 @@ public final class ServiceFactory
     {
         Files.createDirectories(publisherDirectory(pageCachePath));
         Files.createDirectories(subscriberDirectory(pageCachePath));
+        Files.createDirectories(readerCursorDirectory(pageCachePath));
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.factory;
+
+import com.aitusoftware.transport.net.Handshake;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.function.IntFunction;
+
+final class SocketMapper implements IntFunction<SocketChannel>
+{
+
+    private final Int2ObjectHashMap<SocketAddress> topicToAddress =
+            new Int2ObjectHashMap<>();
+
+    @Override
+    public SocketChannel apply(final int topicId)
+    {
+        final SocketAddress socketAddress = topicToAddress.get(topicId);
+        return connectSocket(socketAddress);
+    }
+
+    void addAddress(final int topicId, final SocketAddress address)
+    {
+        if (topicToAddress.containsKey(topicId))
+        {
+            throw new IllegalStateException("Already contains an address for " + topicId);
+        }
+        topicToAddress.put(topicId, address);
+    }
+
+    static SocketChannel connectSocket(final SocketAddress socketAddress)
+    {
+        try
+        {
+            final SocketChannel channel = SocketChannel.open(socketAddress);
+            channel.configureBlocking(false);
+            while (!channel.finishConnect())
+            {
+                Thread.yield();
+            }
+            Handshake.send(channel);
+
+            return channel;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.nio.file.Path;
 public final class Filenames
 {
     public static final String SUFFIX = ".trx";
+    public static final String ARCHIVE_SUFFIX = ".gz";
 
     private Filenames()
     {
@@ -30,6 +31,11 @@ public final class Filenames
         return path.resolve(formatPageNumber(pageNumber));
     }
 
+    public static Path forArchivedPageNumber(final int pageNumber, final Path path)
+    {
+        return path.resolve(formatPageNumber(pageNumber) + ARCHIVE_SUFFIX);
+    }
+
     public static int toPageNumber(final String filename)
     {
         return Integer.parseInt(filename.substring(0, filename.indexOf('.')));
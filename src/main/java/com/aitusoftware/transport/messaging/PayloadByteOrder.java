@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.messaging;
+
+import java.nio.ByteOrder;
+
+/**
+ * Byte order used to encode message payloads of a topic, in the page-cache and on the wire.
+ * <p>
+ * Record headers and TCP length prefixes are always big-endian.
+ */
+public enum PayloadByteOrder
+{
+    BIG_ENDIAN(ByteOrder.BIG_ENDIAN),
+    LITTLE_ENDIAN(ByteOrder.LITTLE_ENDIAN),
+    /**
+     * The native order of the publishing host; avoids byte swapping on encode and decode,
+     * but requires that remote subscribers share the publisher's native order.
+     */
+    NATIVE(ByteOrder.nativeOrder());
+
+    private final ByteOrder byteOrder;
+
+    PayloadByteOrder(final ByteOrder byteOrder)
+    {
+        this.byteOrder = byteOrder;
+    }
+
+    public ByteOrder byteOrder()
+    {
+        return byteOrder;
+    }
+
+    /**
+     * Resolves the declared payload byte order of a topic.
+     *
+     * @param topicDefinition the topic interface, or a class implementing it
+     * @return the declared order, or {@link #BIG_ENDIAN} if the class does not declare a topic
+     */
+    public static PayloadByteOrder forTopic(final Class<?> topicDefinition)
+    {
+        final Topic topic = TopicIdCalculator.topicInterface(topicDefinition)
+                .map(iface -> iface.getDeclaredAnnotation(Topic.class)).orElse(null);
+        return topic == null ? BIG_ENDIAN : topic.byteOrder();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.messaging;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Optional nanosecond timestamps carried by a record, following the topic id and method id.
+ * <p>
+ * Timestamps are written by publishers when the system property <code>transport.recordTimestamps</code>
+ * is <code>true</code>; the high bit of the method id marks a timestamped record. The publish time is set
+ * when the record is claimed, the send time by the outbound reader in the frame written to the socket
+ * (the record in the publisher's journal is not modified), and the receive time by the server once the
+ * record is copied to the subscriber page-cache.
+ * <p>
+ * Timestamps are taken from {@link System#nanoTime()}, so differences between timestamps written on
+ * different hosts are not meaningful.
+ */
+public final class RecordTimestamps
+{
+    public static final String SYSTEM_PROPERTY = "transport.recordTimestamps";
+    public static final boolean ENABLED = Boolean.getBoolean(SYSTEM_PROPERTY);
+    public static final byte TIMESTAMPED_FLAG = (byte) 0x80;
+    public static final int LENGTH = 3 * Long.BYTES;
+    public static final int HEADER_LENGTH = Integer.BYTES + 1 + LENGTH;
+
+    private static final int METHOD_ID_OFFSET = Integer.BYTES;
+    private static final int PUBLISH_OFFSET = METHOD_ID_OFFSET + 1;
+    private static final int SEND_OFFSET = PUBLISH_OFFSET + Long.BYTES;
+    private static final int RECEIVE_OFFSET = SEND_OFFSET + Long.BYTES;
+
+    private RecordTimestamps()
+    {
+    }
+
+    /**
+     * Write a timestamped record header at the buffer's position.
+     *
+     * @param buffer       the record buffer
+     * @param topicId      the topic id
+     * @param methodId     the method id
+     * @param publishNanos the publish time
+     */
+    public static void putHeader(final ByteBuffer buffer, final int topicId, final byte methodId, final long publishNanos)
+    {
+        buffer.putInt(topicId);
+        buffer.put((byte) (methodId | TIMESTAMPED_FLAG));
+        buffer.putLong(publishNanos);
+        buffer.putLong(0L);
+        buffer.putLong(0L);
+    }
+
+    /**
+     * Determine whether the record starting at <code>recordOffset</code> carries timestamps.
+     *
+     * @param buffer       buffer containing the record
+     * @param recordOffset offset of the topic id
+     * @param recordLength length of the record
+     * @return whether the record is timestamped
+     */
+    public static boolean isTimestamped(final ByteBuffer buffer, final int recordOffset, final int recordLength)
+    {
+        return recordLength >= HEADER_LENGTH &&
+                (buffer.get(recordOffset + METHOD_ID_OFFSET) & TIMESTAMPED_FLAG) != 0;
+    }
+
+    public static long publishNanos(final ByteBuffer buffer, final int recordOffset)
+    {
+        return buffer.getLong(recordOffset + PUBLISH_OFFSET);
+    }
+
+    public static long sendNanos(final ByteBuffer buffer, final int recordOffset)
+    {
+        return buffer.getLong(recordOffset + SEND_OFFSET);
+    }
+
+    public static long receiveNanos(final ByteBuffer buffer, final int recordOffset)
+    {
+        return buffer.getLong(recordOffset + RECEIVE_OFFSET);
+    }
+
+    public static void putSendNanos(final ByteBuffer buffer, final int recordOffset, final long sendNanos)
+    {
+        buffer.putLong(recordOffset + SEND_OFFSET, sendNanos);
+    }
+
+    public static void putReceiveNanos(final ByteBuffer buffer, final int recordOffset, final long receiveNanos)
+    {
+        buffer.putLong(recordOffset + RECEIVE_OFFSET, receiveNanos);
+    }
+}
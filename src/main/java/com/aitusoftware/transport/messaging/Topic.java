@@ -30,4 +30,5 @@ public @interface Topic
     int port() default ANY_PORT;
     String listenAddress() default ANY_ADDR;
     Storage storage() default Storage.SHARED;
+    PayloadByteOrder byteOrder() default PayloadByteOrder.BIG_ENDIAN;
 }
\ No newline at end of file
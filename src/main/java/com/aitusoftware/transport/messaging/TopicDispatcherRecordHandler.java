@@ -16,6 +16,8 @@
 package com.aitusoftware.transport.messaging;
 
 import com.aitusoftware.transport.messaging.proxy.Subscriber;
+import com.aitusoftware.transport.metrics.LatencyStage;
+import com.aitusoftware.transport.metrics.StageLatencies;
 import com.aitusoftware.transport.reader.RecordHandler;
 import org.agrona.collections.Int2ObjectHashMap;
 
@@ -24,17 +26,50 @@ import java.nio.ByteBuffer;
 public final class TopicDispatcherRecordHandler implements RecordHandler
 {
     private final Int2ObjectHashMap<Subscriber> topicIdToSubscriberMap;
+    private final StageLatencies stageLatencies;
 
     public TopicDispatcherRecordHandler(final Int2ObjectHashMap<Subscriber> topicIdToSubscriberMap)
+    {
+        this(topicIdToSubscriberMap, null);
+    }
+
+    /**
+     * Creates a handler that records the latency of timestamped records.
+     *
+     * @param topicIdToSubscriberMap subscribers by topic id
+     * @param stageLatencies         destination for latencies, or <code>null</code> if not required
+     */
+    public TopicDispatcherRecordHandler(
+            final Int2ObjectHashMap<Subscriber> topicIdToSubscriberMap, final StageLatencies stageLatencies)
     {
         this.topicIdToSubscriberMap = topicIdToSubscriberMap;
+        this.stageLatencies = stageLatencies;
     }
 
     @Override
     public void onRecord(final ByteBuffer data, final int pageNumber, final int position)
     {
+        if (stageLatencies != null && RecordTimestamps.isTimestamped(data, data.position(), data.remaining()))
+        {
+            recordLatencies(data, data.position());
+        }
         final int topicId = data.getInt();
         final Subscriber subscriber = topicIdToSubscriberMap.get(topicId);
         subscriber.onRecord(data, pageNumber, position);
     }
+
+    private void recordLatencies(final ByteBuffer data, final int recordOffset)
+    {
+        final int topicId = data.getInt(recordOffset);
+        final long sendNanos = RecordTimestamps.sendNanos(data, recordOffset);
+        final long receiveNanos = RecordTimestamps.receiveNanos(data, recordOffset);
+        if (receiveNanos != 0L)
+        {
+            if (sendNanos != 0L)
+            {
+                stageLatencies.record(topicId, LatencyStage.SEND_TO_RECEIVE, receiveNanos - sendNanos);
+            }
+            stageLatencies.record(topicId, LatencyStage.RECEIVE_TO_DISPATCH, System.nanoTime() - receiveNanos);
+        }
+    }
 }
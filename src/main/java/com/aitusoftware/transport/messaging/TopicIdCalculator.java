@@ -25,19 +25,8 @@ public final class TopicIdCalculator
     public static int calculate(final Class<?> topicDefinition)
     {
         final StringBuilder builder = new StringBuilder();
-        final Class<?> topicInterface;
-        if (topicDefinition.isInterface() && topicDefinition.getDeclaredAnnotation(Topic.class) != null)
-        {
-            topicInterface = topicDefinition;
-        }
-        else
-        {
-            final Class<?>[] interfaces = topicDefinition.getInterfaces();
-            final Optional<Class<?>> first = Arrays.stream(interfaces).filter(
-                    iface -> iface.getDeclaredAnnotation(Topic.class) != null).findFirst();
-
-            topicInterface = first.orElseThrow(() -> new IllegalStateException("No interface declaring Topic annotation"));
-        }
+        final Class<?> topicInterface = topicInterface(topicDefinition)
+                .orElseThrow(() -> new IllegalStateException("No interface declaring Topic annotation"));
         builder.append(topicInterface.getName());
         final Method[] methods = topicInterface.getDeclaredMethods();
         Arrays.sort(methods, MethodComparator.INSTANCE);
@@ -49,6 +38,16 @@ public final class TopicIdCalculator
         return builder.toString().hashCode();
     }
 
+    static Optional<Class<?>> topicInterface(final Class<?> topicDefinition)
+    {
+        if (topicDefinition.isInterface() && topicDefinition.getDeclaredAnnotation(Topic.class) != null)
+        {
+            return Optional.of(topicDefinition);
+        }
+        return Arrays.stream(topicDefinition.getInterfaces()).filter(
+                iface -> iface.getDeclaredAnnotation(Topic.class) != null).findFirst();
+    }
+
     private enum MethodComparator implements Comparator<Method>
     {
         INSTANCE;
@@ -17,9 +17,13 @@ package com.aitusoftware.transport.messaging.proxy;
 
 import com.aitusoftware.transport.buffer.PageCache;
 import com.aitusoftware.transport.buffer.WritableRecord;
+import com.aitusoftware.transport.messaging.PayloadByteOrder;
+import com.aitusoftware.transport.messaging.RecordTimestamps;
 import com.aitusoftware.transport.messaging.TopicIdCalculator;
+import com.aitusoftware.transport.metrics.Counter;
 import com.aitusoftware.transport.threads.SingleThreaded;
 
+import java.nio.ByteOrder;
 import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class AbstractPublisher
@@ -27,25 +31,59 @@ public abstract class AbstractPublisher
     private static final int TOPIC_MESSAGE_HEADER_SIZE = 5;
     private final PageCache pageCache;
     private final int topicId;
+    private final ByteOrder byteOrder;
     private final AtomicLong messageCount = new AtomicLong();
+    private Counter publishedMessages;
+    private Counter publishedBytes;
 
     protected AbstractPublisher(final PageCache pageCache)
     {
         this.pageCache = pageCache;
         this.topicId = TopicIdCalculator.calculate(getClass());
+        this.byteOrder = PayloadByteOrder.forTopic(getClass()).byteOrder();
     }
 
     @SingleThreaded
     protected WritableRecord acquireRecord(final int recordLength, final byte methodId)
     {
         messageCount.incrementAndGet();
-        final WritableRecord record =
-                pageCache.acquireRecordBuffer(recordLength + TOPIC_MESSAGE_HEADER_SIZE);
-        record.buffer().putInt(topicId);
-        record.buffer().put(methodId);
+        final WritableRecord record;
+        final int messageLength;
+        if (RecordTimestamps.ENABLED)
+        {
+            final long publishNanos = System.nanoTime();
+            messageLength = recordLength + TOPIC_MESSAGE_HEADER_SIZE + RecordTimestamps.LENGTH;
+            record = pageCache.acquireRecordBuffer(messageLength);
+            RecordTimestamps.putHeader(record.buffer(), topicId, methodId, publishNanos);
+        }
+        else
+        {
+            messageLength = recordLength + TOPIC_MESSAGE_HEADER_SIZE;
+            record = pageCache.acquireRecordBuffer(messageLength);
+            record.buffer().putInt(topicId);
+            record.buffer().put(methodId);
+        }
+        if (publishedMessages != null)
+        {
+            publishedMessages.incrementOrdered();
+            publishedBytes.addOrdered(messageLength);
+        }
+        record.buffer().order(byteOrder);
         return record;
     }
 
+    /**
+     * Count published messages and bytes; must be called before the publisher is used.
+     *
+     * @param messages incremented for each message
+     * @param bytes    incremented by the length of each message, including its header
+     */
+    public void countMessages(final Counter messages, final Counter bytes)
+    {
+        this.publishedMessages = messages;
+        this.publishedBytes = bytes;
+    }
+
     public long getMessageCount()
     {
         return messageCount.get();
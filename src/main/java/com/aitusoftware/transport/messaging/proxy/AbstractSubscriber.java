@@ -15,10 +15,14 @@
  */
 package com.aitusoftware.transport.messaging.proxy;
 
+import com.aitusoftware.transport.messaging.PayloadByteOrder;
+import com.aitusoftware.transport.messaging.RecordTimestamps;
 import com.aitusoftware.transport.messaging.TopicIdCalculator;
+import com.aitusoftware.transport.metrics.Counter;
 import com.aitusoftware.transport.threads.SingleThreaded;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class AbstractSubscriber<T> implements Subscriber<T>
@@ -26,14 +30,18 @@ public abstract class AbstractSubscriber<T> implements Subscriber<T>
     private final T implementation;
     private final MethodInvoker<T>[] invokers;
     private final int topicId;
+    private final ByteOrder byteOrder;
     private final AtomicLong messageCount = new AtomicLong();
     private long localMessageCount;
+    private Counter dispatchedMessages;
+    private Counter dispatchedBytes;
 
     protected AbstractSubscriber(final T implementation, final MethodInvoker<T>[] invokers)
     {
         this.implementation = implementation;
         this.invokers = invokers;
         topicId = TopicIdCalculator.calculate(implementation.getClass());
+        byteOrder = PayloadByteOrder.forTopic(implementation.getClass()).byteOrder();
     }
 
     @SingleThreaded
@@ -42,8 +50,40 @@ public abstract class AbstractSubscriber<T> implements Subscriber<T>
     {
         localMessageCount++;
         messageCount.lazySet(localMessageCount);
-        final byte methodIndex = data.get();
-        invokers[methodIndex].invoke(implementation, data);
+        if (dispatchedMessages != null)
+        {
+            dispatchedMessages.incrementOrdered();
+            // data is positioned after the topic id
+            dispatchedBytes.addOrdered(data.remaining() + Integer.BYTES);
+        }
+        byte methodIndex = data.get();
+        if ((methodIndex & RecordTimestamps.TIMESTAMPED_FLAG) != 0)
+        {
+            methodIndex &= ~RecordTimestamps.TIMESTAMPED_FLAG;
+            data.position(data.position() + RecordTimestamps.LENGTH);
+        }
+        final ByteOrder recordByteOrder = data.order();
+        data.order(byteOrder);
+        try
+        {
+            invokers[methodIndex].invoke(implementation, data);
+        }
+        finally
+        {
+            data.order(recordByteOrder);
+        }
+    }
+
+    /**
+     * Count dispatched messages and bytes; must be called before the subscriber is used.
+     *
+     * @param messages incremented for each message
+     * @param bytes    incremented by the length of each message, including its header
+     */
+    public void countMessages(final Counter messages, final Counter bytes)
+    {
+        this.dispatchedMessages = messages;
+        this.dispatchedBytes = bytes;
     }
 
     @Override
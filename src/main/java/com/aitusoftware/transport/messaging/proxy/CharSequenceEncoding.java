@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.messaging.proxy;
+
+/**
+ * Wire and journal format of character sequences.
+ * <p>
+ * Decoding does not depend on the configured encoding; each encoded sequence identifies its own format.
+ * Subscribers can therefore read messages from publishers using either encoding, provided that
+ * they are running a version that supports {@link #COMPACT}.
+ */
+public enum CharSequenceEncoding
+{
+    /**
+     * A four-byte length, followed by two bytes per character.
+     */
+    UTF_16,
+    /**
+     * Where every character is in the ISO-8859-1 (Latin-1) range, a variable-length
+     * header followed by one byte per character; otherwise, as {@link #UTF_16}.
+     */
+    COMPACT;
+
+    /**
+     * Name of the system property used to select the encoding used by publishers.
+     */
+    public static final String SYSTEM_PROPERTY = "transport.charSequenceEncoding";
+
+    static CharSequenceEncoding fromSystemProperty()
+    {
+        return valueOf(System.getProperty(SYSTEM_PROPERTY, UTF_16.name()));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.messaging.proxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable, read-only view of a character sequence encoded in a buffer by {@link Encoder#encodeCharSequence},
+ * allowing a sequence to be decoded without copying.
+ * <p>
+ * A flyweight is only valid while the underlying buffer is; when decoding a record,
+ * that is until the subscriber method returns. Use {@link #toString()} to retain the value.
+ */
+public final class CharSequenceFlyweight implements CharSequence
+{
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private boolean latin1;
+
+    /**
+     * Point this flyweight at a sequence of characters.
+     *
+     * @param buffer the buffer containing the characters
+     * @param offset absolute offset of the first character
+     * @param length number of characters
+     * @return this flyweight
+     */
+    public CharSequenceFlyweight wrap(final ByteBuffer buffer, final int offset, final int length)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        latin1 = false;
+        return this;
+    }
+
+    /**
+     * Point this flyweight at a sequence of characters encoded as one byte each.
+     *
+     * @param buffer the buffer containing the characters
+     * @param offset absolute offset of the first character
+     * @param length number of characters
+     * @return this flyweight
+     */
+    public CharSequenceFlyweight wrapLatin1(final ByteBuffer buffer, final int offset, final int length)
+    {
+        wrap(buffer, offset, length);
+        latin1 = true;
+        return this;
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        if (index < 0 || index >= length)
+        {
+            throw new IndexOutOfBoundsException(String.format("Index %d, length %d", index, length));
+        }
+        return charAtUnchecked(index);
+    }
+
+    /**
+     * Returns a copy of part of this sequence; allocates.
+     */
+    @Override
+    public CharSequence subSequence(final int start, final int end)
+    {
+        return toString().substring(start, end);
+    }
+
+    /**
+     * Compares the characters of this sequence with another.
+     *
+     * @param other the sequence to compare
+     * @return whether the sequences contain the same characters
+     */
+    public boolean contentEquals(final CharSequence other)
+    {
+        if (other == null || other.length() != length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (charAtUnchecked(i) != other.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(final Object other)
+    {
+        return other instanceof CharSequenceFlyweight && contentEquals((CharSequenceFlyweight) other);
+    }
+
+    /**
+     * Returns the same value as {@link String#hashCode()} for an equal String.
+     */
+    @Override
+    public int hashCode()
+    {
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + charAtUnchecked(i);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+        {
+            chars[i] = charAtUnchecked(i);
+        }
+        return new String(chars);
+    }
+
+    private char charAtUnchecked(final int index)
+    {
+        if (latin1)
+        {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+        return buffer.getChar(offset + (index * Character.BYTES));
+    }
+}
@@ -18,11 +18,19 @@ package com.aitusoftware.transport.messaging.proxy;
 import com.aitusoftware.transport.messaging.Sized;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public final class CoderCommon
 {
+    static final CharSequenceEncoding CHAR_SEQUENCE_ENCODING = CharSequenceEncoding.fromSystemProperty();
+    // a compact header has the high bit of its first byte set; a UTF-16 length is never negative
+    static final int COMPACT_MARKER = 0x80;
+    static final int COMPACT_CONTINUATION = 0x40;
+    static final int COMPACT_FIRST_BYTE_LENGTH_MASK = 0x3F;
+    static final int COMPACT_FIRST_BYTE_LENGTH_BITS = 6;
     private static final int BYTES_PER_CHAR = 2;
     private static final int BYTES_PER_LENGTH = 4;
+    private static final int MAX_LATIN_1_CHAR = 0xFF;
 
     public static <T> int getSerialisedMessageByteLength(final T message)
     {
@@ -35,6 +43,16 @@ public final class CoderCommon
 
     public static int getSerialisedCharSequenceByteLength(final CharSequence charSequence)
     {
+        return getSerialisedCharSequenceByteLength(charSequence, CHAR_SEQUENCE_ENCODING);
+    }
+
+    public static int getSerialisedCharSequenceByteLength(
+            final CharSequence charSequence, final CharSequenceEncoding encoding)
+    {
+        if (encoding == CharSequenceEncoding.COMPACT && isLatin1(charSequence))
+        {
+            return getCompactHeaderLength(charSequence.length()) + charSequence.length();
+        }
         return getCharSequenceByteLength(charSequence) + getLengthByteLength();
     }
 
@@ -48,13 +66,94 @@ public final class CoderCommon
         return BYTES_PER_LENGTH;
     }
 
+    public static int getVarIntByteLength(final int value)
+    {
+        final int encoded = (value << 1) ^ (value >> 31);
+        return 1 + (31 - Integer.numberOfLeadingZeros(encoded | 1)) / 7;
+    }
+
+    public static int getVarLongByteLength(final long value)
+    {
+        final long encoded = (value << 1) ^ (value >> 63);
+        return 1 + (63 - Long.numberOfLeadingZeros(encoded | 1)) / 7;
+    }
+
     public static int getCharSequenceLengthAtOffset(final ByteBuffer buffer, final int position)
     {
-        return buffer.getInt(position) * BYTES_PER_CHAR;
+        if (isCompactAtOffset(buffer, position))
+        {
+            return getCompactLengthAtOffset(buffer, position);
+        }
+        return getUtf16LengthAtOffset(buffer, position) * BYTES_PER_CHAR;
     }
 
     public static int getSerialisedCharSequenceLengthAtOffset(final ByteBuffer buffer, final int position)
     {
-        return (buffer.getInt(position) * BYTES_PER_CHAR) + getLengthByteLength();
+        if (isCompactAtOffset(buffer, position))
+        {
+            final int length = getCompactLengthAtOffset(buffer, position);
+            return getCompactHeaderLength(length) + length;
+        }
+        return (getUtf16LengthAtOffset(buffer, position) * BYTES_PER_CHAR) + getLengthByteLength();
+    }
+
+    static int getUtf16LengthAtOffset(final ByteBuffer buffer, final int position)
+    {
+        return toBigEndian(buffer, buffer.getInt(position));
+    }
+
+    /**
+     * The length of a UTF-16 sequence is stored big-endian regardless of the buffer's order,
+     * so that its first byte can be distinguished from a compact header.
+     */
+    static int toBigEndian(final ByteBuffer buffer, final int length)
+    {
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? length : Integer.reverseBytes(length);
+    }
+
+    static boolean isLatin1(final CharSequence charSequence)
+    {
+        for (int i = 0; i < charSequence.length(); i++)
+        {
+            if (charSequence.charAt(i) > MAX_LATIN_1_CHAR)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isCompactAtOffset(final ByteBuffer buffer, final int position)
+    {
+        return (buffer.get(position) & COMPACT_MARKER) != 0;
+    }
+
+    static int getCompactHeaderLength(final int length)
+    {
+        final int remainder = length >>> COMPACT_FIRST_BYTE_LENGTH_BITS;
+        if (remainder == 0)
+        {
+            return 1;
+        }
+        return 1 + (38 - Integer.numberOfLeadingZeros(remainder)) / 7;
+    }
+
+    static int getCompactLengthAtOffset(final ByteBuffer buffer, final int position)
+    {
+        int value = buffer.get(position);
+        int length = value & COMPACT_FIRST_BYTE_LENGTH_MASK;
+        if ((value & COMPACT_CONTINUATION) != 0)
+        {
+            int shift = COMPACT_FIRST_BYTE_LENGTH_BITS;
+            int offset = position;
+            do
+            {
+                value = buffer.get(++offset);
+                length |= (value & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((value & 0x80) != 0);
+        }
+        return length;
     }
-}
\ No newline at end of file
+}
@@ -16,6 +16,7 @@
 package com.aitusoftware.transport.messaging.proxy;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public final class Decoder
 {
@@ -41,7 +42,8 @@ public final class Decoder
 
     public static char decodeChar(final ByteBuffer buffer)
     {
-        return buffer.getChar();
+        // chars are encoded in a four-byte slot
+        return (char) buffer.getInt();
     }
 
     public static float decodeFloat(final ByteBuffer buffer)
@@ -59,10 +61,64 @@ public final class Decoder
         return Double.longBitsToDouble(buffer.getLong());
     }
 
+    /**
+     * Decode a zig-zag variable-length int written by {@link Encoder#encodeVarInt(ByteBuffer, int)}.
+     *
+     * @param buffer the source buffer
+     * @return the value
+     */
+    public static int decodeVarInt(final ByteBuffer buffer)
+    {
+        int encoded = 0;
+        int shift = 0;
+        int value;
+        do
+        {
+            value = buffer.get();
+            encoded |= (value & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((value & 0x80) != 0);
+
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    /**
+     * Decode a zig-zag variable-length long written by {@link Encoder#encodeVarLong(ByteBuffer, long)}.
+     *
+     * @param buffer the source buffer
+     * @return the value
+     */
+    public static long decodeVarLong(final ByteBuffer buffer)
+    {
+        long encoded = 0;
+        int shift = 0;
+        int value;
+        do
+        {
+            value = buffer.get();
+            encoded |= (long) (value & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((value & 0x80) != 0);
+
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
     public static CharSequence decodeCharSequence(final ByteBuffer buffer, final StringBuilder builder)
     {
-        final int length = buffer.getInt();
         builder.setLength(0);
+        if (CoderCommon.isCompactAtOffset(buffer, buffer.position()))
+        {
+            final int length = CoderCommon.getCompactLengthAtOffset(buffer, buffer.position());
+            final int offset = buffer.position() + CoderCommon.getCompactHeaderLength(length);
+            appendLatin1(buffer, offset, length, builder);
+            buffer.position(offset + length);
+
+            return builder;
+        }
+        final int length = CoderCommon.toBigEndian(buffer, buffer.getInt());
+        builder.ensureCapacity(length);
         for (int i = 0; i < length; i++)
         {
             builder.append(buffer.getChar());
@@ -71,6 +127,30 @@ public final class Decoder
         return builder;
     }
 
+    /**
+     * Decode a character sequence without copying; see {@link CharSequenceFlyweight} for validity.
+     *
+     * @param buffer    the source buffer
+     * @param flyweight view to point at the encoded characters
+     * @return the flyweight
+     */
+    public static CharSequence decodeCharSequence(final ByteBuffer buffer, final CharSequenceFlyweight flyweight)
+    {
+        if (CoderCommon.isCompactAtOffset(buffer, buffer.position()))
+        {
+            final int length = CoderCommon.getCompactLengthAtOffset(buffer, buffer.position());
+            final int offset = buffer.position() + CoderCommon.getCompactHeaderLength(length);
+            buffer.position(offset + length);
+
+            return flyweight.wrapLatin1(buffer, offset, length);
+        }
+        final int length = CoderCommon.toBigEndian(buffer, buffer.getInt());
+        final int offset = buffer.position();
+        buffer.position(offset + (length * Character.BYTES));
+
+        return flyweight.wrap(buffer, offset, length);
+    }
+
     public static boolean decodeBooleanAt(final ByteBuffer buffer, final int offset)
     {
         return buffer.get(offset) != 0;
@@ -93,7 +173,7 @@ public final class Decoder
 
     public static char decodeCharAt(final ByteBuffer buffer, final int offset)
     {
-        return buffer.getChar(offset);
+        return (char) buffer.getInt(offset);
     }
 
     public static float decodeFloatAt(final ByteBuffer buffer, final int offset)
@@ -113,8 +193,16 @@ public final class Decoder
 
     public static CharSequence decodeCharSequenceAt(final ByteBuffer buffer, final int offset, final StringBuilder builder)
     {
-        final int length = buffer.getInt(offset);
         builder.setLength(0);
+        if (CoderCommon.isCompactAtOffset(buffer, offset))
+        {
+            final int length = CoderCommon.getCompactLengthAtOffset(buffer, offset);
+            appendLatin1(buffer, offset + CoderCommon.getCompactHeaderLength(length), length, builder);
+
+            return builder;
+        }
+        final int length = CoderCommon.getUtf16LengthAtOffset(buffer, offset);
+        builder.ensureCapacity(length);
         for (int i = 0; i < length; i++)
         {
             builder.append(buffer.getChar(offset + 4 + (i * 2)));
@@ -122,4 +210,35 @@ public final class Decoder
 
         return builder;
     }
-}
\ No newline at end of file
+
+    public static CharSequence decodeCharSequenceAt(
+            final ByteBuffer buffer, final int offset, final CharSequenceFlyweight flyweight)
+    {
+        if (CoderCommon.isCompactAtOffset(buffer, offset))
+        {
+            final int length = CoderCommon.getCompactLengthAtOffset(buffer, offset);
+            return flyweight.wrapLatin1(buffer, offset + CoderCommon.getCompactHeaderLength(length), length);
+        }
+        return flyweight.wrap(buffer, offset + 4, CoderCommon.getUtf16LengthAtOffset(buffer, offset));
+    }
+
+    private static void appendLatin1(
+            final ByteBuffer buffer, final int offset, final int length, final StringBuilder builder)
+    {
+        builder.ensureCapacity(length);
+        final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES)
+        {
+            final long word = bigEndian ? buffer.getLong(offset + i) : Long.reverseBytes(buffer.getLong(offset + i));
+            for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE)
+            {
+                builder.append((char) ((word >>> shift) & 0xFF));
+            }
+        }
+        for (; i < length; i++)
+        {
+            builder.append((char) (buffer.get(offset + i) & 0xFF));
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.aitusoftware.transport.messaging.proxy;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public final class Encoder
 {
@@ -59,12 +60,89 @@ public final class Encoder
         buffer.putLong(Double.doubleToLongBits(value));
     }
 
+    /**
+     * Encode an int using zig-zag variable-length encoding; small magnitudes, whether positive
+     * or negative, use fewer bytes. See {@link CoderCommon#getVarIntByteLength(int)}.
+     *
+     * @param buffer the target buffer
+     * @param value  the value
+     */
+    public static void encodeVarInt(final ByteBuffer buffer, final int value)
+    {
+        int encoded = (value << 1) ^ (value >> 31);
+        while ((encoded & ~0x7F) != 0)
+        {
+            buffer.put((byte) ((encoded & 0x7F) | 0x80));
+            encoded >>>= 7;
+        }
+        buffer.put((byte) encoded);
+    }
+
+    /**
+     * Encode a long using zig-zag variable-length encoding; small magnitudes, whether positive
+     * or negative, use fewer bytes. See {@link CoderCommon#getVarLongByteLength(long)}.
+     *
+     * @param buffer the target buffer
+     * @param value  the value
+     */
+    public static void encodeVarLong(final ByteBuffer buffer, final long value)
+    {
+        long encoded = (value << 1) ^ (value >> 63);
+        while ((encoded & ~0x7FL) != 0)
+        {
+            buffer.put((byte) ((encoded & 0x7F) | 0x80));
+            encoded >>>= 7;
+        }
+        buffer.put((byte) encoded);
+    }
+
     public static void encodeCharSequence(final ByteBuffer buffer, final CharSequence seq)
     {
-        buffer.putInt(seq.length());
+        encodeCharSequence(buffer, seq, CoderCommon.CHAR_SEQUENCE_ENCODING);
+    }
+
+    public static void encodeCharSequence(
+            final ByteBuffer buffer, final CharSequence seq, final CharSequenceEncoding encoding)
+    {
+        if (encoding == CharSequenceEncoding.COMPACT && CoderCommon.isLatin1(seq))
+        {
+            encodeLatin1(buffer, seq);
+            return;
+        }
+        buffer.putInt(CoderCommon.toBigEndian(buffer, seq.length()));
         for (int i = 0; i < seq.length(); i++)
         {
             buffer.putChar(seq.charAt(i));
         }
     }
+
+    private static void encodeLatin1(final ByteBuffer buffer, final CharSequence seq)
+    {
+        final int length = seq.length();
+        int remainder = length >>> CoderCommon.COMPACT_FIRST_BYTE_LENGTH_BITS;
+        buffer.put((byte) (CoderCommon.COMPACT_MARKER | (remainder != 0 ? CoderCommon.COMPACT_CONTINUATION : 0) |
+                (length & CoderCommon.COMPACT_FIRST_BYTE_LENGTH_MASK)));
+        while (remainder != 0)
+        {
+            final int lengthBits = remainder & 0x7F;
+            remainder >>>= 7;
+            buffer.put((byte) (remainder != 0 ? lengthBits | 0x80 : lengthBits));
+        }
+
+        final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES)
+        {
+            long word = 0;
+            for (int j = 0; j < Long.BYTES; j++)
+            {
+                word = (word << 8) | seq.charAt(i + j);
+            }
+            buffer.putLong(bigEndian ? word : Long.reverseBytes(word));
+        }
+        for (; i < length; i++)
+        {
+            buffer.put((byte) seq.charAt(i));
+        }
+    }
 }
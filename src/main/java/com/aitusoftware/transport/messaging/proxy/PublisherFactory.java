@@ -29,8 +29,21 @@ public final class PublisherFactory
         this.pageCache = pageCache;
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T getPublisherProxy(final Class<T> topicDefinition)
+    {
+        return getPublisherProxy(topicDefinition, pageCache);
+    }
+
+    /**
+     * Creates a publisher that writes to the specified page-cache.
+     *
+     * @param topicDefinition the topic
+     * @param pageCache       page-cache to which messages are written
+     * @param <T>             the topic type
+     * @return the publisher
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getPublisherProxy(final Class<T> topicDefinition, final PageCache pageCache)
     {
         final String publisherProxyClassname = topicDefinition.getName() +
                 Constants.PROXYGEN_PUBLISHER_SUFFIX;
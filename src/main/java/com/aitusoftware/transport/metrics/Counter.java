@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A single value in a {@link Counters} file.
+ * <p>
+ * The <code>*Ordered</code> methods are plain writes with release semantics, and must only be called
+ * by one thread at a time; {@link #increment()} may be called from any thread.
+ */
+public final class Counter
+{
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final String label;
+
+    Counter(final ByteBuffer buffer, final int offset, final String label)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.label = label;
+    }
+
+    public void incrementOrdered()
+    {
+        addOrdered(1L);
+    }
+
+    public void addOrdered(final long delta)
+    {
+        LONG_VIEW.setRelease(buffer, offset, (long) LONG_VIEW.get(buffer, offset) + delta);
+    }
+
+    public void setOrdered(final long value)
+    {
+        LONG_VIEW.setRelease(buffer, offset, value);
+    }
+
+    public void increment()
+    {
+        LONG_VIEW.getAndAdd(buffer, offset, 1L);
+    }
+
+    public long get()
+    {
+        return (long) LONG_VIEW.getVolatile(buffer, offset);
+    }
+
+    public String label()
+    {
+        return label;
+    }
+
+    @Override
+    public String toString()
+    {
+        return label + "=" + get();
+    }
+}
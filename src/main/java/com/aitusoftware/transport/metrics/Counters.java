@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.metrics;
+
+import com.aitusoftware.transport.files.Buffers;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A memory-mapped file of labelled counters, readable by other processes using {@link CountersReader}.
+ * <p>
+ * The file starts with a header, followed by fixed-length slots. Each slot holds a counter value
+ * in its own cache-line, followed by a state flag, and the label. The state is set, with release
+ * semantics, once the label has been written. Values are stored in native byte order, so the file
+ * must be read on the same host.
+ * <p>
+ * Counters are allocated during set-up; updating a counter does not allocate.
+ */
+public final class Counters
+{
+    public static final String FILE_NAME = "counters.dat";
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Messages written by the publisher of a topic.
+     */
+    public static final String PUBLISHED_MESSAGES = "publish.messages:";
+    /**
+     * Bytes written by the publisher of a topic, including message headers.
+     */
+    public static final String PUBLISHED_BYTES = "publish.bytes:";
+    /**
+     * Messages dispatched to the subscriber of a topic.
+     */
+    public static final String DISPATCHED_MESSAGES = "dispatch.messages:";
+    /**
+     * Bytes dispatched to the subscriber of a topic, including message headers.
+     */
+    public static final String DISPATCHED_BYTES = "dispatch.bytes:";
+    /**
+     * Writers moving to a new page in a page-cache directory.
+     */
+    public static final String PAGE_ROLLOVERS = "page.rollovers:";
+    /**
+     * Page files created in a page-cache directory.
+     */
+    public static final String PAGE_ALLOCATIONS = "page.allocations:";
+    /**
+     * Writers reaching a page in a page-cache directory before it was pre-allocated.
+     */
+    public static final String PAGE_PREALLOCATION_MISSES = "page.preallocationMisses:";
+    /**
+     * Pages faulted in ahead of the writers of a page-cache directory.
+     */
+    public static final String PAGE_PRELOADS = "page.preloads:";
+    /**
+     * Writers reaching a page in a page-cache directory before it was preloaded.
+     */
+    public static final String PAGE_PRELOAD_MISSES = "page.preloadMisses:";
+    /**
+     * Pages unmapped from memory in a page-cache directory.
+     */
+    public static final String PAGE_UNMAPS = "page.unmaps:";
+    /**
+     * Connections to remote subscribers re-established after a failure; labelled with the topic name,
+     * suffixed with the destination index where each destination has its own reader, or
+     * <code>outbound-publisher</code> for the connections of the demultiplexing outbound reader.
+     */
+    public static final String RECONNECTS = "net.reconnects:";
+    /**
+     * Socket writes abandoned due to connection failure, labelled as for {@link #RECONNECTS};
+     * the records are re-sent after reconnecting.
+     */
+    public static final String DROPPED_WRITES = "net.droppedWrites:";
+    /**
+     * Calls to the idler of a named thread.
+     */
+    public static final String IDLE_CYCLES = "idle.cycles:";
+    /**
+     * Most recently observed lag, in bytes, of a named reader; updated when reader lag is monitored.
+     */
+    public static final String READER_LAG_BYTES = "reader.lagBytes:";
+    /**
+     * Occasions on which a named reader exceeded its lag threshold.
+     */
+    public static final String SLOW_CONSUMER_EVENTS = "reader.slowConsumer:";
+
+    static final int VERSION = 1;
+    static final int VERSION_OFFSET = 0;
+    static final int CAPACITY_OFFSET = 4;
+    static final int HEADER_LENGTH = 64;
+    static final int SLOT_LENGTH = 256;
+    static final int STATE_OFFSET = 64;
+    static final int LABEL_LENGTH_OFFSET = 68;
+    static final int LABEL_OFFSET = 72;
+    static final int MAX_LABEL_LENGTH = SLOT_LENGTH - LABEL_OFFSET;
+    static final int STATE_ALLOCATED = 1;
+    static final VarHandle INT_VIEW =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final Path path;
+    private int allocated;
+
+    private Counters(final ByteBuffer buffer, final int capacity, final Path path)
+    {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.path = path;
+    }
+
+    /**
+     * Allocate a counter; labels longer than the slot are truncated.
+     *
+     * @param label describes the counter
+     * @return the counter
+     */
+    public synchronized Counter newCounter(final String label)
+    {
+        if (allocated == capacity)
+        {
+            throw new IllegalStateException(String.format(
+                    "Counters file %s is full; capacity is %d", path, capacity));
+        }
+        final int offset = slotOffset(allocated++);
+        final byte[] labelBytes = label.getBytes(StandardCharsets.UTF_8);
+        final int labelLength = Math.min(labelBytes.length, MAX_LABEL_LENGTH);
+        for (int i = 0; i < labelLength; i++)
+        {
+            buffer.put(offset + LABEL_OFFSET + i, labelBytes[i]);
+        }
+        buffer.putInt(offset + LABEL_LENGTH_OFFSET, labelLength);
+        INT_VIEW.setRelease(buffer, offset + STATE_OFFSET, STATE_ALLOCATED);
+        return new Counter(buffer, offset, label);
+    }
+
+    public Path getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Create a counters file, replacing any existing file at the same path.
+     *
+     * @param path     location of the file
+     * @param capacity maximum number of counters
+     * @return the counters
+     * @throws IOException if the file cannot be created
+     */
+    public static Counters create(final Path path, final int capacity) throws IOException
+    {
+        final long length = fileLength(capacity);
+        Files.deleteIfExists(path);
+        try (final RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw"))
+        {
+            file.setLength(length);
+        }
+        final ByteBuffer buffer = Buffers.map(path, length).order(ByteOrder.nativeOrder());
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        INT_VIEW.setRelease(buffer, VERSION_OFFSET, VERSION);
+        return new Counters(buffer, capacity, path);
+    }
+
+    static int slotOffset(final int index)
+    {
+        return HEADER_LENGTH + (index * SLOT_LENGTH);
+    }
+
+    static long fileLength(final int capacity)
+    {
+        return HEADER_LENGTH + ((long) capacity * SLOT_LENGTH);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.metrics;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.aitusoftware.transport.metrics.Counters.INT_VIEW;
+
+/**
+ * Reads the counters of a service, from its {@link Counters} file; intended for use by monitoring agents,
+ * in a process on the same host as the service.
+ * <p>
+ * Counters allocated after the reader is opened become visible on subsequent reads.
+ */
+public final class CountersReader
+{
+    private static final VarHandle LONG_VIEW =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final String[] labels;
+
+    private CountersReader(final ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+        capacity = buffer.getInt(Counters.CAPACITY_OFFSET);
+        labels = new String[capacity];
+    }
+
+    /**
+     * Pass the label and current value of each allocated counter to the consumer,
+     * in order of allocation.
+     *
+     * @param consumer receives counter values
+     */
+    public void forEach(final CounterConsumer consumer)
+    {
+        for (int id = 0; id < capacity && isAllocated(id); id++)
+        {
+            consumer.accept(id, label(id), value(id));
+        }
+    }
+
+    /**
+     * Sum the values of all counters with the specified label; several components may
+     * allocate counters with the same label.
+     *
+     * @param label the counter label
+     * @return total value, or zero if no such counter exists
+     */
+    public long sum(final String label)
+    {
+        long total = 0L;
+        for (int id = 0; id < capacity && isAllocated(id); id++)
+        {
+            if (label.equals(label(id)))
+            {
+                total += value(id);
+            }
+        }
+        return total;
+    }
+
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    private boolean isAllocated(final int id)
+    {
+        return labels[id] != null ||
+                (int) INT_VIEW.getAcquire(buffer, Counters.slotOffset(id) + Counters.STATE_OFFSET) ==
+                        Counters.STATE_ALLOCATED;
+    }
+
+    private String label(final int id)
+    {
+        String label = labels[id];
+        if (label == null)
+        {
+            final int offset = Counters.slotOffset(id);
+            final byte[] labelBytes = new byte[buffer.getInt(offset + Counters.LABEL_LENGTH_OFFSET)];
+            for (int i = 0; i < labelBytes.length; i++)
+            {
+                labelBytes[i] = buffer.get(offset + Counters.LABEL_OFFSET + i);
+            }
+            label = new String(labelBytes, StandardCharsets.UTF_8);
+            labels[id] = label;
+        }
+        return label;
+    }
+
+    private long value(final int id)
+    {
+        return (long) LONG_VIEW.getVolatile(buffer, Counters.slotOffset(id));
+    }
+
+    /**
+     * Open the counters file of a service.
+     *
+     * @param path location of the file
+     * @return the reader
+     * @throws IOException if the file cannot be read
+     * @throws IllegalStateException if the file has not been initialised, or has an unsupported version
+     */
+    public static CountersReader open(final Path path) throws IOException
+    {
+        final ByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.nativeOrder());
+        }
+        final int version = buffer.capacity() < Counters.HEADER_LENGTH ?
+                0 : (int) INT_VIEW.getAcquire(buffer, Counters.VERSION_OFFSET);
+        if (version != Counters.VERSION)
+        {
+            throw new IllegalStateException(String.format(
+                    "Unsupported counters file version %d at %s", version, path));
+        }
+        return new CountersReader(buffer);
+    }
+
+    @FunctionalInterface
+    public interface CounterConsumer
+    {
+        void accept(final int id, final String label, final long value);
+    }
+}
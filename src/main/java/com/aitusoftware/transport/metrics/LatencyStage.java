@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.metrics;
+
+public enum LatencyStage
+{
+    /**
+     * From the publisher claiming a record, to the outbound reader sending it.
+     */
+    PUBLISH_TO_SEND,
+    /**
+     * From the outbound reader sending a record, to the server copying it to the subscriber page-cache.
+     */
+    SEND_TO_RECEIVE,
+    /**
+     * From the server receiving a record, to its dispatch to a subscriber.
+     */
+    RECEIVE_TO_DISPATCH
+}
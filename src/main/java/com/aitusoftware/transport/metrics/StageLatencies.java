@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.agrona.collections.Int2ObjectHashMap;
+
+/**
+ * Per-topic histograms of the latency, in nanoseconds, of each {@link LatencyStage},
+ * recorded from the timestamps of records published with
+ * {@link com.aitusoftware.transport.messaging.RecordTimestamps} enabled.
+ * <p>
+ * Topics must be registered before recording starts; values may then be recorded from any thread.
+ */
+public final class StageLatencies
+{
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final LatencyStage[] STAGES = LatencyStage.values();
+
+    private final Int2ObjectHashMap<Recorder[]> topicIdToRecorders = new Int2ObjectHashMap<>();
+    private final Int2ObjectHashMap<Class<?>> topicIdToTopic = new Int2ObjectHashMap<>();
+
+    public void register(final int topicId, final Class<?> topic)
+    {
+        if (topicIdToRecorders.containsKey(topicId))
+        {
+            return;
+        }
+        final Recorder[] recorders = new Recorder[STAGES.length];
+        for (int i = 0; i < recorders.length; i++)
+        {
+            recorders[i] = new Recorder(SIGNIFICANT_DIGITS);
+        }
+        topicIdToRecorders.put(topicId, recorders);
+        topicIdToTopic.put(topicId, topic);
+    }
+
+    public void record(final int topicId, final LatencyStage stage, final long latencyNanos)
+    {
+        final Recorder[] recorders = topicIdToRecorders.get(topicId);
+        if (recorders != null && latencyNanos >= 0)
+        {
+            recorders[stage.ordinal()].recordValue(latencyNanos);
+        }
+    }
+
+    /**
+     * Take a snapshot of the values recorded for each topic and stage since the previous snapshot.
+     *
+     * @param consumer receives the snapshots
+     */
+    public void snapshot(final SnapshotConsumer consumer)
+    {
+        for (final Integer topicId : topicIdToRecorders.keySet())
+        {
+            final Recorder[] recorders = topicIdToRecorders.get(topicId);
+            for (final LatencyStage stage : STAGES)
+            {
+                consumer.accept(topicIdToTopic.get(topicId), stage, recorders[stage.ordinal()].getIntervalHistogram());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface SnapshotConsumer
+    {
+        void accept(final Class<?> topic, final LatencyStage stage, final Histogram histogram);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import com.aitusoftware.transport.threads.SingleThreaded;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dispatches messages from a journal shared by several topics to a handler for each topic,
+ * so that a single reader can service all topics. Messages for unregistered topics are ignored.
+ */
+@SingleThreaded
+public final class DemultiplexingTopicMessageHandler implements TopicMessageHandler
+{
+    private final Int2ObjectHashMap<TopicMessageHandler> topicHandlers = new Int2ObjectHashMap<>();
+    private final List<TopicMessageHandler> handlers = new ArrayList<>();
+
+    public void register(final int topicId, final TopicMessageHandler handler)
+    {
+        if (topicHandlers.containsKey(topicId))
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Handler already registered for topic %d", topicId));
+        }
+        topicHandlers.put(topicId, handler);
+        handlers.add(handler);
+    }
+
+    public boolean isEmpty()
+    {
+        return handlers.isEmpty();
+    }
+
+    @Override
+    public void onTopicMessage(final int topicId, final ByteBuffer data, final int pageNumber, final int position)
+    {
+        final TopicMessageHandler handler = topicHandlers.get(topicId);
+        if (handler != null)
+        {
+            handler.onTopicMessage(topicId, data, pageNumber, position);
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        for (int i = 0; i < handlers.size(); i++)
+        {
+            handlers.get(i).flush();
+        }
+    }
+}
@@ -29,14 +29,20 @@ public final class FilteringTopicMessageHandler implements TopicMessageHandler
     }
 
     @Override
-    public void onTopicMessage(final int topicId, final ByteBuffer data)
+    public void onTopicMessage(final int topicId, final ByteBuffer data, final int pageNumber, final int position)
     {
         if (topicId == this.topicId)
         {
-            delegate.onTopicMessage(topicId, data);
+            delegate.onTopicMessage(topicId, data, pageNumber, position);
         }
     }
 
+    @Override
+    public void flush()
+    {
+        delegate.flush();
+    }
+
     public static TopicMessageHandler filter(final int topicId, final TopicMessageHandler delegate)
     {
         return new FilteringTopicMessageHandler(topicId, delegate);
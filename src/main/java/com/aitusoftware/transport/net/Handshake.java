@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Frame sent by a publisher as the first frame on a new connection, describing the
+ * native byte order of the publishing host.
+ * <p>
+ * The frame uses a reserved topic id, and is not written to the subscriber page-cache.
+ * Connections that do not start with a handshake are assumed to come from a big-endian peer.
+ */
+public final class Handshake
+{
+    static final int HANDSHAKE_TOPIC_ID = 0xA1_70_5E_ED;
+    static final int PAYLOAD_LENGTH = Integer.BYTES + 2;
+    private static final byte VERSION = 1;
+    private static final byte BIG_ENDIAN = 0;
+    private static final byte LITTLE_ENDIAN = 1;
+
+    private Handshake()
+    {
+    }
+
+    /**
+     * Send a handshake on a newly connected channel.
+     *
+     * @param channel the connection
+     * @throws IOException if the handshake cannot be written
+     */
+    public static void send(final SocketChannel channel) throws IOException
+    {
+        final ByteBuffer frame = frame(ByteOrder.nativeOrder());
+        while (frame.remaining() != 0)
+        {
+            channel.write(frame);
+        }
+    }
+
+    static ByteBuffer frame(final ByteOrder byteOrder)
+    {
+        final ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + PAYLOAD_LENGTH);
+        frame.putInt(PAYLOAD_LENGTH).putInt(HANDSHAKE_TOPIC_ID).put(VERSION)
+                .put(byteOrder == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN);
+        frame.flip();
+        return frame;
+    }
+
+    static boolean isHandshake(final ByteBuffer buffer, final int payloadOffset, final int payloadLength)
+    {
+        return payloadLength == PAYLOAD_LENGTH && buffer.getInt(payloadOffset) == HANDSHAKE_TOPIC_ID;
+    }
+
+    static ByteOrder peerByteOrder(final ByteBuffer buffer, final int payloadOffset) throws IOException
+    {
+        final byte version = buffer.get(payloadOffset + Integer.BYTES);
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported handshake version: " + version);
+        }
+        switch (buffer.get(payloadOffset + Integer.BYTES + 1))
+        {
+            case BIG_ENDIAN:
+                return ByteOrder.BIG_ENDIAN;
+            case LITTLE_ENDIAN:
+                return ByteOrder.LITTLE_ENDIAN;
+            default:
+                throw new IOException("Invalid byte order in handshake");
+        }
+    }
+}
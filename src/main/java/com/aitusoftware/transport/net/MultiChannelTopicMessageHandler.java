@@ -15,68 +15,72 @@
  */
 package com.aitusoftware.transport.net;
 
+import com.aitusoftware.transport.reader.StreamingReaderContext;
 import com.aitusoftware.transport.threads.SingleThreaded;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.GatheringByteChannel;
 
+/**
+ * Sends each message to several destinations from a single reader.
+ * <p>
+ * Since the reader is rewound to the earliest record that any destination has not accepted,
+ * a slow destination delays the others; services built by
+ * {@link com.aitusoftware.transport.factory.ServiceFactory} use a reader per destination instead.
+ */
 @SingleThreaded
 public final class MultiChannelTopicMessageHandler implements TopicMessageHandler
 {
-    private final ByteBuffer[] srcs = new ByteBuffer[2];
-    private final TopicToChannelMapper channelMapper;
-    private final int numberOfConnections;
-    private final ByteBuffer lengthBuffer;
+    private final OutboundConnection[] connections;
 
     public MultiChannelTopicMessageHandler(
             final TopicToChannelMapper channelMapper, final int numberOfConnections)
     {
-        this.channelMapper = channelMapper;
-        this.numberOfConnections = numberOfConnections;
-        lengthBuffer = ByteBuffer.allocateDirect(4);
-        srcs[0] = lengthBuffer;
+        this(channelMapper, numberOfConnections, WriteCoalescing.DISABLED);
     }
 
-    @Override
-    public void onTopicMessage(final int topicId, final ByteBuffer data)
+    public MultiChannelTopicMessageHandler(
+            final TopicToChannelMapper channelMapper, final int numberOfConnections,
+            final WriteCoalescing writeCoalescing)
     {
-        srcs[1] = data;
-        lengthBuffer.clear();
-        // TODO should be able to determine length from record header
-        lengthBuffer.putInt(0, data.remaining());
+        this(channelMapper, numberOfConnections, writeCoalescing, new ResendPositions());
+    }
+
+    public MultiChannelTopicMessageHandler(
+            final TopicToChannelMapper channelMapper, final int numberOfConnections,
+            final WriteCoalescing writeCoalescing, final ResendPositions resendPositions)
+    {
+        connections = new OutboundConnection[numberOfConnections];
         for (int i = 0; i < numberOfConnections; i++)
         {
-            lengthBuffer.clear();
-            data.mark();
-            writeToChannel(data, i);
+            connections[i] = new OutboundConnection(channelMapper, i, writeCoalescing, resendPositions);
+        }
+    }
+
+    @Override
+    public void onTopicMessage(final int topicId, final ByteBuffer data, final int pageNumber, final int position)
+    {
+        final long journalPosition = OutboundConnection.journalPosition(pageNumber, position);
+        for (final OutboundConnection connection : connections)
+        {
+            rewindTo(connection.onRecord(data, journalPosition));
+        }
+    }
 
-            data.reset();
+    @Override
+    public void flush()
+    {
+        for (final OutboundConnection connection : connections)
+        {
+            rewindTo(connection.flush());
         }
     }
 
-    private void writeToChannel(final ByteBuffer data, final int index)
+    private static void rewindTo(final long journalPosition)
     {
-        do
+        if (journalPosition != OutboundConnection.NONE)
         {
-            try
-            {
-                final GatheringByteChannel channel = channelMapper.forTopic(index);
-                if (channel == null)
-                {
-                    // TODO should be handled by reconnect logic
-                    return;
-                }
-                channel.write(srcs);
-            }
-            catch (RuntimeException | IOException e)
-            {
-                // TODO buffer data
-                channelMapper.reconnectChannel(index);
-                return;
-            }
+            StreamingReaderContext.get().rewindTo(
+                    OutboundConnection.pageNumber(journalPosition), OutboundConnection.position(journalPosition));
         }
-        while ((data.remaining() != 0 || lengthBuffer.remaining() != 0) &&
-                !Thread.currentThread().isInterrupted());
     }
 }
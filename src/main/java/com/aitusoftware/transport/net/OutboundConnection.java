@@ -0,0 +1,331 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import com.aitusoftware.transport.messaging.RecordTimestamps;
+import com.aitusoftware.transport.threads.SingleThreaded;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Send state for a single outbound connection.
+ * <p>
+ * Records are identified by their journal position. A record is accepted once its frame has been
+ * written to the socket, or copied to the send buffer; this class never waits for a socket to become
+ * writable. Instead, each operation returns the journal position from which the caller should
+ * re-deliver records, or {@link #NONE} if no re-delivery is required:
+ * <ul>
+ *     <li>if the socket cannot accept more data, the record is re-delivered after the reader has idled</li>
+ *     <li>if the connection fails, buffered data is discarded, and records are re-delivered
+ *     from the first record that was not completely written to the socket</li>
+ * </ul>
+ * Data that has been written to the socket, but not received by the peer before a failure, is not resent.
+ * <p>
+ * The send time of a timestamped record is set in the outgoing frame; the record in the journal is not modified.
+ * <p>
+ * The position of the oldest record that may be re-delivered is published to {@link ResendPositions},
+ * so that the pages it requires are retained.
+ */
+@SingleThreaded
+final class OutboundConnection
+{
+    static final long NONE = -1L;
+    private static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+    private static final int DEFAULT_SEND_BUFFER_SIZE = 64 * 1024;
+
+    private final TopicToChannelMapper channelMapper;
+    private final int channelId;
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocateDirect(LENGTH_PREFIX_SIZE);
+    private final ByteBuffer timestampHeader = ByteBuffer.allocateDirect(RecordTimestamps.HEADER_LENGTH);
+    private final ByteBuffer[] srcs = new ByteBuffer[] {lengthBuffer, null};
+    private final ByteBuffer[] timestampedSrcs = new ByteBuffer[] {lengthBuffer, timestampHeader, null};
+    private final boolean coalescing;
+    private final long maxBatchDelayNanos;
+    private final AtomicLong resendPosition;
+    private ByteBuffer sendBuffer;
+    private long[] framePositions = new long[64];
+    private int[] frameEnds = new int[64];
+    private int frameCount;
+    private long firstFrameNanos;
+    private long lastAcceptedPosition = NONE;
+    private long publishedResendPosition = NONE;
+
+    OutboundConnection(
+            final TopicToChannelMapper channelMapper, final int channelId,
+            final WriteCoalescing writeCoalescing, final ResendPositions resendPositions)
+    {
+        this.resendPosition = resendPositions.register();
+        this.channelMapper = channelMapper;
+        this.channelId = channelId;
+        coalescing = writeCoalescing.isEnabled();
+        maxBatchDelayNanos = writeCoalescing.getMaxBatchDelayNanos();
+        sendBuffer = ByteBuffer.allocateDirect(coalescing ? writeCoalescing.getMaxBatchBytes() : DEFAULT_SEND_BUFFER_SIZE);
+    }
+
+    static long journalPosition(final int pageNumber, final int position)
+    {
+        return ((long) pageNumber << 32) | (position & 0xFFFF_FFFFL);
+    }
+
+    static int pageNumber(final long journalPosition)
+    {
+        return (int) (journalPosition >>> 32);
+    }
+
+    static int position(final long journalPosition)
+    {
+        return (int) journalPosition;
+    }
+
+    /**
+     * Offer a record; the position of <code>data</code> is not modified.
+     *
+     * @param data            message content
+     * @param journalPosition position of the record in the journal
+     * @return the journal position from which records should be re-delivered, or {@link #NONE}
+     */
+    long onRecord(final ByteBuffer data, final long journalPosition)
+    {
+        return publishResendPosition(offer(data, journalPosition));
+    }
+
+    /**
+     * Attempt to write any buffered data.
+     *
+     * @return the journal position from which records should be re-delivered, or {@link #NONE}
+     */
+    long flush()
+    {
+        return publishResendPosition(frameCount == 0 ? NONE : writePending());
+    }
+
+    boolean hasPendingData()
+    {
+        return frameCount != 0;
+    }
+
+    private long offer(final ByteBuffer data, final long journalPosition)
+    {
+        if (journalPosition < lastAcceptedPosition)
+        {
+            // re-delivered for another connection; already handled
+            return NONE;
+        }
+        if (journalPosition == lastAcceptedPosition)
+        {
+            return frameCount == 0 ? NONE : writePending();
+        }
+        if (frameCount != 0 && (!coalescing || !hasCapacityFor(data.remaining())))
+        {
+            final long resendPosition = writePending();
+            if (resendPosition != NONE)
+            {
+                return resendPosition == lastAcceptedPosition ? journalPosition : resendPosition;
+            }
+        }
+        if (!coalescing || !canHold(data.remaining()))
+        {
+            return writeDirect(data, journalPosition);
+        }
+        final long nowNanos = System.nanoTime();
+        if (frameCount == 0)
+        {
+            firstFrameNanos = nowNanos;
+        }
+        appendFrame(data, journalPosition);
+        if (sendBuffer.remaining() <= LENGTH_PREFIX_SIZE || nowNanos - firstFrameNanos >= maxBatchDelayNanos)
+        {
+            return writePending();
+        }
+        return NONE;
+    }
+
+    private long publishResendPosition(final long rewindPosition)
+    {
+        // the oldest record that is either buffered, or about to be re-delivered
+        long oldestPosition = frameCount == 0 ? NONE : framePositions[0];
+        if (rewindPosition != NONE && (oldestPosition == NONE || rewindPosition < oldestPosition))
+        {
+            oldestPosition = rewindPosition;
+        }
+        if (oldestPosition != publishedResendPosition)
+        {
+            publishedResendPosition = oldestPosition;
+            resendPosition.lazySet(oldestPosition);
+        }
+        return rewindPosition;
+    }
+
+    private long writeDirect(final ByteBuffer data, final long journalPosition)
+    {
+        final int dataPosition = data.position();
+        lengthBuffer.clear();
+        lengthBuffer.putInt(0, data.remaining());
+        final ByteBuffer[] frame = RecordTimestamps.ENABLED &&
+                RecordTimestamps.isTimestamped(data, dataPosition, data.remaining()) ? timestampedFrame(data) : srcs;
+        frame[frame.length - 1] = data;
+        try
+        {
+            final GatheringByteChannel channel = channelMapper.forTopic(channelId);
+            if (channel == null)
+            {
+                throw new IOException("Not connected");
+            }
+            channel.write(frame);
+        }
+        catch (RuntimeException | IOException e)
+        {
+            data.position(dataPosition);
+            onConnectionFailure();
+            return journalPosition;
+        }
+        lastAcceptedPosition = journalPosition;
+        final int headerRemaining = frame == srcs ? 0 : timestampHeader.remaining();
+        if (lengthBuffer.remaining() != 0 || headerRemaining != 0 || data.remaining() != 0)
+        {
+            // socket is full; retain the remainder of the frame
+            ensureSendBufferCapacity(lengthBuffer.remaining() + headerRemaining + data.remaining());
+            sendBuffer.put(lengthBuffer);
+            if (headerRemaining != 0)
+            {
+                sendBuffer.put(timestampHeader);
+            }
+            sendBuffer.put(data);
+            addFrame(journalPosition);
+        }
+        data.position(dataPosition);
+        return frameCount == 0 ? NONE : lastAcceptedPosition;
+    }
+
+    private void appendFrame(final ByteBuffer data, final long journalPosition)
+    {
+        final int dataPosition = data.position();
+        final int recordOffset = sendBuffer.position() + LENGTH_PREFIX_SIZE;
+        sendBuffer.putInt(data.remaining());
+        sendBuffer.put(data);
+        data.position(dataPosition);
+        if (RecordTimestamps.ENABLED &&
+                RecordTimestamps.isTimestamped(sendBuffer, recordOffset, sendBuffer.position() - recordOffset))
+        {
+            RecordTimestamps.putSendNanos(sendBuffer, recordOffset, System.nanoTime());
+        }
+        addFrame(journalPosition);
+        lastAcceptedPosition = journalPosition;
+    }
+
+    private ByteBuffer[] timestampedFrame(final ByteBuffer data)
+    {
+        // copy the record header so that the send time can be set without modifying the journal
+        final int dataLimit = data.limit();
+        timestampHeader.clear();
+        data.limit(data.position() + RecordTimestamps.HEADER_LENGTH);
+        timestampHeader.put(data);
+        data.limit(dataLimit);
+        RecordTimestamps.putSendNanos(timestampHeader, 0, System.nanoTime());
+        timestampHeader.flip();
+        return timestampedSrcs;
+    }
+
+    private long writePending()
+    {
+        sendBuffer.flip();
+        final int written;
+        try
+        {
+            final GatheringByteChannel channel = channelMapper.forTopic(channelId);
+            if (channel == null)
+            {
+                throw new IOException("Not connected");
+            }
+            written = channel.write(sendBuffer);
+        }
+        catch (RuntimeException | IOException e)
+        {
+            return onConnectionFailure();
+        }
+        sendBuffer.compact();
+        removeWrittenFrames(written);
+        return frameCount == 0 ? NONE : lastAcceptedPosition;
+    }
+
+    private long onConnectionFailure()
+    {
+        channelMapper.reconnectChannel(channelId);
+        sendBuffer.clear();
+        if (frameCount == 0)
+        {
+            return NONE;
+        }
+        final long resendPosition = framePositions[0];
+        frameCount = 0;
+        // any journal position less than resendPosition, and greater than any earlier record
+        lastAcceptedPosition = resendPosition - 1;
+        return resendPosition;
+    }
+
+    private void addFrame(final long journalPosition)
+    {
+        if (frameCount == framePositions.length)
+        {
+            framePositions = Arrays.copyOf(framePositions, frameCount * 2);
+            frameEnds = Arrays.copyOf(frameEnds, frameCount * 2);
+        }
+        framePositions[frameCount] = journalPosition;
+        frameEnds[frameCount] = sendBuffer.position();
+        frameCount++;
+    }
+
+    private void removeWrittenFrames(final int written)
+    {
+        int completeFrames = 0;
+        while (completeFrames < frameCount && frameEnds[completeFrames] <= written)
+        {
+            completeFrames++;
+        }
+        frameCount -= completeFrames;
+        for (int i = 0; i < frameCount; i++)
+        {
+            framePositions[i] = framePositions[i + completeFrames];
+            frameEnds[i] = frameEnds[i + completeFrames] - written;
+        }
+    }
+
+    private boolean canHold(final int dataLength)
+    {
+        return sendBuffer.capacity() >= LENGTH_PREFIX_SIZE + dataLength;
+    }
+
+    private boolean hasCapacityFor(final int dataLength)
+    {
+        return sendBuffer.remaining() >= LENGTH_PREFIX_SIZE + dataLength;
+    }
+
+    private void ensureSendBufferCapacity(final int length)
+    {
+        if (sendBuffer.remaining() < length)
+        {
+            final ByteBuffer resized = ByteBuffer.allocateDirect(
+                    Integer.highestOneBit(sendBuffer.position() + length - 1) << 1);
+            sendBuffer.flip();
+            resized.put(sendBuffer);
+            sendBuffer = resized;
+        }
+    }
+}
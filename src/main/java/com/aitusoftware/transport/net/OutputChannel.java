@@ -32,6 +32,12 @@ public final class OutputChannel implements RecordHandler
     public void onRecord(final ByteBuffer data, final int pageNumber, final int position)
     {
         final int topicId = data.getInt(data.position());
-        messageHandler.onTopicMessage(topicId, data);
+        messageHandler.onTopicMessage(topicId, data, pageNumber, position);
+    }
+
+    @Override
+    public void onCaughtUp()
+    {
+        messageHandler.flush();
     }
 }
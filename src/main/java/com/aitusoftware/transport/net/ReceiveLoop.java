@@ -0,0 +1,305 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import org.agrona.collections.IntHashSet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Selector-driven loop that accepts connections on a set of server sockets,
+ * and copies messages received on its assigned connections into the subscriber page-cache.
+ * <p>
+ * Accepted connections are passed to a handler, which may assign them to this,
+ * or another, loop.
+ * <p>
+ * Frames for topics declaring {@link com.aitusoftware.transport.messaging.PayloadByteOrder#NATIVE} payloads
+ * are rejected, and the connection closed, if the peer's handshake reports a different native byte order.
+ */
+final class ReceiveLoop implements Runnable
+{
+    private static final long UNBOUND_SOCKET_POLL_INTERVAL_MS = 10L;
+
+    private final PageCache subscriberPageCache;
+    private final IntHashSet nativeOrderTopicIds;
+    private final List<ServerSocketChannel> unboundServerSocketChannels;
+    private final Consumer<SocketChannel> acceptedConnectionHandler;
+    private final Runnable onListenerStarted;
+    private final Queue<SocketChannel> newConnections = new ConcurrentLinkedQueue<>();
+    private final Selector selector;
+    private final boolean exitWhenDisconnected;
+
+    ReceiveLoop(
+            final PageCache subscriberPageCache,
+            final IntHashSet nativeOrderTopicIds,
+            final Collection<ServerSocketChannel> serverSocketChannels,
+            final Consumer<SocketChannel> acceptedConnectionHandler,
+            final Runnable onListenerStarted)
+    {
+        this(subscriberPageCache, nativeOrderTopicIds, serverSocketChannels,
+                acceptedConnectionHandler, onListenerStarted, false);
+    }
+
+    ReceiveLoop(
+            final PageCache subscriberPageCache,
+            final IntHashSet nativeOrderTopicIds,
+            final Collection<ServerSocketChannel> serverSocketChannels,
+            final Runnable onListenerStarted)
+    {
+        this(subscriberPageCache, nativeOrderTopicIds, serverSocketChannels, null, onListenerStarted, false);
+    }
+
+    ReceiveLoop(final PageCache subscriberPageCache, final IntHashSet nativeOrderTopicIds)
+    {
+        this(subscriberPageCache, nativeOrderTopicIds, Collections.emptySet(),
+                ReceiveLoop::rejectConnection, () -> {}, false);
+    }
+
+    private ReceiveLoop(
+            final PageCache subscriberPageCache,
+            final IntHashSet nativeOrderTopicIds,
+            final Collection<ServerSocketChannel> serverSocketChannels,
+            final Consumer<SocketChannel> acceptedConnectionHandler,
+            final Runnable onListenerStarted,
+            final boolean exitWhenDisconnected)
+    {
+        this.subscriberPageCache = subscriberPageCache;
+        this.nativeOrderTopicIds = nativeOrderTopicIds;
+        this.unboundServerSocketChannels = new ArrayList<>(serverSocketChannels);
+        // a null handler assigns accepted connections to this loop
+        this.acceptedConnectionHandler = acceptedConnectionHandler != null ?
+                acceptedConnectionHandler : this::addConnection;
+        this.onListenerStarted = onListenerStarted;
+        this.exitWhenDisconnected = exitWhenDisconnected;
+        selector = openSelector();
+    }
+
+    /**
+     * Creates a loop dedicated to a single connection; the loop exits, closing its selector,
+     * once the connection has been closed.
+     *
+     * @param subscriberPageCache destination for received messages
+     * @param nativeOrderTopicIds topics declaring native-order payloads
+     * @param channel             the connection
+     * @return the loop
+     */
+    static ReceiveLoop forConnection(
+            final PageCache subscriberPageCache, final IntHashSet nativeOrderTopicIds, final SocketChannel channel)
+    {
+        final ReceiveLoop connectionLoop = new ReceiveLoop(subscriberPageCache, nativeOrderTopicIds,
+                Collections.emptySet(), ReceiveLoop::rejectConnection, () -> {}, true);
+        connectionLoop.addConnection(channel);
+        return connectionLoop;
+    }
+
+    /**
+     * Assign a connection to this loop; safe to call from any thread.
+     *
+     * @param channel the connection
+     */
+    void addConnection(final SocketChannel channel)
+    {
+        newConnections.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            registerBoundServerSockets();
+            onListenerStarted.run();
+            while (!Thread.currentThread().isInterrupted())
+            {
+                if (unboundServerSocketChannels.isEmpty())
+                {
+                    selector.select();
+                }
+                else
+                {
+                    selector.select(UNBOUND_SOCKET_POLL_INTERVAL_MS);
+                    registerBoundServerSockets();
+                }
+                registerNewConnections();
+                processSelectedKeys();
+                if (exitWhenDisconnected && !hasOpenConnections())
+                {
+                    break;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            closeConnections();
+        }
+    }
+
+    private void processSelectedKeys()
+    {
+        final Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext())
+        {
+            final SelectionKey key = selectedKeys.next();
+            selectedKeys.remove();
+            if (!key.isValid())
+            {
+                continue;
+            }
+            if (key.isAcceptable())
+            {
+                acceptConnections((ServerSocketChannel) key.channel());
+            }
+            else if (key.isReadable())
+            {
+                final TopicChannel topicChannel = (TopicChannel) key.attachment();
+                try
+                {
+                    while (topicChannel.receive(subscriberPageCache))
+                    {
+                        // staging buffer was filled; read again
+                    }
+                }
+                catch (UncheckedIOException | IOException | IllegalArgumentException e)
+                {
+                    // connection closed, or sent an invalid frame
+                    key.cancel();
+                    closeQuietly(key.channel());
+                }
+            }
+        }
+    }
+
+    private void acceptConnections(final ServerSocketChannel serverSocketChannel)
+    {
+        try
+        {
+            SocketChannel accepted;
+            while ((accepted = serverSocketChannel.accept()) != null)
+            {
+                accepted.configureBlocking(false);
+                acceptedConnectionHandler.accept(accepted);
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            // TODO emit event
+        }
+    }
+
+    private void registerNewConnections() throws ClosedChannelException
+    {
+        SocketChannel channel;
+        while ((channel = newConnections.poll()) != null)
+        {
+            channel.register(selector, SelectionKey.OP_READ,
+                    new TopicChannel(channel, nativeOrderTopicIds, subscriberPageCache.getMaxRecordLength()));
+        }
+    }
+
+    private void registerBoundServerSockets() throws IOException
+    {
+        final Iterator<ServerSocketChannel> iterator = unboundServerSocketChannels.iterator();
+        while (iterator.hasNext())
+        {
+            final ServerSocketChannel channel = iterator.next();
+            if (channel.getLocalAddress() != null)
+            {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_ACCEPT);
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean hasOpenConnections()
+    {
+        if (!newConnections.isEmpty())
+        {
+            return true;
+        }
+        // cancelled keys remain registered until the next select, but are no longer valid
+        for (final SelectionKey key : selector.keys())
+        {
+            if (key.isValid())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void closeConnections()
+    {
+        for (final SelectionKey key : selector.keys())
+        {
+            if (key.channel() instanceof SocketChannel)
+            {
+                closeQuietly(key.channel());
+            }
+        }
+        closeQuietly(selector);
+    }
+
+    private static void rejectConnection(final SocketChannel channel)
+    {
+        throw new IllegalStateException("Loop does not accept connections");
+    }
+
+    private static Selector openSelector()
+    {
+        try
+        {
+            return Selector.open();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable)
+    {
+        try
+        {
+            closeable.close();
+        }
+        catch (Exception e)
+        {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes, for each outbound connection of a reader, the journal position of the oldest record
+ * that the connection may still re-deliver.
+ * <p>
+ * A record that has been buffered, but not completely written to the socket, is re-delivered from
+ * the journal if the connection fails; by then, the reader may have moved on to a later page.
+ * Page retention uses {@link #lowestPageNumber(int)} so that such pages are not removed.
+ */
+public final class ResendPositions
+{
+    private final List<AtomicLong> positions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Determine the lowest page that may still be read, either by the reader or by a resend.
+     * <p>
+     * The reader's page number must be read before calling this method, since a connection publishes
+     * its resend position before the reader moves past the record.
+     *
+     * @param readerPageNumber the page number of the reader's cursor
+     * @return the lowest page number that must be retained
+     */
+    public int lowestPageNumber(final int readerPageNumber)
+    {
+        int lowestPageNumber = readerPageNumber;
+        for (final AtomicLong position : positions)
+        {
+            final long resendPosition = position.get();
+            if (resendPosition != OutboundConnection.NONE)
+            {
+                lowestPageNumber = Math.min(lowestPageNumber, OutboundConnection.pageNumber(resendPosition));
+            }
+        }
+        return lowestPageNumber;
+    }
+
+    AtomicLong register()
+    {
+        final AtomicLong position = new AtomicLong(OutboundConnection.NONE);
+        positions.add(position);
+        return position;
+    }
+}
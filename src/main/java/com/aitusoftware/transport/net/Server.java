@@ -16,52 +16,95 @@
 package com.aitusoftware.transport.net;
 
 import com.aitusoftware.transport.buffer.PageCache;
-import com.aitusoftware.transport.buffer.WritableRecord;
 import com.aitusoftware.transport.factory.SubscriberThreading;
-import com.aitusoftware.transport.threads.Idler;
-import com.aitusoftware.transport.threads.Idlers;
+import com.aitusoftware.transport.messaging.PayloadByteOrder;
 import org.agrona.collections.Int2ObjectHashMap;
 import org.agrona.collections.IntHashSet;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.NotYetBoundException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntFunction;
 
 import static com.aitusoftware.transport.threads.Threads.loggingRunnable;
 import static com.aitusoftware.transport.threads.Threads.namedThread;
 
+/**
+ * Receives messages from remote publishers, and writes them to the subscriber page-cache.
+ * <p>
+ * Connections are serviced by selector-driven I/O threads, allocated according to the
+ * configured {@link SubscriberThreading}:
+ * <ul>
+ *     <li>SINGLE_THREADED - a pool of I/O threads (one by default); the first thread accepts
+ *     connections for all topics, and assigns them to the pool in turn</li>
+ *     <li>THREAD_PER_TOPIC - one thread per topic, accepting and servicing connections for that topic</li>
+ *     <li>THREAD_PER_CONNECTION - one thread accepting connections for all topics,
+ *     and a dedicated thread for each accepted connection, which exits when the connection is closed</li>
+ * </ul>
+ * Each connection's {@link Handshake} is checked against the topics that declare
+ * {@link PayloadByteOrder#NATIVE} payloads; a peer with a different native byte order
+ * is disconnected if it sends messages for such a topic.
+ */
 public final class Server
 {
     private final IntHashSet subscriberTopicIds;
     private final IntFunction<ServerSocketChannel> socketFactory;
     private final PageCache subscriberPageCache;
-    private final ServerTopicChannel[] serverSocketChannels;
     private final SubscriberThreading subscriberThreading;
     private final Int2ObjectHashMap<Class<?>> topicIdToTopic;
-    private final List<TopicChannel> channels = new ArrayList<>();
-    private final Idler idler = Idlers.staticPause(1, TimeUnit.MILLISECONDS);
-    private final CountDownLatch listenerStarted = new CountDownLatch(1);
+    private final int ioThreadCount;
+    private final IntHashSet nativeOrderTopicIds = new IntHashSet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile CountDownLatch listenerStarted = new CountDownLatch(1);
 
     public Server(final IntHashSet subscriberTopicIds,
                   final IntFunction<ServerSocketChannel> socketFactory,
                   final PageCache subscriberPageCache, final SubscriberThreading subscriberThreading,
                   final Int2ObjectHashMap<Class<?>> topicIdToTopic)
     {
+        this(subscriberTopicIds, socketFactory, subscriberPageCache, subscriberThreading, topicIdToTopic, 1);
+    }
+
+    /**
+     * Creates a server.
+     *
+     * @param subscriberTopicIds  topics to receive
+     * @param socketFactory       provides the listening socket for each topic
+     * @param subscriberPageCache page-cache to which received messages are written
+     * @param subscriberThreading I/O thread allocation
+     * @param topicIdToTopic      topic definitions, used for naming threads
+     * @param ioThreadCount       number of I/O threads servicing connections in SINGLE_THREADED mode
+     */
+    public Server(final IntHashSet subscriberTopicIds,
+                  final IntFunction<ServerSocketChannel> socketFactory,
+                  final PageCache subscriberPageCache, final SubscriberThreading subscriberThreading,
+                  final Int2ObjectHashMap<Class<?>> topicIdToTopic, final int ioThreadCount)
+    {
+        if (ioThreadCount < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "I/O thread count must be positive: %d", ioThreadCount));
+        }
         this.subscriberTopicIds = subscriberTopicIds;
         this.socketFactory = socketFactory;
         this.subscriberPageCache = subscriberPageCache;
-        serverSocketChannels = new ServerTopicChannel[subscriberTopicIds.size()];
         this.subscriberThreading = subscriberThreading;
         this.topicIdToTopic = topicIdToTopic;
+        this.ioThreadCount = ioThreadCount;
+        for (final Integer topicId : subscriberTopicIds)
+        {
+            final Class<?> topic = topicIdToTopic.get(topicId);
+            if (topic != null && PayloadByteOrder.forTopic(topic) == PayloadByteOrder.NATIVE)
+            {
+                nativeOrderTopicIds.add(topicId);
+            }
+        }
     }
 
     public void start(final ExecutorService executor)
@@ -69,25 +112,27 @@ public final class Server
         switch (subscriberThreading)
         {
             case SINGLE_THREADED:
-                final int[] topicIds = new int[subscriberTopicIds.size()];
-                int ptr = 0;
-                for (Integer topicId : subscriberTopicIds)
-                {
-                    topicIds[ptr++] = topicId;
-                }
-                executor.submit(loggingRunnable(namedThread("request-server",
-                        singleThreadReceiveLoop(topicIds))));
+                listenerStarted = new CountDownLatch(1);
+                startIoThreadPool(executor);
                 break;
             case THREAD_PER_TOPIC:
+                listenerStarted = new CountDownLatch(subscriberTopicIds.size());
                 for (Integer subscriberTopicId : subscriberTopicIds)
                 {
                     final Class<?> topic = topicIdToTopic.get(subscriberTopicId);
+                    final ReceiveLoop topicLoop = new ReceiveLoop(subscriberPageCache, nativeOrderTopicIds,
+                            serverSocketChannels(subscriberTopicId), listenerStarted::countDown);
                     executor.submit(loggingRunnable(namedThread("request-server-" + topic.getSimpleName(),
-                            singleThreadReceiveLoop(new int[] {subscriberTopicId}))));
+                            topicLoop)));
                 }
                 break;
             case THREAD_PER_CONNECTION:
-                throw new UnsupportedOperationException();
+                listenerStarted = new CountDownLatch(1);
+                final ReceiveLoop acceptor = new ReceiveLoop(subscriberPageCache, nativeOrderTopicIds,
+                        serverSocketChannels(allTopicIds()),
+                        channel -> startConnectionThread(executor, channel), listenerStarted::countDown);
+                executor.submit(loggingRunnable(namedThread("request-server", acceptor)));
+                break;
             default:
                 throw new IllegalArgumentException();
         }
@@ -108,143 +153,54 @@ public final class Server
         }
     }
 
-    private Runnable singleThreadReceiveLoop(final int[] subscriberTopicIds)
+    private void startIoThreadPool(final ExecutorService executor)
     {
-        // TODO clean up, optimise for single topic per thread (remove loops)
-        return () ->
+        final ReceiveLoop[] ioLoops = new ReceiveLoop[ioThreadCount];
+        final AtomicInteger nextLoop = new AtomicInteger();
+        ioLoops[0] = new ReceiveLoop(subscriberPageCache, nativeOrderTopicIds, serverSocketChannels(allTopicIds()),
+                channel -> ioLoops[nextLoop.getAndIncrement() % ioLoops.length].addConnection(channel),
+                listenerStarted::countDown);
+        for (int i = 1; i < ioThreadCount; i++)
         {
-            int ptr = 0;
-            for (final int topicId : subscriberTopicIds)
-            {
-                final ServerSocketChannel channel = socketFactory.apply(topicId);
-                serverSocketChannels[ptr] = new ServerTopicChannel(channel);
-
-                ptr++;
-            }
-
-            listenerStarted.countDown();
-            while (!Thread.currentThread().isInterrupted())
-            {
-                boolean dataProcessed = acceptedNewConnections(subscriberTopicIds.length);
-
-                for (int i = 0; i < channels.size(); i++)
-                {
-                    final TopicChannel topicChannel = channels.get(i);
-                    try
-                    {
-                        topicChannel.readLength();
-                        if (topicChannel.isReady())
-                        {
-                            dataProcessed = true;
-                            final int length = topicChannel.getLength();
-                            final WritableRecord record = subscriberPageCache.acquireRecordBuffer(length);
-                            try
-                            {
-                                final ByteBuffer buffer = record.buffer();
-                                do
-                                {
-                                    topicChannel.channel.read(buffer);
-                                }
-                                while (buffer.remaining() != 0);
-                            }
-                            finally
-                            {
-                                record.commit();
-                            }
-                        }
-                    }
-                    catch (UncheckedIOException | IOException e)
-                    {
-                        channels.remove(topicChannel);
-                    }
-                }
-
-                if (!dataProcessed)
-                {
-                    idler.idle();
-                }
-                else
-                {
-                    idler.reset();
-                }
-            }
-        };
-    }
-
-    @SuppressWarnings("ForLoopReplaceableByForEach")
-    private boolean acceptedNewConnections(final int serverSocketCount)
-    {
-        boolean connectionAccepted = false;
-        for (int i = 0; i < serverSocketCount; i++)
+            ioLoops[i] = new ReceiveLoop(subscriberPageCache, nativeOrderTopicIds);
+        }
+        executor.submit(loggingRunnable(namedThread("request-server", ioLoops[0])));
+        for (int i = 1; i < ioThreadCount; i++)
         {
-            try
-            {
-                final SocketChannel accepted = serverSocketChannels[i].channel.accept();
-                if (accepted != null)
-                {
-                    accepted.configureBlocking(false);
-                    channels.add(new TopicChannel(accepted));
-                    connectionAccepted = true;
-                }
-            }
-            catch (NotYetBoundException e)
-            {
-                // ignore, server socket is not ready yet
-            }
-            catch (IOException e)
-            {
-                e.printStackTrace();
-                // TODO emit event
-            }
+            executor.submit(loggingRunnable(namedThread("request-server-io-" + i, ioLoops[i])));
         }
-        return connectionAccepted;
     }
 
-    private static final class TopicChannel
+    private void startConnectionThread(final ExecutorService executor, final SocketChannel channel)
     {
-        private final SocketChannel channel;
-        private final ByteBuffer lengthBuffer = ByteBuffer.allocateDirect(4);
-
-        TopicChannel(final SocketChannel channel)
-        {
-            this.channel = channel;
-        }
-
-        boolean isReady()
-        {
-            return lengthBuffer.position() == 4;
-        }
-
-        int getLength()
-        {
-            final int length = lengthBuffer.flip().getInt();
-            lengthBuffer.clear();
-            return length;
-        }
+        final ReceiveLoop connectionLoop = ReceiveLoop.forConnection(subscriberPageCache, nativeOrderTopicIds, channel);
+        executor.submit(loggingRunnable(namedThread(
+                "request-server-connection-" + connectionCount.getAndIncrement(), connectionLoop)));
+    }
 
-        void readLength()
+    private Collection<ServerSocketChannel> serverSocketChannels(final int... topicIds)
+    {
+        // topics may share a listen address
+        final Set<ServerSocketChannel> channels = new LinkedHashSet<>();
+        for (final int topicId : topicIds)
         {
-            try
+            final ServerSocketChannel channel = socketFactory.apply(topicId);
+            if (channel != null)
             {
-                if (-1 == channel.read(lengthBuffer))
-                {
-                    throw new IOException("End of stream");
-                }
-            }
-            catch (IOException e)
-            {
-                throw new UncheckedIOException(e);
+                channels.add(channel);
             }
         }
+        return channels;
     }
 
-    private static final class ServerTopicChannel
+    private int[] allTopicIds()
     {
-        private final ServerSocketChannel channel;
-
-        ServerTopicChannel(final ServerSocketChannel channel)
+        final int[] topicIds = new int[subscriberTopicIds.size()];
+        int ptr = 0;
+        for (Integer topicId : subscriberTopicIds)
         {
-            this.channel = channel;
+            topicIds[ptr++] = topicId;
         }
+        return topicIds;
     }
-}
\ No newline at end of file
+}
@@ -15,55 +15,68 @@
  */
 package com.aitusoftware.transport.net;
 
+import com.aitusoftware.transport.reader.StreamingReaderContext;
 import com.aitusoftware.transport.threads.SingleThreaded;
+import org.agrona.collections.Int2ObjectHashMap;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.GatheringByteChannel;
 
 @SingleThreaded
 public final class SingleChannelTopicMessageHandler implements TopicMessageHandler
 {
-    private final ByteBuffer[] srcs = new ByteBuffer[2];
+    private final Int2ObjectHashMap<OutboundConnection> connections = new Int2ObjectHashMap<>();
     private final TopicToChannelMapper channelMapper;
-    private final ByteBuffer lengthBuffer;
-
+    private final WriteCoalescing writeCoalescing;
+    private final ResendPositions resendPositions;
 
     public SingleChannelTopicMessageHandler(
             final TopicToChannelMapper channelMapper)
+    {
+        this(channelMapper, WriteCoalescing.DISABLED);
+    }
+
+    public SingleChannelTopicMessageHandler(
+            final TopicToChannelMapper channelMapper, final WriteCoalescing writeCoalescing)
+    {
+        this(channelMapper, writeCoalescing, new ResendPositions());
+    }
+
+    public SingleChannelTopicMessageHandler(
+            final TopicToChannelMapper channelMapper, final WriteCoalescing writeCoalescing,
+            final ResendPositions resendPositions)
     {
         this.channelMapper = channelMapper;
-        lengthBuffer = ByteBuffer.allocateDirect(4);
-        srcs[0] = lengthBuffer;
+        this.writeCoalescing = writeCoalescing;
+        this.resendPositions = resendPositions;
     }
 
     @Override
-    public void onTopicMessage(final int topicId, final ByteBuffer data)
+    public void onTopicMessage(final int topicId, final ByteBuffer data, final int pageNumber, final int position)
     {
-        srcs[1] = data;
-        lengthBuffer.clear();
-        // TODO should be able to determine length from record header
-        lengthBuffer.putInt(0, data.remaining());
+        OutboundConnection connection = connections.get(topicId);
+        if (connection == null)
+        {
+            connection = new OutboundConnection(channelMapper, topicId, writeCoalescing, resendPositions);
+            connections.put(topicId, connection);
+        }
+        rewindTo(connection.onRecord(data, OutboundConnection.journalPosition(pageNumber, position)));
+    }
 
-        do
+    @Override
+    public void flush()
+    {
+        for (final OutboundConnection connection : connections.values())
+        {
+            rewindTo(connection.flush());
+        }
+    }
+
+    private static void rewindTo(final long journalPosition)
+    {
+        if (journalPosition != OutboundConnection.NONE)
         {
-            try
-            {
-                final GatheringByteChannel channel = channelMapper.forTopic(topicId);
-                if (channel == null)
-                {
-                    // TODO should be handled by reconnect logic
-                    return;
-                }
-                channel.write(srcs);
-            }
-            catch (RuntimeException | IOException e)
-            {
-                // TODO buffer data
-                channelMapper.reconnectChannel(topicId);
-            }
+            StreamingReaderContext.get().rewindTo(
+                    OutboundConnection.pageNumber(journalPosition), OutboundConnection.position(journalPosition));
         }
-        while ((data.remaining() != 0 || lengthBuffer.remaining() != 0) &&
-                !Thread.currentThread().isInterrupted());
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import com.aitusoftware.transport.messaging.RecordTimestamps;
+import com.aitusoftware.transport.metrics.LatencyStage;
+import com.aitusoftware.transport.metrics.StageLatencies;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Records the time taken for timestamped records to be sent after publication.
+ * <p>
+ * The send time itself is set by the connection in the outgoing frame, so that records
+ * in the journal are never modified after they have been committed.
+ */
+public final class TimestampingTopicMessageHandler implements TopicMessageHandler
+{
+    private final StageLatencies stageLatencies;
+    private final TopicMessageHandler delegate;
+
+    private TimestampingTopicMessageHandler(final StageLatencies stageLatencies, final TopicMessageHandler delegate)
+    {
+        this.stageLatencies = stageLatencies;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onTopicMessage(final int topicId, final ByteBuffer data, final int pageNumber, final int position)
+    {
+        final int recordOffset = data.position();
+        if (RecordTimestamps.isTimestamped(data, recordOffset, data.remaining()))
+        {
+            stageLatencies.record(topicId, LatencyStage.PUBLISH_TO_SEND,
+                    System.nanoTime() - RecordTimestamps.publishNanos(data, recordOffset));
+        }
+        delegate.onTopicMessage(topicId, data, pageNumber, position);
+    }
+
+    @Override
+    public void flush()
+    {
+        delegate.flush();
+    }
+
+    public static TopicMessageHandler timestamp(final StageLatencies stageLatencies, final TopicMessageHandler delegate)
+    {
+        return new TimestampingTopicMessageHandler(stageLatencies, delegate);
+    }
+}
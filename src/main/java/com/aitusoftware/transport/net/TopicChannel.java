@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.RecordBatch;
+import com.aitusoftware.transport.buffer.WritableRecord;
+import com.aitusoftware.transport.messaging.RecordTimestamps;
+import org.agrona.collections.IntHashSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * Per-connection receive state. Data is read from the socket into a staging buffer
+ * with as few calls as possible; complete frames are then written to the page-cache
+ * with a single batch claim, and partial frames are carried over to the next read.
+ */
+final class TopicChannel
+{
+    private static final int INITIAL_STAGING_BUFFER_SIZE = 64 * 1024;
+    private static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+
+    private final SocketChannel channel;
+    private final IntHashSet nativeOrderTopicIds;
+    private final int maxFrameLength;
+    private ByteBuffer stagingBuffer = ByteBuffer.allocateDirect(INITIAL_STAGING_BUFFER_SIZE);
+    private ByteBuffer frameView = stagingBuffer.duplicate();
+    private int[] frameLengths = new int[64];
+    private boolean handshakeChecked;
+    private boolean peerByteOrderDiffers;
+    private boolean incompatibleFrameReceived;
+    private IOException invalidFrame;
+
+    TopicChannel(final SocketChannel channel, final IntHashSet nativeOrderTopicIds, final int maxFrameLength)
+    {
+        this.channel = channel;
+        this.nativeOrderTopicIds = nativeOrderTopicIds;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Read available data and write complete frames to the page-cache.
+     *
+     * @param subscriberPageCache destination for received messages
+     * @return whether the staging buffer was filled, indicating that more data may be available
+     * @throws IOException if the connection is closed, or a frame is invalid
+     */
+    boolean receive(final PageCache subscriberPageCache) throws IOException
+    {
+        final int available = stagingBuffer.remaining();
+        final int bytesRead = channel.read(stagingBuffer);
+        if (bytesRead == -1)
+        {
+            throw new IOException("End of stream");
+        }
+        if (bytesRead == 0)
+        {
+            return false;
+        }
+        stagingBuffer.flip();
+        if (!handshakeChecked)
+        {
+            checkHandshake();
+        }
+        writeFrames(subscriberPageCache, countCompleteFrames());
+        if (invalidFrame != null)
+        {
+            throw invalidFrame;
+        }
+        if (incompatibleFrameReceived)
+        {
+            throw new IOException("Peer byte order is incompatible with topic payload byte order");
+        }
+        stagingBuffer.compact();
+        ensureCapacityForNextFrame();
+        return bytesRead == available;
+    }
+
+    private void checkHandshake() throws IOException
+    {
+        final int offset = stagingBuffer.position();
+        if (stagingBuffer.limit() - offset < LENGTH_PREFIX_SIZE)
+        {
+            return;
+        }
+        final int length = frameLength(offset);
+        if (stagingBuffer.limit() - offset - LENGTH_PREFIX_SIZE < length)
+        {
+            return;
+        }
+        handshakeChecked = true;
+        final int payloadOffset = offset + LENGTH_PREFIX_SIZE;
+        if (Handshake.isHandshake(stagingBuffer, payloadOffset, length))
+        {
+            peerByteOrderDiffers = Handshake.peerByteOrder(stagingBuffer, payloadOffset) != ByteOrder.nativeOrder();
+            stagingBuffer.position(payloadOffset + length);
+        }
+        else
+        {
+            // peer predates the handshake, and uses big-endian payloads
+            peerByteOrderDiffers = ByteOrder.nativeOrder() != ByteOrder.BIG_ENDIAN;
+        }
+    }
+
+    private int countCompleteFrames()
+    {
+        int frameCount = 0;
+        int offset = stagingBuffer.position();
+        final int limit = stagingBuffer.limit();
+        while (limit - offset >= LENGTH_PREFIX_SIZE)
+        {
+            final int length;
+            try
+            {
+                length = frameLength(offset);
+            }
+            catch (IOException e)
+            {
+                // frames preceding the invalid frame are delivered
+                invalidFrame = e;
+                break;
+            }
+            if (limit - offset - LENGTH_PREFIX_SIZE < length)
+            {
+                break;
+            }
+            if (peerByteOrderDiffers && isNativeOrderFrame(offset, length))
+            {
+                incompatibleFrameReceived = true;
+                break;
+            }
+            if (frameCount == frameLengths.length)
+            {
+                frameLengths = Arrays.copyOf(frameLengths, frameLengths.length * 2);
+            }
+            frameLengths[frameCount++] = length;
+            offset += LENGTH_PREFIX_SIZE + length;
+        }
+        return frameCount;
+    }
+
+    private boolean isNativeOrderFrame(final int offset, final int length)
+    {
+        return length >= Integer.BYTES &&
+                nativeOrderTopicIds.contains(stagingBuffer.getInt(offset + LENGTH_PREFIX_SIZE));
+    }
+
+    private void writeFrames(final PageCache subscriberPageCache, final int frameCount)
+    {
+        int written = 0;
+        while (written < frameCount)
+        {
+            final RecordBatch batch = subscriberPageCache.acquireRecordBatch(
+                    frameLengths, written, frameCount - written);
+            while (batch.hasNext())
+            {
+                final WritableRecord record = batch.next();
+                final int frameStart = stagingBuffer.position() + LENGTH_PREFIX_SIZE;
+                final int frameEnd = frameStart + frameLengths[written];
+                try
+                {
+                    frameView.limit(frameEnd).position(frameStart);
+                    final int recordOffset = record.buffer().position();
+                    record.buffer().put(frameView);
+                    if (RecordTimestamps.ENABLED &&
+                            RecordTimestamps.isTimestamped(record.buffer(), recordOffset, frameLengths[written]))
+                    {
+                        RecordTimestamps.putReceiveNanos(record.buffer(), recordOffset, System.nanoTime());
+                    }
+                }
+                finally
+                {
+                    record.commit();
+                }
+                stagingBuffer.position(frameEnd);
+                written++;
+            }
+        }
+    }
+
+    private void ensureCapacityForNextFrame() throws IOException
+    {
+        if (stagingBuffer.position() < LENGTH_PREFIX_SIZE)
+        {
+            return;
+        }
+        final int length = frameLength(0);
+        final int requiredCapacity = LENGTH_PREFIX_SIZE + length;
+        if (requiredCapacity > stagingBuffer.capacity())
+        {
+            final ByteBuffer resized = ByteBuffer.allocateDirect(Integer.highestOneBit(requiredCapacity - 1) << 1);
+            stagingBuffer.flip();
+            resized.put(stagingBuffer);
+            stagingBuffer = resized;
+            frameView = stagingBuffer.duplicate();
+        }
+    }
+
+    /**
+     * Reads a frame length sent by the peer; lengths that cannot be written to the page-cache
+     * are rejected before any buffer is sized for them.
+     */
+    private int frameLength(final int offset) throws IOException
+    {
+        final int length = stagingBuffer.getInt(offset);
+        if (length < 0 || length > maxFrameLength)
+        {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        return length;
+    }
+}
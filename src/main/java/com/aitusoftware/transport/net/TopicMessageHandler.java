@@ -19,5 +19,24 @@ import java.nio.ByteBuffer;
 
 public interface TopicMessageHandler
 {
-    void onTopicMessage(final int topicId, final ByteBuffer data);
+    /**
+     * Handle a message read from the outbound journal.
+     * <p>
+     * Implementations that cannot complete a write without waiting may request re-delivery
+     * using {@link com.aitusoftware.transport.reader.StreamingReaderContext#rewindTo(int, int)}.
+     *
+     * @param topicId    the topic of the message
+     * @param data       message content
+     * @param pageNumber page number of the journal record
+     * @param position   position of the journal record within its page
+     */
+    void onTopicMessage(final int topicId, final ByteBuffer data, final int pageNumber, final int position);
+
+    /**
+     * Complete any writes deferred by coalescing, or by a full socket.
+     */
+    default void flush()
+    {
+        // no-op
+    }
 }
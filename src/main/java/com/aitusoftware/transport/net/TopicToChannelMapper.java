@@ -15,9 +15,12 @@
  */
 package com.aitusoftware.transport.net;
 
+import com.aitusoftware.transport.metrics.Counter;
 import com.aitusoftware.transport.threads.SingleThreaded;
 import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntHashSet;
 
+import java.io.IOException;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SocketChannel;
 import java.util.function.IntFunction;
@@ -28,10 +31,28 @@ public final class TopicToChannelMapper
     private final IntFunction<SocketChannel> connector;
     private final Int2ObjectHashMap<SocketChannel> openChannels =
             new Int2ObjectHashMap<>();
+    private final IntHashSet connectedTopicIds = new IntHashSet();
+    private final Counter reconnects;
+    private final Counter droppedWrites;
 
     public TopicToChannelMapper(final IntFunction<SocketChannel> connector)
+    {
+        this(connector, null, null);
+    }
+
+    /**
+     * Creates a mapper that counts connection failures.
+     *
+     * @param connector     opens a connection for a topic
+     * @param reconnects    incremented when a topic is connected after a failure, or <code>null</code>
+     * @param droppedWrites incremented when a write fails, or <code>null</code>
+     */
+    public TopicToChannelMapper(
+            final IntFunction<SocketChannel> connector, final Counter reconnects, final Counter droppedWrites)
     {
         this.connector = connector;
+        this.reconnects = reconnects;
+        this.droppedWrites = droppedWrites;
     }
 
     GatheringByteChannel forTopic(final int topicId)
@@ -43,11 +64,31 @@ public final class TopicToChannelMapper
         }
         final SocketChannel connected = connector.apply(topicId);
         openChannels.put(topicId, connected);
+        if (!connectedTopicIds.add(topicId) && reconnects != null)
+        {
+            reconnects.incrementOrdered();
+        }
         return connected;
     }
 
     void reconnectChannel(final int topicId)
     {
-        openChannels.remove(topicId);
+        if (droppedWrites != null)
+        {
+            droppedWrites.incrementOrdered();
+        }
+        final SocketChannel channel = openChannels.remove(topicId);
+        if (channel != null)
+        {
+            try
+            {
+                // the peer discards any partially received frame
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                // ignore
+            }
+        }
     }
 }
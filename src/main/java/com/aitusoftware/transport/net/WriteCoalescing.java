@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration for combining outbound messages into larger socket writes.
+ * <p>
+ * Buffered messages are written when the buffer is full, when the oldest buffered
+ * message exceeds the maximum delay, or when the publishing reader has caught up
+ * with the journal.
+ */
+public final class WriteCoalescing
+{
+    public static final WriteCoalescing DISABLED = new WriteCoalescing(0, 0L);
+
+    private final int maxBatchBytes;
+    private final long maxBatchDelayNanos;
+
+    private WriteCoalescing(final int maxBatchBytes, final long maxBatchDelayNanos)
+    {
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchDelayNanos = maxBatchDelayNanos;
+    }
+
+    public static WriteCoalescing coalesce(final int maxBatchBytes, final long maxBatchDelay, final TimeUnit unit)
+    {
+        if (maxBatchBytes < 1 || maxBatchDelay < 0)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid coalescing thresholds: %d bytes, %d %s", maxBatchBytes, maxBatchDelay, unit));
+        }
+        return new WriteCoalescing(maxBatchBytes, unit.toNanos(maxBatchDelay));
+    }
+
+    public boolean isEnabled()
+    {
+        return maxBatchBytes != 0;
+    }
+
+    public int getMaxBatchBytes()
+    {
+        return maxBatchBytes;
+    }
+
+    public long getMaxBatchDelayNanos()
+    {
+        return maxBatchDelayNanos;
+    }
+}
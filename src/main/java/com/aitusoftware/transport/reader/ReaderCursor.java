@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.reader;
+
+import com.aitusoftware.transport.buffer.Slab;
+import com.aitusoftware.transport.buffer.SlabFactory;
+import com.aitusoftware.transport.files.Buffers;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the position of a {@link StreamingReader} within a page-cache.
+ * <p>
+ * A durable cursor is backed by a small memory-mapped file, so that a reader can
+ * resume from its last processed record after a restart. Updates are ordered writes;
+ * no attempt is made to force the data to storage.
+ * <p>
+ * Updates must be made from a single thread; the position can be read from any thread.
+ */
+public final class ReaderCursor
+{
+    public static final String SUFFIX = ".cursor";
+    private static final int FILE_SIZE = 64;
+    private static final int POSITION_OFFSET = 0;
+
+    private final Slab slab;
+
+    private ReaderCursor(final Slab slab)
+    {
+        this.slab = slab;
+    }
+
+    /**
+     * Open, or create, a durable cursor.
+     *
+     * @param directory  directory in which cursor files are stored
+     * @param readerName unique name of the reader
+     * @return the cursor
+     * @throws IOException if the cursor file cannot be mapped
+     */
+    public static ReaderCursor forReader(final Path directory, final String readerName) throws IOException
+    {
+        final Path cursorFile = directory.resolve(readerName + SUFFIX);
+        try
+        {
+            try (final FileChannel channel = FileChannel.open(cursorFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 final RandomAccessFile file = new RandomAccessFile(cursorFile.toFile(), "rw"))
+            {
+                file.setLength(FILE_SIZE);
+            }
+        }
+        catch (IOException e)
+        {
+            // already created
+        }
+
+        return new ReaderCursor(SlabFactory.createSlab(Buffers.map(cursorFile, FILE_SIZE)));
+    }
+
+    /**
+     * Create a cursor that starts at the beginning of the page-cache, and is not persisted.
+     *
+     * @return the cursor
+     */
+    public static ReaderCursor transientCursor()
+    {
+        return new ReaderCursor(SlabFactory.createSlab(FILE_SIZE));
+    }
+
+    /**
+     * Create a cursor that starts at the specified position, and is not persisted.
+     *
+     * @param pageNumber the page from which to start reading
+     * @param position   the position of a record header within the page
+     * @return the cursor
+     */
+    public static ReaderCursor transientCursor(final int pageNumber, final int position)
+    {
+        final ReaderCursor cursor = transientCursor();
+        cursor.update(pageNumber, position);
+        return cursor;
+    }
+
+    public int getPageNumber()
+    {
+        return (int) (slab.getLongVolatile(POSITION_OFFSET) >>> 32);
+    }
+
+    public int getPosition()
+    {
+        return (int) slab.getLongVolatile(POSITION_OFFSET);
+    }
+
+    long getJournalPosition()
+    {
+        return slab.getLongVolatile(POSITION_OFFSET);
+    }
+
+    void update(final int pageNumber, final int position)
+    {
+        slab.writeOrderedLong(POSITION_OFFSET, ((long) pageNumber << 32) | (position & 0xFFFF_FFFFL));
+    }
+}
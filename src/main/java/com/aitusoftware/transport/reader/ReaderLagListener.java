@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.reader;
+
+/**
+ * Notified by a {@link ReaderLagMonitor} when a reader falls behind the writer of its page-cache.
+ */
+@FunctionalInterface
+public interface ReaderLagListener
+{
+    /**
+     * Called when a reader's lag first exceeds a threshold.
+     *
+     * @param readerName the reader
+     * @param lagBytes   estimated lag in bytes
+     * @param lagRecords estimated lag in records
+     */
+    void onLagThresholdExceeded(final String readerName, final long lagBytes, final long lagRecords);
+
+    /**
+     * Called when a reader that exceeded a threshold has fallen below half of each threshold.
+     *
+     * @param readerName the reader
+     * @param lagBytes   estimated lag in bytes
+     * @param lagRecords estimated lag in records
+     */
+    default void onLagRecovered(final String readerName, final long lagBytes, final long lagRecords)
+    {
+        // no-op
+    }
+}
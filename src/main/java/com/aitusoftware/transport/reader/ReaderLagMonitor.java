@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.reader;
+
+import com.aitusoftware.transport.metrics.Counter;
+import com.aitusoftware.transport.threads.Idler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Periodically compares the lag of registered readers with thresholds, notifying a {@link ReaderLagListener}
+ * when a reader becomes a slow consumer, and again once it has recovered.
+ * <p>
+ * A reader is slow when either its lag in bytes, or its estimated lag in records, exceeds the threshold;
+ * it has recovered once both have fallen to half of their thresholds, so that a reader close to a threshold
+ * does not cause repeated notifications. Use <code>Long.MAX_VALUE</code> to ignore either measure.
+ */
+public final class ReaderLagMonitor
+{
+    private final long maxLagBytes;
+    private final long maxLagRecords;
+    private final ReaderLagListener listener;
+    private final Idler idler;
+    private final List<MonitoredReader> readers = new CopyOnWriteArrayList<>();
+
+    public ReaderLagMonitor(
+            final long maxLagBytes, final long maxLagRecords,
+            final ReaderLagListener listener, final Idler idler)
+    {
+        if (maxLagBytes < 1 || maxLagRecords < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid lag thresholds: %d bytes, %d records", maxLagBytes, maxLagRecords));
+        }
+        this.maxLagBytes = maxLagBytes;
+        this.maxLagRecords = maxLagRecords;
+        this.listener = listener;
+        this.idler = idler;
+    }
+
+    /**
+     * Register a reader to be monitored.
+     *
+     * @param readerName         name passed to the listener
+     * @param reader             the reader
+     * @param lagBytes           set to the reader's lag on each check, or <code>null</code>
+     * @param slowConsumerEvents incremented when the reader exceeds a threshold, or <code>null</code>
+     */
+    public void registerReader(
+            final String readerName, final StreamingReader reader,
+            final Counter lagBytes, final Counter slowConsumerEvents)
+    {
+        readers.add(new MonitoredReader(readerName, reader, lagBytes, slowConsumerEvents));
+    }
+
+    public void execute()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            checkLag();
+            idler.idle();
+        }
+    }
+
+    void checkLag()
+    {
+        for (int i = 0; i < readers.size(); i++)
+        {
+            final MonitoredReader monitoredReader = readers.get(i);
+            final long lagBytes = monitoredReader.reader.getLag();
+            final long lagRecords = monitoredReader.reader.getLagRecords();
+            if (monitoredReader.lagBytes != null)
+            {
+                monitoredReader.lagBytes.setOrdered(lagBytes);
+            }
+            if (!monitoredReader.slow && (lagBytes > maxLagBytes || lagRecords > maxLagRecords))
+            {
+                monitoredReader.slow = true;
+                if (monitoredReader.slowConsumerEvents != null)
+                {
+                    monitoredReader.slowConsumerEvents.incrementOrdered();
+                }
+                listener.onLagThresholdExceeded(monitoredReader.readerName, lagBytes, lagRecords);
+            }
+            else if (monitoredReader.slow && lagBytes <= maxLagBytes / 2 && lagRecords <= maxLagRecords / 2)
+            {
+                monitoredReader.slow = false;
+                listener.onLagRecovered(monitoredReader.readerName, lagBytes, lagRecords);
+            }
+        }
+    }
+
+    private static final class MonitoredReader
+    {
+        private final String readerName;
+        private final StreamingReader reader;
+        private final Counter lagBytes;
+        private final Counter slowConsumerEvents;
+        private boolean slow;
+
+        MonitoredReader(
+                final String readerName, final StreamingReader reader,
+                final Counter lagBytes, final Counter slowConsumerEvents)
+        {
+            this.readerName = readerName;
+            this.reader = reader;
+            this.lagBytes = lagBytes;
+            this.slowConsumerEvents = slowConsumerEvents;
+        }
+    }
+}
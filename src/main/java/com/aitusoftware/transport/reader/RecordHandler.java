@@ -21,4 +21,13 @@ import java.nio.ByteBuffer;
 public interface RecordHandler
 {
     void onRecord(final ByteBuffer data, final int pageNumber, final int position);
+
+    /**
+     * Invoked by a {@link StreamingReader} when it has processed all available records,
+     * before it waits for more; a hint that any batched work should be completed.
+     */
+    default void onCaughtUp()
+    {
+        // no-op
+    }
 }
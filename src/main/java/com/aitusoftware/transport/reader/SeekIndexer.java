@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.reader;
+
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.SeekIndex;
+import com.aitusoftware.transport.threads.Idler;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+
+/**
+ * Appends an entry to a {@link SeekIndex} for every <code>recordInterval</code> records in a page-cache.
+ * <p>
+ * Sequence numbers count records from the start of the page-cache; timestamps are taken
+ * from the supplied clock when the record is indexed, so will trail the publish time
+ * by the indexer's lag.
+ */
+public final class SeekIndexer implements RecordHandler
+{
+    private final SeekIndex seekIndex;
+    private final int recordInterval;
+    private final LongSupplier clock;
+    private long sequence;
+    private long lastIndexedSequence;
+    private long lastTimestamp;
+
+    SeekIndexer(
+            final SeekIndex seekIndex, final int recordInterval,
+            final LongSupplier clock, final long initialSequence)
+    {
+        if (recordInterval < 1)
+        {
+            throw new IllegalArgumentException(String.format(
+                    "Record interval must be positive: %d", recordInterval));
+        }
+        this.seekIndex = seekIndex;
+        this.recordInterval = recordInterval;
+        this.clock = clock;
+        this.sequence = initialSequence;
+        final int entryCount = seekIndex.getEntryCount();
+        lastIndexedSequence = entryCount == 0 ? -1L : seekIndex.sequenceAt(entryCount - 1);
+        lastTimestamp = entryCount == 0 ? Long.MIN_VALUE : seekIndex.timestampAt(entryCount - 1);
+    }
+
+    @Override
+    public void onRecord(final ByteBuffer data, final int pageNumber, final int position)
+    {
+        if (sequence % recordInterval == 0 && sequence > lastIndexedSequence)
+        {
+            // keep timestamps monotonic in case of wall-clock adjustments
+            lastTimestamp = Math.max(lastTimestamp, clock.getAsLong());
+            seekIndex.append(sequence, lastTimestamp, pageNumber, position);
+            lastIndexedSequence = sequence;
+        }
+        sequence++;
+    }
+
+    /**
+     * Create a reader that maintains the seek index for a page-cache.
+     * <p>
+     * Indexing resumes from the last entry in the index.
+     *
+     * @param pageCache      the page-cache to index
+     * @param seekIndex      the index to append to
+     * @param recordInterval number of records between index entries
+     * @param idler          idle strategy used when no records are available
+     * @return the reader
+     */
+    public static StreamingReader createIndexingReader(
+            final PageCache pageCache, final SeekIndex seekIndex,
+            final int recordInterval, final Idler idler)
+    {
+        final int entryCount = seekIndex.getEntryCount();
+        if (entryCount == 0)
+        {
+            return new StreamingReader(pageCache,
+                    new SeekIndexer(seekIndex, recordInterval, System::currentTimeMillis, 0L), true, idler);
+        }
+        final int lastEntry = entryCount - 1;
+        return new StreamingReader(pageCache,
+                new SeekIndexer(seekIndex, recordInterval, System::currentTimeMillis, seekIndex.sequenceAt(lastEntry)),
+                true, idler,
+                ReaderCursor.transientCursor(seekIndex.pageNumberAt(lastEntry), seekIndex.positionAt(lastEntry)));
+    }
+}
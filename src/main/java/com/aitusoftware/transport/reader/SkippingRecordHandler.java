@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.reader;
+
+import java.nio.ByteBuffer;
+
+final class SkippingRecordHandler implements RecordHandler
+{
+    private final RecordHandler delegate;
+    private long remainingSkipCount;
+
+    SkippingRecordHandler(final RecordHandler delegate, final long skipCount)
+    {
+        this.delegate = delegate;
+        this.remainingSkipCount = skipCount;
+    }
+
+    @Override
+    public void onRecord(final ByteBuffer data, final int pageNumber, final int position)
+    {
+        if (remainingSkipCount != 0)
+        {
+            remainingSkipCount--;
+            return;
+        }
+        delegate.onRecord(data, pageNumber, position);
+    }
+
+    @Override
+    public void onCaughtUp()
+    {
+        delegate.onCaughtUp();
+    }
+}
@@ -19,6 +19,7 @@ import com.aitusoftware.transport.buffer.Offsets;
 import com.aitusoftware.transport.buffer.Page;
 import com.aitusoftware.transport.buffer.PageCache;
 import com.aitusoftware.transport.buffer.Record;
+import com.aitusoftware.transport.buffer.SeekIndex;
 import com.aitusoftware.transport.buffer.Slice;
 import com.aitusoftware.transport.threads.Idler;
 import com.aitusoftware.transport.threads.SingleThreaded;
@@ -27,25 +28,109 @@ import java.util.concurrent.atomic.AtomicLong;
 
 public final class StreamingReader
 {
+    // records are aligned to cache-lines
+    private static final int MIN_RECORD_FOOTPRINT = Offsets.getAlignedPosition(Record.HEADER_LENGTH + 1);
+
     private final PageCache pageCache;
     private final RecordHandler recordHandler;
     private final boolean tail;
     private final Idler idler;
     private final AtomicLong messageCount = new AtomicLong();
+    private final ReaderCursor cursor;
+    private final long startReadPosition;
     private long localMessageCount;
-    private int pageNumber = 0;
-    private int position = 0;
+    private boolean recordsProcessedSinceCaughtUp;
+    private boolean rewound;
+    private int pageNumber;
+    private int position;
     private Page page;
     private StreamingReaderContext context;
 
     public StreamingReader(
             final PageCache pageCache, final RecordHandler recordHandler,
             final boolean tail, final Idler idler)
+    {
+        this(pageCache, recordHandler, tail, idler, ReaderCursor.transientCursor());
+    }
+
+    /**
+     * Creates a reader that starts from, and records its progress in, the supplied cursor.
+     *
+     * @param pageCache     the page-cache to read
+     * @param recordHandler handler for records
+     * @param tail          whether to wait for new records once the end of the page-cache is reached
+     * @param idler         idle strategy used when no records are available
+     * @param cursor        position from which to start reading
+     */
+    public StreamingReader(
+            final PageCache pageCache, final RecordHandler recordHandler,
+            final boolean tail, final Idler idler, final ReaderCursor cursor)
     {
         this.pageCache = pageCache;
         this.recordHandler = recordHandler;
         this.tail = tail;
         this.idler = idler;
+        this.cursor = cursor;
+        pageNumber = cursor.getPageNumber();
+        position = cursor.getPosition();
+        startReadPosition = readPosition();
+    }
+
+    /**
+     * Creates a reader whose first delivered record is the one with the specified sequence number,
+     * counting from the start of the page-cache.
+     * <p>
+     * Reading starts from the closest preceding entry in the seek index;
+     * intervening records are skipped.
+     *
+     * @param pageCache     the page-cache to read
+     * @param seekIndex     index of the page-cache
+     * @param sequence      sequence number of the first record to deliver
+     * @param recordHandler handler for records
+     * @param tail          whether to wait for new records once the end of the page-cache is reached
+     * @param idler         idle strategy used when no records are available
+     * @return the reader
+     */
+    public static StreamingReader fromSequence(
+            final PageCache pageCache, final SeekIndex seekIndex, final long sequence,
+            final RecordHandler recordHandler, final boolean tail, final Idler idler)
+    {
+        final int entry = seekIndex.findBySequence(sequence);
+        if (entry < 0)
+        {
+            return new StreamingReader(pageCache,
+                    new SkippingRecordHandler(recordHandler, Math.max(0L, sequence)), tail, idler);
+        }
+        return new StreamingReader(pageCache,
+                new SkippingRecordHandler(recordHandler, sequence - seekIndex.sequenceAt(entry)), tail, idler,
+                ReaderCursor.transientCursor(seekIndex.pageNumberAt(entry), seekIndex.positionAt(entry)));
+    }
+
+    /**
+     * Creates a reader that starts from the last index entry recorded at or before the specified time.
+     * <p>
+     * Since the index is sparse, records indexed before <code>timestampMillis</code> may be delivered;
+     * handlers requiring an exact start point should filter on a timestamp in the record.
+     *
+     * @param pageCache       the page-cache to read
+     * @param seekIndex       index of the page-cache
+     * @param timestampMillis epoch time in milliseconds
+     * @param recordHandler   handler for records
+     * @param tail            whether to wait for new records once the end of the page-cache is reached
+     * @param idler           idle strategy used when no records are available
+     * @return the reader
+     */
+    public static StreamingReader fromTimestamp(
+            final PageCache pageCache, final SeekIndex seekIndex, final long timestampMillis,
+            final RecordHandler recordHandler, final boolean tail, final Idler idler)
+    {
+        final int entry = seekIndex.findByTimestamp(timestampMillis);
+        if (entry < 0)
+        {
+            return new StreamingReader(pageCache, recordHandler, tail, idler);
+        }
+        return new StreamingReader(pageCache, recordHandler, tail, idler,
+                ReaderCursor.transientCursor(seekIndex.pageNumberAt(entry), seekIndex.positionAt(entry)));
     }
 
     @SingleThreaded
@@ -57,6 +142,17 @@ public final class StreamingReader
 
             if (!processRecord())
             {
+                if (recordsProcessedSinceCaughtUp && !rewound)
+                {
+                    recordsProcessedSinceCaughtUp = false;
+                    context.clearRewind();
+                    recordHandler.onCaughtUp();
+                    if (context.isRewindRequested())
+                    {
+                        rewind();
+                    }
+                }
+                rewound = false;
                 if (!tail)
                 {
                     return;
@@ -65,6 +161,7 @@ public final class StreamingReader
             }
             else
             {
+                recordsProcessedSinceCaughtUp = true;
                 idler.reset();
             }
         }
@@ -76,6 +173,15 @@ public final class StreamingReader
         {
             if (!pageCache.isPageAvailable(pageNumber))
             {
+                final int lowestRetainedPageNumber = pageCache.getLowestRetainedPageNumber();
+                if (pageNumber < lowestRetainedPageNumber)
+                {
+                    // page has been removed by retention policy
+                    pageNumber = lowestRetainedPageNumber;
+                    position = 0;
+                    cursor.update(pageNumber, position);
+                    return pageCache.isPageAvailable(pageNumber);
+                }
                 return false;
             }
             page = pageCache.getPage(pageNumber);
@@ -96,6 +202,12 @@ public final class StreamingReader
                 context.reset();
                 slice.release();
             }
+            if (context.isRewindRequested())
+            {
+                rewind();
+                rewound = true;
+                return false;
+            }
             localMessageCount++;
             messageCount.lazySet(localMessageCount);
             position += recordLength + Record.HEADER_LENGTH;
@@ -104,11 +216,13 @@ public final class StreamingReader
             {
                 advancePage();
             }
+            cursor.update(pageNumber, position);
             return true;
         }
         else if (Page.isEof(header))
         {
             advancePage();
+            cursor.update(pageNumber, position);
         }
         else if (!tail)
         {
@@ -118,6 +232,20 @@ public final class StreamingReader
         return pageCache.isPageAvailable(pageNumber);
     }
 
+    private void rewind()
+    {
+        final int rewindPageNumber = context.getRewindPageNumber();
+        if (page != null && rewindPageNumber != pageNumber)
+        {
+            page.releaseReference();
+            page = null;
+        }
+        pageNumber = rewindPageNumber;
+        position = context.getRewindPosition();
+        context.clearRewind();
+        cursor.update(pageNumber, position);
+    }
+
     private void advancePage()
     {
         if (page != null)
@@ -133,4 +261,54 @@ public final class StreamingReader
     {
         return messageCount.get();
     }
+
+    /**
+     * Retrieve the number of the page that this reader is currently processing; safe to call from any thread.
+     *
+     * @return the current page number
+     */
+    public int getPageNumber()
+    {
+        return cursor.getPageNumber();
+    }
+
+    /**
+     * Estimates the number of bytes written to the page-cache that this reader has yet to process;
+     * safe to call from any thread.
+     *
+     * @return the reader's lag in bytes
+     */
+    public long getLag()
+    {
+        return Math.max(0L, pageCache.estimateTotalLength() - readPosition());
+    }
+
+    /**
+     * Estimates the number of records written to the page-cache that this reader has yet to process;
+     * safe to call from any thread.
+     * <p>
+     * The estimate is derived from {@link #getLag()} and the average space occupied by the records
+     * this reader has processed; before any records have been processed, records are assumed to occupy
+     * the minimum space, so the lag is over-estimated.
+     *
+     * @return the reader's lag in records
+     */
+    public long getLagRecords()
+    {
+        final long readPosition = readPosition();
+        final long lagBytes = Math.max(0L, pageCache.estimateTotalLength() - readPosition);
+        final long bytesRead = readPosition - startReadPosition;
+        final long recordsRead = messageCount.get();
+        if (recordsRead == 0L || bytesRead <= 0L)
+        {
+            return (lagBytes + MIN_RECORD_FOOTPRINT - 1) / MIN_RECORD_FOOTPRINT;
+        }
+        return (long) Math.ceil(lagBytes * ((double) recordsRead / bytesRead));
+    }
+
+    private long readPosition()
+    {
+        final long journalPosition = cursor.getJournalPosition();
+        return (journalPosition >>> 32) * pageCache.getPageSize() + (int) journalPosition;
+    }
 }
\ No newline at end of file
@@ -25,6 +25,9 @@ public final class StreamingReaderContext
     private int pageNumber;
     private int position;
     private long localMessageCount;
+    private boolean rewindRequested;
+    private int rewindPageNumber;
+    private int rewindPosition;
 
     public static StreamingReaderContext get()
     {
@@ -46,11 +49,53 @@ public final class StreamingReaderContext
         return localMessageCount;
     }
 
+    /**
+     * Requests that the reader moves back to a record that has already been delivered,
+     * once the current callback returns. The reader idles before delivering records from the requested position.
+     * <p>
+     * Only valid from within {@link RecordHandler#onRecord} or {@link RecordHandler#onCaughtUp};
+     * if called more than once, the earliest position is used.
+     *
+     * @param pageNumber page number of the record
+     * @param position   position of the record within the page
+     */
+    public void rewindTo(final int pageNumber, final int position)
+    {
+        if (!rewindRequested || pageNumber < rewindPageNumber ||
+                (pageNumber == rewindPageNumber && position < rewindPosition))
+        {
+            rewindRequested = true;
+            rewindPageNumber = pageNumber;
+            rewindPosition = position;
+        }
+    }
+
+    boolean isRewindRequested()
+    {
+        return rewindRequested;
+    }
+
+    int getRewindPageNumber()
+    {
+        return rewindPageNumber;
+    }
+
+    int getRewindPosition()
+    {
+        return rewindPosition;
+    }
+
+    void clearRewind()
+    {
+        rewindRequested = false;
+    }
+
     void update(final int pageNumber, final int position, final long localMessageCount)
     {
         this.pageNumber = pageNumber;
         this.position = position;
         this.localMessageCount = localMessageCount;
+        rewindRequested = false;
     }
 
     void reset()
@@ -15,6 +15,8 @@
  */
 package com.aitusoftware.transport.threads;
 
+import com.aitusoftware.transport.metrics.Counter;
+
 import java.util.concurrent.TimeUnit;
 
 public final class Idlers
@@ -43,6 +45,18 @@ public final class Idlers
         return new StaticPausingIdler(pause, pauseUnit);
     }
 
+    /**
+     * Count the calls to an idler; the idler must be used by a single thread.
+     *
+     * @param idler      the idler
+     * @param idleCycles incremented on each call to {@link Idler#idle()}
+     * @return the counting idler
+     */
+    public static Idler counting(final Idler idler, final Counter idleCycles)
+    {
+        return new CountingIdler(idler, idleCycles);
+    }
+
     public static Idler forString(final String spec)
     {
         final String[] tokens = spec.split(",");
@@ -19,4 +19,5 @@ module com.aitusoftware.transport {
     requires agrona;
     requires java.management;
     requires jnr.ffi;
+    requires HdrHistogram;
 }
\ No newline at end of file
@@ -16,6 +16,8 @@
 package com.aitusoftware.transport.buffer;
 
 import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.metrics.Counter;
+import com.aitusoftware.transport.metrics.Counters;
 import com.aitusoftware.transport.reader.RecordHandler;
 import com.aitusoftware.transport.reader.StreamingReader;
 import com.aitusoftware.transport.threads.Idlers;
@@ -25,10 +27,13 @@ import org.junit.Test;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -98,6 +103,106 @@ public class PageCacheTest
         }
     }
 
+    @Test
+    public void shouldResumeWritingAfterLastCommittedRecord() throws Exception
+    {
+        Fixtures.writeMessages(MESSAGE_SIZE, pageCache, MESSAGE_COUNT);
+        final long expectedLength = pageCache.estimateTotalLength();
+
+        assertThat(PageCache.create(directory, PAGE_SIZE).estimateTotalLength(), is(expectedLength));
+    }
+
+    @Test
+    public void shouldIgnorePreallocatedPagesWhenResuming() throws Exception
+    {
+        Fixtures.writeMessages(MESSAGE_SIZE, pageCache, MESSAGE_COUNT);
+        final long expectedLength = pageCache.estimateTotalLength();
+        final int highestPageNumber = pageCache.getPageIndex().getHighestPageNumber();
+        for (int i = 1; i < 4; i++)
+        {
+            pageCache.allocate(highestPageNumber + i).releaseReference();
+        }
+
+        assertThat(PageCache.create(directory, PAGE_SIZE).estimateTotalLength(), is(expectedLength));
+    }
+
+    @Test
+    public void shouldSkipIncompleteRecordWhenResuming() throws Exception
+    {
+        final int committedMessageCount = MESSAGES_PER_PAGE + 3;
+        for (int i = 0; i < committedMessageCount; i++)
+        {
+            final WritableRecord record = pageCache.acquireRecordBuffer(MESSAGE_SIZE);
+            record.buffer().putInt(i);
+            record.commit();
+        }
+        // simulate a publisher that failed before committing
+        pageCache.acquireRecordBuffer(MESSAGE_SIZE);
+
+        final PageCache newPageCache = PageCache.create(directory, PAGE_SIZE);
+        for (int i = committedMessageCount; i < MESSAGE_COUNT; i++)
+        {
+            final WritableRecord record = newPageCache.acquireRecordBuffer(MESSAGE_SIZE);
+            record.buffer().putInt(i);
+            record.commit();
+        }
+
+        final MessageValidator validator = new MessageValidator();
+        new StreamingReader(newPageCache, validator, false, Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        final int[] messages = validator.getMessages();
+        assertThat(messages.length, is(MESSAGE_COUNT));
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            assertThat(messages[i], is(i));
+        }
+    }
+
+    @Test
+    public void shouldDeliverRecordCommittedAfterReaderAttaches() throws Exception
+    {
+        final WritableRecord committed = pageCache.acquireRecordBuffer(MESSAGE_SIZE);
+        committed.buffer().putInt(0);
+        committed.commit();
+        final WritableRecord claimed = pageCache.acquireRecordBuffer(MESSAGE_SIZE);
+        claimed.buffer().putInt(1);
+
+        final PageCache attachedPageCache = PageCache.attach(directory, PAGE_SIZE);
+        claimed.commit();
+
+        final MessageValidator validator = new MessageValidator();
+        new StreamingReader(attachedPageCache, validator, false, Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        assertThat(validator.getMessages(), is(new int[] {0, 1}));
+        assertThat(attachedPageCache.isPageAvailable(1), is(false));
+        assertThat(attachedPageCache.estimateTotalLength(), is(pageCache.estimateTotalLength()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotWriteToAttachedPageCache() throws Exception
+    {
+        PageCache.attach(directory, PAGE_SIZE).acquireRecordBuffer(MESSAGE_SIZE);
+    }
+
+    @Test
+    public void shouldCountPageEvents() throws Exception
+    {
+        final Counters counters = Counters.create(Fixtures.tempDirectory().resolve(Counters.FILE_NAME), 3);
+        final Counter rollovers = counters.newCounter("rollovers");
+        final Counter allocations = counters.newCounter("allocations");
+        pageCache.countPageEvents(rollovers, allocations, counters.newCounter("unmaps"));
+
+        for (int i = 0; i < MESSAGES_PER_PAGE * 3; i++)
+        {
+            final WritableRecord record = pageCache.acquireRecordBuffer(MESSAGE_SIZE);
+            record.buffer().putInt(i);
+            record.commit();
+        }
+
+        assertThat(rollovers.get(), is(2L));
+        assertThat(allocations.get(), is(2L));
+    }
+
     @Test
     public void shouldAppendDataOverSeveralPages() throws Exception
     {
@@ -114,6 +219,80 @@ public class PageCacheTest
         assertThat(pageCache.estimateTotalLength(), is((long) MESSAGE_COUNT * PADDED_MESSAGE_SIZE + (PAGE_COUNT + 1) * WASTED_PAGE_SPACE));
     }
 
+    @Test
+    public void shouldWriteRecordBatchesOverSeveralPages() throws Exception
+    {
+        final int batchSize = 10;
+        int messageId = 0;
+        while (messageId < MESSAGE_COUNT)
+        {
+            final RecordBatch batch = pageCache.acquireRecordBatch(MESSAGE_SIZE,
+                    Math.min(batchSize, MESSAGE_COUNT - messageId));
+            assertThat(batch.size() <= MESSAGES_PER_PAGE, is(true));
+            while (batch.hasNext())
+            {
+                final WritableRecord record = batch.next();
+                record.buffer().putInt(messageId++);
+                record.commit();
+            }
+        }
+
+        assertThat(pageCache.estimateTotalLength(), is((long) MESSAGE_COUNT * PADDED_MESSAGE_SIZE + (PAGE_COUNT + 1) * WASTED_PAGE_SPACE));
+
+        final MessageValidator validator = new MessageValidator();
+        new StreamingReader(pageCache, validator, false, Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        final int[] messages = validator.getMessages();
+        assertThat(messages.length, is(MESSAGE_COUNT));
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            assertThat(messages[i], is(i));
+        }
+    }
+
+    @Test
+    public void shouldWriteFromConcurrentWritersOverSeveralPages() throws Exception
+    {
+        final int writerCount = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(writerCount);
+        final List<Future<?>> writers = new ArrayList<>();
+        for (int i = 0; i < writerCount; i++)
+        {
+            final int writerId = i;
+            writers.add(executor.submit(() ->
+            {
+                for (int messageId = writerId; messageId < MESSAGE_COUNT * writerCount; messageId += writerCount)
+                {
+                    final WritableRecord record = pageCache.acquireRecordBuffer(MESSAGE_SIZE);
+                    record.buffer().putInt(messageId);
+                    record.commit();
+                }
+            }));
+        }
+        for (final Future<?> writer : writers)
+        {
+            writer.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        final MessageValidator validator = new MessageValidator();
+        new StreamingReader(pageCache, validator, false, Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        final int[] messages = validator.getMessages();
+        Arrays.sort(messages);
+        assertThat(messages.length, is(MESSAGE_COUNT * writerCount));
+        for (int i = 0; i < messages.length; i++)
+        {
+            assertThat(messages[i], is(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBatchWithRecordLargerThanPage() throws Exception
+    {
+        pageCache.acquireRecordBatch(PAGE_SIZE, 2);
+    }
+
     private static class MessageValidator implements RecordHandler
     {
         private final List<Integer> receivedMessageIds = new CopyOnWriteArrayList<>();
@@ -20,6 +20,7 @@ import com.aitusoftware.transport.files.Filenames;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -85,4 +86,76 @@ public class PageIndexTest
         assertThat(pageIndex.isPageCreated(PageIndex.SLOTS), is(true));
         assertThat(pageIndex.isLessThanLowestTrackedPageNumber(0), is(true));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldTrackHighestPageNumberBeyondRingCapacity() throws Exception
+    {
+        assertThat(pageIndex.getHighestPageNumber(), is(-1));
+
+        final int pageNumber = PageIndex.SLOTS * 3 + 7;
+        pageIndex.onPageCreated(pageNumber);
+        pageIndex.onPageCreated(pageNumber - 1);
+
+        assertThat(pageIndex.getHighestPageNumber(), is(pageNumber));
+        assertThat(pageIndex.isPageCreated(pageNumber), is(true));
+        assertThat(pageIndex.isPageCreated(pageNumber - 1), is(true));
+        assertThat(pageIndex.isPageCreated(pageNumber - PageIndex.SLOTS), is(false));
+        assertThat(pageIndex.isLessThanLowestTrackedPageNumber(pageNumber - PageIndex.SLOTS + 1), is(false));
+        assertThat(pageIndex.isLessThanLowestTrackedPageNumber(pageNumber - PageIndex.SLOTS), is(true));
+    }
+
+    @Test
+    public void shouldRebuildIndexWrittenInEarlierFormat() throws Exception
+    {
+        try (final RandomAccessFile file = new RandomAccessFile(path.resolve("pages.idx").toFile(), "rw"))
+        {
+            file.setLength(0L);
+            file.setLength(128 * 4 + 64);
+            file.writeInt(Integer.reverseBytes(70));
+        }
+        for (int i = 0; i < 3; i++)
+        {
+            Files.createFile(Filenames.forPageNumber(i, path));
+        }
+
+        final PageIndex rebuilt = PageIndex.forPageCache(path);
+
+        assertThat(rebuilt.getHighestPageNumber(), is(2));
+        assertThat(rebuilt.isPageCreated(2), is(true));
+        assertThat(rebuilt.isPageCreated(70), is(false));
+    }
+
+    @Test
+    public void shouldTrackRemovedPages() throws Exception
+    {
+        for (int i = 0; i < 5; i++)
+        {
+            Files.createFile(Filenames.forPageNumber(i, path));
+        }
+
+        pageIndex.refresh();
+        pageIndex.onPageRemoved(2);
+
+        assertThat(pageIndex.isPageRemoved(2), is(true));
+        assertThat(pageIndex.isPageRemoved(3), is(false));
+        assertThat(pageIndex.getLowestRetainedPageNumber(), is(3));
+
+        pageIndex.onPageRemoved(1);
+
+        assertThat(pageIndex.getLowestRetainedPageNumber(), is(3));
+    }
+
+    @Test
+    public void shouldInitialiseLowestRetainedPageFromExistingFiles() throws Exception
+    {
+        for (int i = 7; i < 10; i++)
+        {
+            Files.createFile(Filenames.forPageNumber(i, path));
+        }
+
+        pageIndex.refresh();
+
+        assertThat(pageIndex.getLowestRetainedPageNumber(), is(7));
+        assertThat(pageIndex.isPageRemoved(6), is(true));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.metrics.Counter;
+import com.aitusoftware.transport.metrics.Counters;
+import com.aitusoftware.transport.reader.StreamingReader;
+import com.aitusoftware.transport.threads.Idlers;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public final class PagePreallocatorTest
+{
+    private static final int PAGE_SIZE = 4096;
+    private static final int MESSAGE_SIZE = 200;
+    private static final int MESSAGES_PER_PAGE = PAGE_SIZE / Offsets.getAlignedPosition(MESSAGE_SIZE + Record.HEADER_LENGTH);
+
+    private PageCache pageCache;
+    private Counter rollovers;
+    private Counter allocations;
+    private Counter misses;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        pageCache = PageCache.create(Fixtures.tempDirectory(), PAGE_SIZE);
+        final Counters counters = Counters.create(Fixtures.tempDirectory().resolve(Counters.FILE_NAME), 4);
+        rollovers = counters.newCounter("rollovers");
+        allocations = counters.newCounter("allocations");
+        misses = counters.newCounter("misses");
+        pageCache.countPageEvents(rollovers, allocations, counters.newCounter("unmaps"));
+    }
+
+    @Test
+    public void shouldAllocatePagesAheadOfCurrentPage() throws Exception
+    {
+        final PagePreallocator preallocator = pageCache.preallocatePages(3, misses);
+
+        assertThat(preallocator.preallocate(), is(true));
+        assertThat(preallocator.preallocate(), is(false));
+
+        final PageIndex pageIndex = pageCache.getPageIndex();
+        assertThat(pageIndex.isPageCreated(3), is(true));
+        assertThat(pageIndex.isPageCreated(4), is(false));
+        assertThat(allocations.get(), is(3L));
+    }
+
+    @Test
+    public void shouldMoveToReadyPagesWithoutAllocating() throws Exception
+    {
+        final PagePreallocator preallocator = pageCache.preallocatePages(2, misses);
+
+        for (int page = 0; page < 4; page++)
+        {
+            preallocator.preallocate();
+            writeMessages(MESSAGES_PER_PAGE);
+        }
+        final long allocationsBeforeRollover = allocations.get();
+        writeMessages(1);
+
+        assertThat(rollovers.get(), is(4L));
+        assertThat(misses.get(), is(0L));
+        assertThat(allocations.get(), is(allocationsBeforeRollover));
+        assertThat(pageCache.getCurrentPageNumber(), is(4));
+
+        final StreamingReader reader = new StreamingReader(pageCache, (data, pageNumber, position) -> {},
+                false, Idlers.staticPause(1, TimeUnit.MILLISECONDS));
+        reader.process();
+        assertThat(reader.getMessageCount(), is(4L * MESSAGES_PER_PAGE + 1));
+    }
+
+    @Test
+    public void shouldAllocateOnWritingThreadWhenPageIsNotReady() throws Exception
+    {
+        final PagePreallocator preallocator = pageCache.preallocatePages(1, misses);
+        preallocator.preallocate();
+
+        writeMessages(MESSAGES_PER_PAGE * 3 + 1);
+
+        assertThat(rollovers.get(), is(3L));
+        assertThat(misses.get(), is(2L));
+        assertThat(allocations.get(), is(3L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotPreallocateTwice() throws Exception
+    {
+        pageCache.preallocatePages(1);
+        pageCache.preallocatePages(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidPageCount() throws Exception
+    {
+        pageCache.preallocatePages(0);
+    }
+
+    private void writeMessages(final int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final WritableRecord record = pageCache.acquireRecordBuffer(MESSAGE_SIZE);
+            record.buffer().putInt(i);
+            record.commit();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.files.Filenames;
+import com.aitusoftware.transport.reader.StreamingReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PageRetentionTest
+{
+    private static final int PAGE_SIZE = 4096;
+    private static final int MESSAGE_SIZE = 1000;
+    private static final int MESSAGES_PER_PAGE = 4;
+    private static final int PAGE_COUNT = 10;
+
+    private final AtomicInteger readerPageNumber = new AtomicInteger();
+    private Path directory;
+    private PageCache pageCache;
+    private Thread unmapperThread;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = Fixtures.tempDirectory();
+        pageCache = PageCache.create(directory, PAGE_SIZE);
+        unmapperThread = new Thread(pageCache.getUnmapper()::execute);
+        unmapperThread.setDaemon(true);
+        unmapperThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        unmapperThread.interrupt();
+    }
+
+    @Test
+    public void shouldDeletePagesConsumedByAllReaders() throws Exception
+    {
+        Fixtures.writeMessages(MESSAGE_SIZE, pageCache, MESSAGES_PER_PAGE * PAGE_COUNT);
+        final PageRetention retention = new PageRetention(pageCache, RetentionPolicies.pageCount(2), RetentionAction.DELETE);
+        retention.registerReader(readerPageNumber::get);
+        readerPageNumber.set(5);
+
+        removePagesBelow(retention, 5);
+
+        for (int i = 0; i < PAGE_COUNT; i++)
+        {
+            assertThat(Files.exists(Filenames.forPageNumber(i, directory)), is(i >= 5));
+            assertThat(pageCache.isPageAvailable(i), is(i >= 5));
+        }
+
+        readerPageNumber.set(PAGE_COUNT);
+
+        removePagesBelow(retention, PAGE_COUNT - 2);
+
+        assertThat(Files.exists(Filenames.forPageNumber(PAGE_COUNT - 3, directory)), is(false));
+        assertThat(Files.exists(Filenames.forPageNumber(PAGE_COUNT - 2, directory)), is(true));
+    }
+
+    @Test
+    public void shouldCompressRemovedPages() throws Exception
+    {
+        Fixtures.writeMessages(MESSAGE_SIZE, pageCache, MESSAGES_PER_PAGE * PAGE_COUNT);
+        final PageRetention retention = new PageRetention(pageCache, RetentionPolicies.totalBytes(PAGE_SIZE * 4), RetentionAction.COMPRESS);
+
+        removePagesBelow(retention, PAGE_COUNT - 4);
+
+        for (int i = 0; i < PAGE_COUNT - 4; i++)
+        {
+            assertThat(Files.exists(Filenames.forPageNumber(i, directory)), is(false));
+            assertThat(Files.exists(Filenames.forArchivedPageNumber(i, directory)), is(true));
+        }
+        assertThat(PageCache.create(directory, PAGE_SIZE).getLowestRetainedPageNumber(), is(PAGE_COUNT - 4));
+    }
+
+    @Test
+    public void readerShouldSkipRemovedPages() throws Exception
+    {
+        Fixtures.writeMessages(MESSAGE_SIZE, pageCache, MESSAGES_PER_PAGE * PAGE_COUNT);
+        final PageRetention retention = new PageRetention(pageCache, RetentionPolicies.pageCount(3), RetentionAction.DELETE);
+
+        removePagesBelow(retention, PAGE_COUNT - 3);
+
+        final StreamingReader reader = new StreamingReader(pageCache,
+                (data, pageNumber, position) -> {}, false, Fixtures.testIdler());
+        reader.process();
+
+        assertThat(reader.getMessageCount(), is((long) MESSAGES_PER_PAGE * 3));
+        assertThat(reader.getPageNumber(), is(PAGE_COUNT));
+    }
+
+    private void removePagesBelow(final PageRetention retention, final int pageNumber) throws InterruptedException
+    {
+        final long timeoutAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10L);
+        while (pageCache.getLowestRetainedPageNumber() < pageNumber && System.currentTimeMillis() < timeoutAt)
+        {
+            retention.removeRetiredPages();
+            Thread.sleep(10L);
+        }
+        assertThat(pageCache.getLowestRetainedPageNumber(), is(pageNumber));
+    }
+}
@@ -18,6 +18,15 @@ package com.aitusoftware.transport.buffer;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -106,6 +115,90 @@ public final class PageTest
         assertThat(page.acquireSpaceInBuffer(maximumPayloadSize + 1), is(Page.ERR_NOT_ENOUGH_SPACE));
     }
 
+    @Test
+    public void shouldWritePaddingRecordWhenAllocationStraddlesEndOfPage() throws Exception
+    {
+        final int recordLength = 5000;
+        final int paddingPosition = Offsets.getAlignedPosition(recordLength + Record.HEADER_LENGTH);
+
+        assertThat(page.acquireSpaceInBuffer(recordLength), is(0));
+        assertThat(page.acquireSpaceInBuffer(recordLength), is(Page.ERR_NOT_ENOUGH_SPACE));
+        assertThat(page.acquireSpaceInBuffer(8), is(Page.ERR_NOT_ENOUGH_SPACE));
+
+        assertThat(Page.isEof(page.header(paddingPosition)), is(true));
+        assertThat(page.nextAvailablePosition(), is(page.totalDataSize()));
+    }
+
+    @Test
+    public void shouldClaimPartialBatchAndPadRemainderOfPage() throws Exception
+    {
+        final int recordLength = 1000;
+        final int recordFootprint = Offsets.getAlignedPosition(recordLength + Record.HEADER_LENGTH);
+        final RecordBatch batch = new RecordBatch();
+        page.acquireSpaceInBuffer(PAGE_SIZE - PageHeader.HEADER_SIZE - 3 * recordFootprint - 128 - Record.HEADER_LENGTH);
+        final int position = page.nextAvailablePosition();
+        batch.prepare(recordLength, 5);
+
+        assertThat(page.acquireSpaceInBuffer(batch, 5), is(position));
+        assertThat(batch.size(), is(3));
+        assertThat(Page.isEof(page.header(position + 3 * recordFootprint)), is(true));
+        assertThat(page.nextAvailablePosition(), is(page.totalDataSize()));
+    }
+
+    @Test
+    public void shouldPadWhenNoRecordsInBatchFit() throws Exception
+    {
+        final RecordBatch batch = new RecordBatch();
+        page.acquireSpaceInBuffer(PAGE_SIZE - PageHeader.HEADER_SIZE - 256);
+        final int position = page.nextAvailablePosition();
+        batch.prepare(1000, 2);
+
+        assertThat(page.acquireSpaceInBuffer(batch, 2), is(Page.ERR_NOT_ENOUGH_SPACE));
+        assertThat(Page.isEof(page.header(position)), is(true));
+    }
+
+    @Test
+    public void shouldRejectBatchWhoseFirstRecordCannotFitInPage() throws Exception
+    {
+        final RecordBatch batch = new RecordBatch();
+        batch.prepare(PAGE_SIZE, 2);
+
+        assertThat(page.acquireSpaceInBuffer(batch, 2), is(Page.ERR_MESSAGE_TOO_LARGE));
+        assertThat(page.nextAvailablePosition(), is(0));
+    }
+
+    @Test
+    public void shouldAllocateDistinctPositionsToConcurrentWriters() throws Exception
+    {
+        final int writerCount = 4;
+        final int recordLength = 24;
+        final Set<Integer> positions = ConcurrentHashMap.newKeySet();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(writerCount);
+        final List<Future<?>> writers = new ArrayList<>();
+        for (int i = 0; i < writerCount; i++)
+        {
+            writers.add(executor.submit(() ->
+            {
+                start.await();
+                int position;
+                while ((position = page.acquireSpaceInBuffer(recordLength)) >= 0)
+                {
+                    assertThat(positions.add(position), is(true));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (final Future<?> writer : writers)
+        {
+            writer.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(positions.size(), is(page.totalDataSize() / Offsets.getAlignedPosition(recordLength + Record.HEADER_LENGTH)));
+    }
+
     private static long decode(final ByteBuffer source)
     {
         return source.getLong();
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.metrics.Counter;
+import com.aitusoftware.transport.metrics.Counters;
+import com.aitusoftware.transport.reader.StreamingReader;
+import com.aitusoftware.transport.threads.Idlers;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public final class PreloaderTest
+{
+    private static final int PAGE_SIZE = 16 * 1024;
+    private static final int MESSAGE_SIZE = 200;
+    private static final int MESSAGES_PER_PAGE = PAGE_SIZE / Offsets.getAlignedPosition(MESSAGE_SIZE + Record.HEADER_LENGTH);
+
+    private PageCache pageCache;
+    private Counter preloadedPages;
+    private Counter misses;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        pageCache = PageCache.create(Fixtures.tempDirectory(), PAGE_SIZE);
+        final Counters counters = Counters.create(Fixtures.tempDirectory().resolve(Counters.FILE_NAME), 2);
+        preloadedPages = counters.newCounter("preloads");
+        misses = counters.newCounter("misses");
+    }
+
+    @Test
+    public void shouldPreloadPagesAheadOfCurrentPage() throws Exception
+    {
+        final Preloader preloader = createPreloader(3, PageTouch.READ, false);
+
+        assertThat(preloader.preload(), is(true));
+        assertThat(preloader.preload(), is(false));
+
+        assertThat(pageCache.getPageIndex().isPageCreated(3), is(true));
+        assertThat(pageCache.getPageIndex().isPageCreated(4), is(false));
+        assertThat(preloadedPages.get(), is(4L));
+        assertThat(misses.get(), is(0L));
+    }
+
+    @Test
+    public void shouldNotCountMissesWhenPreloaderKeepsUp() throws Exception
+    {
+        final Preloader preloader = createPreloader(1, PageTouch.WRITE, false);
+
+        for (int page = 0; page < 4; page++)
+        {
+            preloader.preload();
+            writeMessages(MESSAGES_PER_PAGE);
+        }
+        preloader.preload();
+        writeMessages(1);
+        preloader.preload();
+
+        assertThat(pageCache.getCurrentPageNumber(), is(4));
+        assertThat(misses.get(), is(0L));
+        assertThat(preloadedPages.get(), is(6L));
+    }
+
+    @Test
+    public void shouldCountPagesReachedBeforeTheyWerePreloaded() throws Exception
+    {
+        final Preloader preloader = createPreloader(2, PageTouch.READ, false);
+        preloader.preload();
+
+        writeMessages(MESSAGES_PER_PAGE * 4 + 1);
+        preloader.preload();
+
+        assertThat(pageCache.getCurrentPageNumber(), is(4));
+        assertThat(misses.get(), is(2L));
+    }
+
+    @Test
+    public void shouldNotModifyRecordsWhenTouchingForWrite() throws Exception
+    {
+        writeMessages(MESSAGES_PER_PAGE / 2);
+        createPreloader(2, PageTouch.WRITE, true).preload();
+        writeMessages(MESSAGES_PER_PAGE);
+
+        final List<Integer> received = new ArrayList<>();
+        new StreamingReader(pageCache, (data, pageNumber, position) -> received.add(data.getInt()),
+                false, Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        assertThat(received.size(), is(MESSAGES_PER_PAGE / 2 + MESSAGES_PER_PAGE));
+        for (int i = 0; i < MESSAGES_PER_PAGE / 2; i++)
+        {
+            assertThat(received.get(i), is(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDepthLargerThanLoadedPageCache() throws Exception
+    {
+        new Preloader(pageCache, LoadedPageCache.CACHED_PAGE_COUNT, PageTouch.READ, false);
+    }
+
+    private Preloader createPreloader(final int depth, final PageTouch touch, final boolean load)
+    {
+        final Preloader preloader = new Preloader(pageCache, depth, touch, load);
+        preloader.countPages(preloadedPages, misses);
+        return preloader;
+    }
+
+    private void writeMessages(final int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final WritableRecord record = pageCache.acquireRecordBuffer(MESSAGE_SIZE);
+            record.buffer().putInt(i);
+            record.commit();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.buffer;
+
+import com.aitusoftware.transport.Fixtures;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SeekIndexTest
+{
+    private static final int ENTRY_COUNT = 10_000;
+    private static final int SEQUENCE_INTERVAL = 100;
+    private static final long START_TIMESTAMP = 1_500_000_000_000L;
+
+    private Path directory;
+    private SeekIndex seekIndex;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = Fixtures.tempDirectory();
+        seekIndex = SeekIndex.forPageCache(directory);
+    }
+
+    @Test
+    public void shouldFindEntriesBySequence() throws Exception
+    {
+        appendEntries();
+
+        assertThat(seekIndex.findBySequence(-1L), is(-1));
+        assertThat(seekIndex.findBySequence(0L), is(0));
+        assertThat(seekIndex.findBySequence(SEQUENCE_INTERVAL * 37 + 5), is(37));
+        assertThat(seekIndex.findBySequence(Long.MAX_VALUE), is(ENTRY_COUNT - 1));
+        assertThat(seekIndex.pageNumberAt(37), is(37 / 10));
+        assertThat(seekIndex.positionAt(37), is(37 * 64));
+    }
+
+    @Test
+    public void shouldFindEntriesByTimestamp() throws Exception
+    {
+        appendEntries();
+
+        assertThat(seekIndex.findByTimestamp(START_TIMESTAMP - 1), is(-1));
+        assertThat(seekIndex.findByTimestamp(START_TIMESTAMP + 4_999), is(4));
+        assertThat(seekIndex.findByTimestamp(START_TIMESTAMP + 5_000), is(5));
+        assertThat(seekIndex.sequenceAt(5), is(5L * SEQUENCE_INTERVAL));
+    }
+
+    @Test
+    public void shouldRetainEntriesWhenReopened() throws Exception
+    {
+        appendEntries();
+
+        final SeekIndex reopened = SeekIndex.forPageCache(directory);
+
+        assertThat(reopened.getEntryCount(), is(ENTRY_COUNT));
+        assertThat(reopened.sequenceAt(ENTRY_COUNT - 1), is((long) (ENTRY_COUNT - 1) * SEQUENCE_INTERVAL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectOutOfOrderEntries() throws Exception
+    {
+        seekIndex.append(100L, START_TIMESTAMP, 0, 0);
+        seekIndex.append(50L, START_TIMESTAMP, 0, 64);
+    }
+
+    private void appendEntries()
+    {
+        for (int i = 0; i < ENTRY_COUNT; i++)
+        {
+            seekIndex.append((long) i * SEQUENCE_INTERVAL, START_TIMESTAMP + i * 1_000L, i / 10, i * 64);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.aitusoftware.transport.integration;
 
 import com.aitusoftware.transport.Fixtures;
 import com.aitusoftware.transport.StaticAddressSpace;
+import com.aitusoftware.transport.factory.LocalSubscriberMode;
 import com.aitusoftware.transport.factory.Media;
 import com.aitusoftware.transport.factory.Service;
 import com.aitusoftware.transport.factory.ServiceFactory;
@@ -41,14 +42,16 @@ public final class LocalIpcOneToOneIntegrationTest
     private Service receiverService;
     private MarketData marketDataPublisher;
     private CountDownLatch latch;
+    private ServiceFactory receiverServiceFactory;
+    private Path senderPath;
 
     @Before
     public void setUp() throws Exception
     {
         final Path receiverPath = Fixtures.tempDirectory();
-        final Path senderPath = Fixtures.tempDirectory();
+        senderPath = Fixtures.tempDirectory();
 
-        final ServiceFactory receiverServiceFactory =
+        receiverServiceFactory =
                 new ServiceFactory(receiverPath, new FixedServerSocketFactory(ServerSocketChannel.open()),
                         new StaticAddressSpace(), testIdlerFactory(), SubscriberThreading.SINGLE_THREADED,
                         Fixtures.testingIdlerConfig());
@@ -59,24 +62,23 @@ public final class LocalIpcOneToOneIntegrationTest
                         Fixtures.testingIdlerConfig());
 
         this.latch = new CountDownLatch(MESSAGE_COUNT);
-        final MarketDataReceiver marketDataReceiver = new MarketDataReceiver(latch);
-        receiverServiceFactory.registerLocalSubscriber(new SubscriberDefinition<>(MarketData.class,
-                        marketDataReceiver, media),
-                senderPath.resolve(ServiceFactory.PUBLISHER_PAGE_CACHE_PATH));
-        this.receiverService = receiverServiceFactory.create();
-
-
         marketDataPublisher = senderServiceFactory.createPublisher(MarketData.class);
-        this.receiverService.start();
     }
 
     @Test
     public void shouldHandleMessages() throws Exception
     {
-        for (int i = 0; i < MESSAGE_COUNT; i++)
-        {
-            marketDataPublisher.onAsk("USD/EUR", i, 17 * i, 37);
-        }
+        startReceiver(LocalSubscriberMode.COPYING);
+        publishMessages();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldHandleMessagesDirectlyFromPublisherPageCache() throws Exception
+    {
+        startReceiver(LocalSubscriberMode.DIRECT);
+        publishMessages();
 
         assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
@@ -87,6 +89,24 @@ public final class LocalIpcOneToOneIntegrationTest
         assertTrue(receiverService.stop(5, TimeUnit.SECONDS));
     }
 
+    private void startReceiver(final LocalSubscriberMode mode)
+    {
+        final MarketDataReceiver marketDataReceiver = new MarketDataReceiver(latch);
+        receiverServiceFactory.registerLocalSubscriber(new SubscriberDefinition<>(MarketData.class,
+                        marketDataReceiver, media),
+                senderPath.resolve(ServiceFactory.PUBLISHER_PAGE_CACHE_PATH), mode);
+        this.receiverService = receiverServiceFactory.create();
+        this.receiverService.start();
+    }
+
+    private void publishMessages()
+    {
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            marketDataPublisher.onAsk("USD/EUR", i, 17 * i, 37);
+        }
+    }
+
     private static final class MarketDataReceiver implements MarketData
     {
         private final CountDownLatch latch;
@@ -34,6 +34,8 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -50,6 +52,7 @@ public final class OneToManyServiceIntegrationTest
     private final CountingTradeNotifications[] receivers =  new CountingTradeNotifications[RECEIVING_SERVICE_COUNT];
     private final CountDownLatch latch = new CountDownLatch(MESSAGE_COUNT * RECEIVING_SERVICE_COUNT);
     private OrderNotifications publisher;
+    private Service publisherService;
 
     @Before
     public void setUp() throws Exception
@@ -75,7 +78,7 @@ public final class OneToManyServiceIntegrationTest
                 new FixedServerSocketFactory(ServerSocketChannel.open()), testAddressSpace, testIdlerFactory(),
                 SubscriberThreading.SINGLE_THREADED, Fixtures.testingIdlerConfig());
         publisher = publishingServiceFactory.createPublisher(OrderNotifications.class, media);
-        final Service publisherService = publishingServiceFactory.create();
+        publisherService = publishingServiceFactory.create();
         publisherService.start();
     }
 
@@ -98,6 +101,30 @@ public final class OneToManyServiceIntegrationTest
         });
     }
 
+    @Test
+    public void shouldReportLagForEachDestination() throws Exception
+    {
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            publisher.limitOrder("test-" + i, "order-" + i, true, 17L, 3.14D, 37);
+        }
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+
+        final Map<String, Long> lagByReader = new ConcurrentHashMap<>();
+        final long timeoutAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5L);
+        do
+        {
+            publisherService.outboundLag(lagByReader::put);
+        }
+        while (lagByReader.values().stream().anyMatch(lag -> lag != 0L) && System.currentTimeMillis() < timeoutAt);
+
+        assertThat(lagByReader.size(), is(RECEIVING_SERVICE_COUNT));
+        for (int i = 0; i < RECEIVING_SERVICE_COUNT; i++)
+        {
+            assertThat(lagByReader.get("outbound-publisher-" + OrderNotifications.class.getName() + "-" + i), is(0L));
+        }
+    }
+
     private static final class CountingTradeNotifications implements TradeNotifications
     {
         private final CountDownLatch latch;
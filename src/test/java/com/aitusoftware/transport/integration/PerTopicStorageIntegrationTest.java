@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.integration;
+
+import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.factory.Media;
+import com.aitusoftware.transport.factory.Service;
+import com.aitusoftware.transport.factory.ServiceFactory;
+import com.aitusoftware.transport.factory.SubscriberDefinition;
+import com.aitusoftware.transport.factory.SubscriberThreading;
+import com.aitusoftware.transport.messaging.TopicIdCalculator;
+import com.aitusoftware.transport.net.AddressSpace;
+import com.aitusoftware.transport.reader.StreamingReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.aitusoftware.transport.Fixtures.testIdlerFactory;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class PerTopicStorageIntegrationTest
+{
+    private static final int MESSAGE_COUNT = 20;
+    private final Media media = Media.TCP;
+    private final CountDownLatch priceAlertLatch = new CountDownLatch(MESSAGE_COUNT);
+    private final CountDownLatch orderLatch = new CountDownLatch(MESSAGE_COUNT);
+    private Path publishingServicePath;
+    private Service publishingService;
+    private Service receivingService;
+    private PriceAlerts priceAlertsPublisher;
+    private OrderNotifications orderNotificationsPublisher;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        publishingServicePath = Fixtures.tempDirectory();
+        final ServerSocketChannel listenChannel = ServerSocketChannel.open();
+        listenChannel.configureBlocking(false);
+        listenChannel.bind(null);
+        final AddressSpace addressSpace = new AddressSpace()
+        {
+            @Override
+            public int portOf(final Class<?> topicClass)
+            {
+                return listenChannel.socket().getLocalPort();
+            }
+
+            @Override
+            public String hostOf(final Class<?> topicClass)
+            {
+                return "127.0.0.1";
+            }
+        };
+
+        final ServiceFactory receivingServiceFactory = new ServiceFactory(Fixtures.tempDirectory(),
+                new FixedServerSocketFactory(listenChannel), addressSpace, testIdlerFactory(),
+                SubscriberThreading.SINGLE_THREADED, Fixtures.testingIdlerConfig());
+        receivingServiceFactory.registerRemoteSubscriber(new SubscriberDefinition<>(PriceAlerts.class,
+                (symbol, price) -> priceAlertLatch.countDown(), media));
+        receivingServiceFactory.registerRemoteSubscriber(new SubscriberDefinition<>(OrderNotifications.class,
+                new OrderGateway(new CountingTradeNotifications(orderLatch)), media));
+        receivingService = receivingServiceFactory.create();
+
+        final ServiceFactory publishingServiceFactory = new ServiceFactory(publishingServicePath,
+                new FixedServerSocketFactory(ServerSocketChannel.open()), addressSpace, testIdlerFactory(),
+                SubscriberThreading.SINGLE_THREADED, Fixtures.testingIdlerConfig());
+        priceAlertsPublisher = publishingServiceFactory.createPublisher(PriceAlerts.class, media);
+        orderNotificationsPublisher = publishingServiceFactory.createPublisher(OrderNotifications.class, media);
+        publishingService = publishingServiceFactory.create();
+
+        receivingService.start();
+        publishingService.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        assertTrue(publishingService.stop(5, TimeUnit.SECONDS));
+        assertTrue(receivingService.stop(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldWritePerTopicMessagesToDedicatedPageCache() throws Exception
+    {
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            priceAlertsPublisher.onPriceAlert("USD/EUR", 1.17D);
+            orderNotificationsPublisher.limitOrder("USD/EUR", "order-" + i, true, 17L, 1.17D, 37);
+        }
+
+        assertTrue(priceAlertLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(orderLatch.await(5, TimeUnit.SECONDS));
+
+        final Path priceAlertsPath = ServiceFactory.publisherPageCachePath(publishingServicePath, PriceAlerts.class);
+        assertThat(priceAlertsPath, is(publishingServicePath.resolve("pub-" + PriceAlerts.class.getName())));
+        assertThat(ServiceFactory.publisherPageCachePath(publishingServicePath, OrderNotifications.class),
+                is(publishingServicePath.resolve(ServiceFactory.PUBLISHER_PAGE_CACHE_PATH)));
+        assertThat(Files.isDirectory(priceAlertsPath), is(true));
+        assertThat(topicIdsIn(priceAlertsPath), is(Collections.nCopies(MESSAGE_COUNT,
+                TopicIdCalculator.calculate(PriceAlerts.class))));
+        assertThat(topicIdsIn(publishingServicePath.resolve(ServiceFactory.PUBLISHER_PAGE_CACHE_PATH)),
+                is(Collections.nCopies(MESSAGE_COUNT, TopicIdCalculator.calculate(OrderNotifications.class))));
+    }
+
+    private static List<Integer> topicIdsIn(final Path pageCachePath) throws IOException
+    {
+        final List<Integer> topicIds = new ArrayList<>();
+        new StreamingReader(PageCache.create(pageCachePath, ServiceFactory.PAGE_SIZE),
+                (data, pageNumber, position) -> topicIds.add(data.getInt(data.position())),
+                false, Fixtures.testIdler()).process();
+        return topicIds;
+    }
+
+    private static final class CountingTradeNotifications implements TradeNotifications
+    {
+        private final CountDownLatch latch;
+
+        private CountingTradeNotifications(final CountDownLatch latch)
+        {
+            this.latch = latch;
+        }
+
+        @Override
+        public void onOrderAccepted(final CharSequence symbol, final CharSequence orderId, final boolean isBid,
+                                    final long matchedQuantity, final long remainingQuantity, final double price,
+                                    final int ecnId)
+        {
+            latch.countDown();
+        }
+
+        @Override
+        public void onOrderRejected(final CharSequence symbol, final CharSequence orderId, final int ecnId,
+                                    final int rejectionReason)
+        {
+            latch.countDown();
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.aitusoftware.transport.integration;
 
 import com.aitusoftware.transport.Fixtures;
 import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.PageTouch;
 import com.aitusoftware.transport.factory.Media;
 import com.aitusoftware.transport.factory.Service;
 import com.aitusoftware.transport.factory.ServiceFactory;
@@ -27,6 +28,8 @@ import com.aitusoftware.transport.messaging.TopicDispatcherRecordHandler;
 import com.aitusoftware.transport.messaging.proxy.PublisherFactory;
 import com.aitusoftware.transport.messaging.proxy.Subscriber;
 import com.aitusoftware.transport.messaging.proxy.SubscriberFactory;
+import com.aitusoftware.transport.metrics.Counters;
+import com.aitusoftware.transport.metrics.CountersReader;
 import com.aitusoftware.transport.reader.StreamingReader;
 import com.aitusoftware.transport.threads.Idlers;
 import org.agrona.collections.Int2ObjectHashMap;
@@ -36,12 +39,16 @@ import org.junit.Test;
 
 import java.nio.channels.ServerSocketChannel;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static com.aitusoftware.transport.Fixtures.testIdlerFactory;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 public final class SingleServiceIpcIntegrationTest
@@ -51,11 +58,12 @@ public final class SingleServiceIpcIntegrationTest
     private MarketData marketDataPublisher;
     private ExecutorService executor;
     private CountDownLatch latch;
+    private Path path;
 
     @Before
     public void setUp() throws Exception
     {
-        final Path path = Fixtures.tempDirectory();
+        path = Fixtures.tempDirectory();
 
         final ServiceFactory serviceFactory =
                 new ServiceFactory(path, new FixedServerSocketFactory(ServerSocketChannel.open()),
@@ -65,6 +73,8 @@ public final class SingleServiceIpcIntegrationTest
         serviceFactory.registerRemoteSubscriber(new SubscriberDefinition<>(MarketData.class, traderBot, media));
         serviceFactory.registerRemoteSubscriber(new SubscriberDefinition<>(MarketNews.class, traderBot, media));
         serviceFactory.registerRemoteSubscriber(new SubscriberDefinition<>(TradeNotifications.class, traderBot, media));
+        serviceFactory.preallocatePages(2);
+        serviceFactory.preloadPages(2, PageTouch.WRITE, false);
         this.service = serviceFactory.create();
         final PageCache inputPageCache = PageCache.create(path.resolve(ServiceFactory.SUBSCRIBER_PAGE_CACHE_PATH), ServiceFactory.PAGE_SIZE);
         marketDataPublisher = new PublisherFactory(inputPageCache).getPublisherProxy(MarketData.class);
@@ -92,6 +102,34 @@ public final class SingleServiceIpcIntegrationTest
         assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void shouldCountMessagesInCountersFile() throws Exception
+    {
+        for (int i = 0; i < 20; i++)
+        {
+            marketDataPublisher.onAsk("USD/EUR", i, 17 * i, 37);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        final CountersReader countersReader = CountersReader.open(ServiceFactory.countersPath(path));
+        final String dispatchedMessages = Counters.DISPATCHED_MESSAGES + MarketData.class.getName();
+        final long deadline = System.currentTimeMillis() + 5_000L;
+        while (countersReader.sum(dispatchedMessages) != 20L && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(1L);
+        }
+
+        assertThat(countersReader.sum(dispatchedMessages), is(20L));
+        assertTrue(countersReader.sum(Counters.DISPATCHED_BYTES + MarketData.class.getName()) > 20L);
+        assertTrue(countersReader.sum(Counters.PUBLISHED_MESSAGES + OrderNotifications.class.getName()) > 0L);
+        final Set<String> labels = new HashSet<>();
+        countersReader.forEach((id, label, value) -> labels.add(label));
+        assertTrue(labels.contains(Counters.IDLE_CYCLES + "inbound-message-dispatcher"));
+        assertTrue(labels.contains(Counters.PAGE_ROLLOVERS + ServiceFactory.SUBSCRIBER_PAGE_CACHE_PATH));
+        assertTrue(labels.contains(Counters.PAGE_PREALLOCATION_MISSES + ServiceFactory.PUBLISHER_PAGE_CACHE_PATH));
+        assertTrue(countersReader.sum(Counters.PAGE_PRELOADS + ServiceFactory.SUBSCRIBER_PAGE_CACHE_PATH) > 0L);
+    }
+
     @After
     public void tearDown() throws Exception
     {
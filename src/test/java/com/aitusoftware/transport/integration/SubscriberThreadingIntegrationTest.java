@@ -159,7 +159,8 @@ public final class SubscriberThreadingIntegrationTest
     {
         return Arrays.asList(
                 testSpec(SubscriberThreading.SINGLE_THREADED),
-                testSpec(SubscriberThreading.THREAD_PER_TOPIC)
+                testSpec(SubscriberThreading.THREAD_PER_TOPIC),
+                testSpec(SubscriberThreading.THREAD_PER_CONNECTION)
         );
     }
 
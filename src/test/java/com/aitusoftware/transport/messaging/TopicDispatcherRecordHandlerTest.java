@@ -17,18 +17,27 @@ package com.aitusoftware.transport.messaging;
 
 import com.aitusoftware.transport.Fixtures;
 import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.WritableRecord;
+import com.aitusoftware.transport.messaging.proxy.CoderCommon;
+import com.aitusoftware.transport.messaging.proxy.Encoder;
 import com.aitusoftware.transport.messaging.proxy.PublisherFactory;
 import com.aitusoftware.transport.messaging.proxy.Subscriber;
 import com.aitusoftware.transport.messaging.proxy.SubscriberFactory;
+import com.aitusoftware.transport.metrics.LatencyStage;
+import com.aitusoftware.transport.metrics.StageLatencies;
 import com.aitusoftware.transport.reader.StreamingReader;
 import com.aitusoftware.transport.threads.Idlers;
 import org.agrona.collections.Int2ObjectHashMap;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -82,4 +91,47 @@ public final class TopicDispatcherRecordHandlerTest
         assertThat(testTopicMessageCounter.getMessageCount(), is(2));
     }
 
+    @Test
+    public void shouldDispatchTimestampedMessagesAndRecordLatencies() throws Exception
+    {
+        final TestTopicMessageCounter testTopicMessageCounter = new TestTopicMessageCounter();
+        final Subscriber testTopicSubscriber =
+                subscriberFactory.getSubscriber(TestTopic.class, testTopicMessageCounter);
+        final int topicId = testTopicSubscriber.getTopicId();
+        final long receiveNanos = System.nanoTime();
+
+        final String message = "hola";
+        final WritableRecord record = pageCache.acquireRecordBuffer(5 + RecordTimestamps.LENGTH +
+                CoderCommon.getSerialisedCharSequenceByteLength(message) + Integer.BYTES);
+        final ByteBuffer buffer = record.buffer();
+        final int recordOffset = buffer.position();
+        RecordTimestamps.putHeader(buffer, topicId, (byte) 0, receiveNanos - 3_000L);
+        Encoder.encodeInt(buffer, 7);
+        Encoder.encodeCharSequence(buffer, message);
+        RecordTimestamps.putSendNanos(buffer, recordOffset, receiveNanos - 2_000L);
+        RecordTimestamps.putReceiveNanos(buffer, recordOffset, receiveNanos);
+        record.commit();
+
+        final Int2ObjectHashMap<Subscriber> subscriberMap = new Int2ObjectHashMap<>();
+        subscriberMap.put(topicId, testTopicSubscriber);
+        final StageLatencies stageLatencies = new StageLatencies();
+        stageLatencies.register(topicId, TestTopic.class);
+
+        new StreamingReader(pageCache, new TopicDispatcherRecordHandler(subscriberMap, stageLatencies),
+                false, Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        assertThat(testTopicMessageCounter.getMessageCount(), is(1));
+        final Map<LatencyStage, Long> counts = new EnumMap<>(LatencyStage.class);
+        final Map<LatencyStage, Long> maxValues = new EnumMap<>(LatencyStage.class);
+        stageLatencies.snapshot((topic, stage, histogram) -> {
+            assertThat(topic, is(equalTo(TestTopic.class)));
+            counts.put(stage, histogram.getTotalCount());
+            maxValues.put(stage, histogram.getMaxValue());
+        });
+        assertThat(counts.get(LatencyStage.PUBLISH_TO_SEND), is(0L));
+        assertThat(counts.get(LatencyStage.SEND_TO_RECEIVE), is(1L));
+        assertThat(counts.get(LatencyStage.RECEIVE_TO_DISPATCH), is(1L));
+        assertThat(maxValues.get(LatencyStage.SEND_TO_RECEIVE), is(2_000L));
+    }
+
 }
\ No newline at end of file
@@ -18,6 +18,7 @@ package com.aitusoftware.transport.messaging.proxy;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -45,4 +46,142 @@ public class CoderTest
 
         assertThat(target.toString(), is(IDENTIFIER));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldDecodeCharSequenceWithoutCopying() throws Exception
+    {
+        Encoder.encodeCharSequence(buffer, IDENTIFIER, CharSequenceEncoding.UTF_16);
+        Encoder.encodeInt(buffer, 17);
+        buffer.flip();
+        final CharSequenceFlyweight flyweight = new CharSequenceFlyweight();
+
+        final CharSequence decoded = Decoder.decodeCharSequence(buffer, flyweight);
+
+        assertThat(decoded.toString(), is(IDENTIFIER));
+        assertThat(flyweight.contentEquals(IDENTIFIER), is(true));
+        assertThat(flyweight.hashCode(), is(IDENTIFIER.hashCode()));
+        assertThat(flyweight.subSequence(2, 5), is(IDENTIFIER.subSequence(2, 5)));
+        assertThat(Decoder.decodeInt(buffer), is(17));
+
+        buffer.putChar(Integer.BYTES, 'I');
+
+        assertThat(flyweight.charAt(0), is('I'));
+        assertThat(Decoder.decodeCharSequenceAt(buffer, 0, new CharSequenceFlyweight()), is(flyweight));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldRejectIndexBeyondFlyweightLength() throws Exception
+    {
+        Encoder.encodeCharSequence(buffer, IDENTIFIER);
+        Decoder.decodeCharSequenceAt(buffer, 0, new CharSequenceFlyweight()).charAt(IDENTIFIER.length());
+    }
+
+    @Test
+    public void shouldEncodeLatin1CharSequenceCompactly() throws Exception
+    {
+        final String latin1 = "caf\u00e9-" + IDENTIFIER;
+        assertCompactRoundTrip(latin1, 1 + latin1.length());
+    }
+
+    @Test
+    public void shouldEncodeLongCharSequenceCompactly() throws Exception
+    {
+        final StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 20; i++)
+        {
+            longValue.append(IDENTIFIER);
+        }
+        assertCompactRoundTrip(longValue.toString(), 2 + longValue.length());
+    }
+
+    @Test
+    public void shouldEncodeCompactCharSequenceInLittleEndianBuffer() throws Exception
+    {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        assertCompactRoundTrip(IDENTIFIER + "-" + IDENTIFIER, 1 + 2 * IDENTIFIER.length() + 1);
+    }
+
+    @Test
+    public void shouldFallBackToUtf16ForCharactersOutsideLatin1() throws Exception
+    {
+        final String value = "\u20ac" + IDENTIFIER;
+        assertCompactRoundTrip(value, Integer.BYTES + 2 * value.length());
+    }
+
+    @Test
+    public void shouldDistinguishUtf16LengthFromCompactHeaderInLittleEndianBuffer() throws Exception
+    {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+        {
+            value.append((char) ('\u20ac' + i));
+        }
+        assertCompactRoundTrip(value.toString(), Integer.BYTES + 2 * value.length());
+    }
+
+    private void assertCompactRoundTrip(final String value, final int expectedLength)
+    {
+        final ByteBuffer target = ByteBuffer.allocate(1024).order(buffer.order());
+        assertThat(CoderCommon.getSerialisedCharSequenceByteLength(value, CharSequenceEncoding.COMPACT), is(expectedLength));
+
+        Encoder.encodeCharSequence(target, value, CharSequenceEncoding.COMPACT);
+        Encoder.encodeInt(target, 17);
+        target.flip();
+
+        assertThat(CoderCommon.getSerialisedCharSequenceLengthAtOffset(target, 0), is(expectedLength));
+        assertThat(Decoder.decodeCharSequence(target, new StringBuilder()).toString(), is(value));
+        assertThat(Decoder.decodeInt(target), is(17));
+        assertThat(Decoder.decodeCharSequenceAt(target, 0, new StringBuilder()).toString(), is(value));
+        target.rewind();
+        final CharSequenceFlyweight flyweight = new CharSequenceFlyweight();
+        Decoder.decodeCharSequence(target, flyweight);
+        assertThat(flyweight.contentEquals(value), is(true));
+        assertThat(flyweight.hashCode(), is(value.hashCode()));
+        assertThat(target.position(), is(expectedLength));
+        assertThat(Decoder.decodeCharSequenceAt(target, 0, new CharSequenceFlyweight()).toString(), is(value));
+    }
+
+    @Test
+    public void shouldEncodeCharInFourByteSlot() throws Exception
+    {
+        Encoder.encodeChar(buffer, '\u20ac');
+        Encoder.encodeInt(buffer, 17);
+        buffer.flip();
+
+        assertThat(Decoder.decodeCharAt(buffer, 0), is('\u20ac'));
+        assertThat(Decoder.decodeChar(buffer), is('\u20ac'));
+        assertThat(Decoder.decodeInt(buffer), is(17));
+    }
+
+    @Test
+    public void shouldEncodeVariableLengthInts() throws Exception
+    {
+        final int[] values = {0, 1, -1, 63, -64, 64, 1_000, -1_000, 1 << 20, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (final int value : values)
+        {
+            buffer.clear();
+            Encoder.encodeVarInt(buffer, value);
+            assertThat(buffer.position(), is(CoderCommon.getVarIntByteLength(value)));
+            buffer.flip();
+            assertThat(Decoder.decodeVarInt(buffer), is(value));
+        }
+        assertThat(CoderCommon.getVarIntByteLength(-64), is(1));
+        assertThat(CoderCommon.getVarIntByteLength(Integer.MIN_VALUE), is(5));
+    }
+
+    @Test
+    public void shouldEncodeVariableLengthLongs() throws Exception
+    {
+        final long[] values = {0L, 1L, -1L, 63L, -64L, 64L, 1_000_000L, -1L << 40, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (final long value : values)
+        {
+            buffer.clear();
+            Encoder.encodeVarLong(buffer, value);
+            assertThat(buffer.position(), is(CoderCommon.getVarLongByteLength(value)));
+            buffer.flip();
+            assertThat(Decoder.decodeVarLong(buffer), is(value));
+        }
+        assertThat(CoderCommon.getVarLongByteLength(Long.MIN_VALUE), is(10));
+    }
+}
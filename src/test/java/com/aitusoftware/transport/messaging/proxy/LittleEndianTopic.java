@@ -0,0 +1,25 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.messaging.proxy;
+
+import com.aitusoftware.transport.messaging.PayloadByteOrder;
+import com.aitusoftware.transport.messaging.Topic;
+
+@Topic(byteOrder = PayloadByteOrder.LITTLE_ENDIAN)
+public interface LittleEndianTopic
+{
+    void quote(final long price, final CharSequence symbol);
+}
@@ -17,6 +17,7 @@ package com.aitusoftware.transport.messaging.proxy;
 
 import com.aitusoftware.transport.Fixtures;
 import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.messaging.RecordTimestamps;
 import com.aitusoftware.transport.messaging.TestTopic;
 import com.aitusoftware.transport.reader.RecordHandler;
 import com.aitusoftware.transport.reader.StreamingReader;
@@ -25,6 +26,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
@@ -96,6 +98,36 @@ public final class ProxyIntegrationTest
         assertThat(capture.received.get("bonjour"), is(11));
     }
 
+    @Test
+    public void shouldEncodePayloadInDeclaredByteOrder() throws Exception
+    {
+        final PageCache littleEndianPageCache = PageCache.create(Fixtures.tempDirectory(), 4096);
+        final LittleEndianTopic proxy = new PublisherFactory(littleEndianPageCache).getPublisherProxy(LittleEndianTopic.class);
+        final StringBuilder symbol = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+        {
+            symbol.append((char) ('\u0100' + i));
+        }
+        final long price = 0x0102_0304_0506_0708L;
+        final Map<String, Long> received = new HashMap<>();
+        final Subscriber<LittleEndianTopic> subscriber = subscriberFactory.getSubscriber(LittleEndianTopic.class,
+                (quotePrice, quoteSymbol) -> received.put(quoteSymbol.toString(), quotePrice));
+
+        proxy.quote(price, symbol);
+
+        new StreamingReader(littleEndianPageCache, (data, pageNumber, position) -> {
+            assertThat(data.getInt(), is(((AbstractPublisher) proxy).getTopicId()));
+            final int payloadOffset = data.position() + 1 + (RecordTimestamps.ENABLED ? RecordTimestamps.LENGTH : 0);
+            assertThat(data.order(ByteOrder.LITTLE_ENDIAN).getLong(payloadOffset), is(price));
+            data.order(ByteOrder.BIG_ENDIAN);
+            subscriber.onRecord(data, pageNumber, position);
+            assertThat(data.order(), is(ByteOrder.BIG_ENDIAN));
+        }, false, Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        assertThat(received.size(), is(1));
+        assertThat(received.get(symbol.toString()), is(price));
+    }
+
     private static class Capture implements TestTopic
     {
         private final Map<String, Integer> received = new HashMap<>();
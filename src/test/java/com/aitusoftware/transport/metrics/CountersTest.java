@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.metrics;
+
+import com.aitusoftware.transport.Fixtures;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public final class CountersTest
+{
+    private final Path path = Fixtures.tempDirectory().resolve(Counters.FILE_NAME);
+
+    @Test
+    public void shouldReadCounterValuesFromFile() throws Exception
+    {
+        final Counters counters = Counters.create(path, 8);
+        final Counter messages = counters.newCounter("messages");
+        final Counter bytes = counters.newCounter("bytes");
+        messages.incrementOrdered();
+        messages.incrementOrdered();
+        bytes.addOrdered(37L);
+        bytes.increment();
+
+        final CountersReader reader = CountersReader.open(path);
+        final List<String> values = new ArrayList<>();
+        reader.forEach((id, label, value) -> values.add(id + ":" + label + "=" + value));
+
+        assertThat(values.size(), is(2));
+        assertThat(values.get(0), is(equalTo("0:messages=2")));
+        assertThat(values.get(1), is(equalTo("1:bytes=38")));
+        assertThat(messages.get(), is(2L));
+    }
+
+    @Test
+    public void shouldObserveCountersAllocatedAfterReaderIsOpened() throws Exception
+    {
+        final Counters counters = Counters.create(path, 8);
+        final CountersReader reader = CountersReader.open(path);
+        assertThat(reader.sum("reconnects"), is(0L));
+
+        counters.newCounter("reconnects").addOrdered(3L);
+        counters.newCounter("other").incrementOrdered();
+        counters.newCounter("reconnects").addOrdered(4L);
+
+        assertThat(reader.sum("reconnects"), is(7L));
+        assertThat(reader.sum("other"), is(1L));
+    }
+
+    @Test
+    public void shouldTruncateLongLabels() throws Exception
+    {
+        final Counters counters = Counters.create(path, 1);
+        final StringBuilder label = new StringBuilder();
+        while (label.length() < Counters.MAX_LABEL_LENGTH + 10)
+        {
+            label.append("label.");
+        }
+        counters.newCounter(label.toString()).incrementOrdered();
+
+        final List<String> labels = new ArrayList<>();
+        CountersReader.open(path).forEach((id, counterLabel, value) -> labels.add(counterLabel));
+
+        assertThat(labels.get(0), is(equalTo(label.substring(0, Counters.MAX_LABEL_LENGTH))));
+    }
+
+    @Test
+    public void shouldReplaceExistingFile() throws Exception
+    {
+        Counters.create(path, 4).newCounter("old").addOrdered(11L);
+        Counters.create(path, 4).newCounter("new").addOrdered(13L);
+
+        final CountersReader reader = CountersReader.open(path);
+
+        assertThat(reader.sum("old"), is(0L));
+        assertThat(reader.sum("new"), is(13L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectAllocationBeyondCapacity() throws Exception
+    {
+        final Counters counters = Counters.create(path, 1);
+        counters.newCounter("first");
+        counters.newCounter("second");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectUninitialisedFile() throws Exception
+    {
+        Files.write(path, new byte[Counters.HEADER_LENGTH]);
+
+        CountersReader.open(path);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DemultiplexingTopicMessageHandlerTest
+{
+    private final DemultiplexingTopicMessageHandler handler = new DemultiplexingTopicMessageHandler();
+    private final RecordingHandler first = new RecordingHandler();
+    private final RecordingHandler second = new RecordingHandler();
+
+    @Test
+    public void shouldDispatchMessagesToTopicHandler() throws Exception
+    {
+        handler.register(7, first);
+        handler.register(11, second);
+
+        handler.onTopicMessage(7, ByteBuffer.allocate(8), 0, 0);
+        handler.onTopicMessage(11, ByteBuffer.allocate(8), 0, 64);
+        handler.onTopicMessage(13, ByteBuffer.allocate(8), 0, 128);
+        handler.onTopicMessage(7, ByteBuffer.allocate(8), 0, 192);
+
+        assertThat(first.positions, is(Arrays.asList(0, 192)));
+        assertThat(second.positions, is(Arrays.asList(64)));
+    }
+
+    @Test
+    public void shouldFlushAllHandlers() throws Exception
+    {
+        handler.register(7, first);
+        handler.register(11, second);
+
+        handler.flush();
+
+        assertThat(first.flushCount, is(1));
+        assertThat(second.flushCount, is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSecondHandlerForTopic() throws Exception
+    {
+        handler.register(7, first);
+        handler.register(7, second);
+    }
+
+    private static final class RecordingHandler implements TopicMessageHandler
+    {
+        private final List<Integer> positions = new ArrayList<>();
+        private int flushCount;
+
+        @Override
+        public void onTopicMessage(final int topicId, final ByteBuffer data, final int pageNumber, final int position)
+        {
+            positions.add(position);
+        }
+
+        @Override
+        public void flush()
+        {
+            flushCount++;
+        }
+    }
+}
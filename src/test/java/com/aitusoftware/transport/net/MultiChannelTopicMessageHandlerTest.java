@@ -72,10 +72,10 @@ public class MultiChannelTopicMessageHandlerTest
         final Future<byte[]> receiverThree = startReceiver();
         final Future<byte[]> receiverFour = startReceiver();
 
-        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD));
-        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD));
-        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD));
-        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD));
+        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD), 0, 0);
+        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD), 0, 64);
+        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD), 0, 128);
+        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD), 0, 192);
 
         assertArrayEquals(receiverOne.get(1, TimeUnit.SECONDS), PAYLOAD);
         assertArrayEquals(receiverTwo.get(1, TimeUnit.SECONDS), PAYLOAD);
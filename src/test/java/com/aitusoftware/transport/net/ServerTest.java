@@ -0,0 +1,341 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.factory.SubscriberThreading;
+import com.aitusoftware.transport.reader.StreamingReader;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntHashSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServerTest
+{
+    private static final int TOPIC_ID = 17;
+    private static final int NATIVE_ORDER_TOPIC_ID = 37;
+    private static final int CONNECTION_COUNT = 5;
+    private static final int MESSAGES_PER_CONNECTION = 100;
+    private static final int PAGE_SIZE = 256 * 1024;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<SocketChannel> clients = new ArrayList<>();
+    private ServerSocketChannel serverSocketChannel;
+    private PageCache subscriberPageCache;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(null);
+        subscriberPageCache = PageCache.create(Fixtures.tempDirectory(), PAGE_SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        for (SocketChannel client : clients)
+        {
+            client.close();
+        }
+        serverSocketChannel.close();
+    }
+
+    @Test
+    public void shouldReceiveMessagesOnIoThreadPool() throws Exception
+    {
+        startServer(SubscriberThreading.SINGLE_THREADED, 3);
+
+        sendMessagesAndAwaitReceipt();
+    }
+
+    @Test
+    public void shouldReceiveMessagesWithThreadPerConnection() throws Exception
+    {
+        startServer(SubscriberThreading.THREAD_PER_CONNECTION, 1);
+
+        sendMessagesAndAwaitReceipt();
+    }
+
+    @Test
+    public void shouldEndConnectionThreadWhenPeerDisconnects() throws Exception
+    {
+        startServer(SubscriberThreading.THREAD_PER_CONNECTION, 1);
+        final SocketChannel client = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        clients.add(client);
+        write(client, frame(TOPIC_ID, 7));
+        readMessages(1, data -> {});
+
+        assertThat(((ThreadPoolExecutor) executor).getActiveCount(), is(2));
+
+        client.close();
+        final long timeoutAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10L);
+        while (((ThreadPoolExecutor) executor).getActiveCount() != 1)
+        {
+            if (System.currentTimeMillis() > timeoutAt)
+            {
+                fail("Connection thread did not exit");
+            }
+            Thread.sleep(1L);
+        }
+    }
+
+    @Test
+    public void shouldReassembleFramesSplitAcrossReads() throws Exception
+    {
+        startServer(SubscriberThreading.SINGLE_THREADED, 1);
+        final SocketChannel client = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        clients.add(client);
+        final int messageCount = 20;
+        final ByteBuffer frames = ByteBuffer.allocate(messageCount * 3 * Integer.BYTES);
+        for (int i = 0; i < messageCount; i++)
+        {
+            frames.putInt(2 * Integer.BYTES).putInt(TOPIC_ID).putInt(i);
+        }
+        frames.flip();
+        final ByteBuffer fragment = frames.duplicate();
+        while (frames.remaining() != 0)
+        {
+            fragment.limit(Math.min(frames.limit(), frames.position() + 5)).position(frames.position());
+            while (fragment.remaining() != 0)
+            {
+                client.write(fragment);
+            }
+            frames.position(fragment.position());
+            Thread.sleep(1L);
+        }
+
+        final List<Integer> received = new ArrayList<>();
+        readMessages(messageCount, data -> {
+            assertThat(data.getInt(), is(TOPIC_ID));
+            received.add(data.getInt());
+        });
+
+        assertThat(received.size(), is(messageCount));
+        for (int i = 0; i < messageCount; i++)
+        {
+            assertThat(received.get(i), is(i));
+        }
+    }
+
+    @Test
+    public void shouldReceiveFrameLargerThanStagingBuffer() throws Exception
+    {
+        startServer(SubscriberThreading.SINGLE_THREADED, 1);
+        final SocketChannel client = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        clients.add(client);
+        final int payloadLength = 100_000;
+        final ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + payloadLength);
+        frame.putInt(payloadLength).putInt(TOPIC_ID);
+        while (frame.remaining() != 0)
+        {
+            frame.put((byte) 7);
+        }
+        frame.flip();
+        while (frame.remaining() != 0)
+        {
+            client.write(frame);
+        }
+
+        final int[] receivedLength = new int[1];
+        readMessages(1, data -> receivedLength[0] = data.remaining());
+
+        assertThat(receivedLength[0], is(payloadLength));
+    }
+
+    @Test
+    public void shouldAcceptNativeOrderMessagesFromPeerWithSameByteOrder() throws Exception
+    {
+        startServer(SubscriberThreading.SINGLE_THREADED, 1);
+        final SocketChannel client = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        clients.add(client);
+        write(client, Handshake.frame(ByteOrder.nativeOrder()));
+        write(client, frame(NATIVE_ORDER_TOPIC_ID, 42));
+
+        final List<Integer> received = new ArrayList<>();
+        readMessages(1, data -> {
+            assertThat(data.getInt(), is(NATIVE_ORDER_TOPIC_ID));
+            received.add(data.getInt());
+        });
+
+        assertThat(received.get(0), is(42));
+    }
+
+    @Test
+    public void shouldDisconnectPeerWithDifferentByteOrderSendingNativeOrderMessages() throws Exception
+    {
+        startServer(SubscriberThreading.SINGLE_THREADED, 1);
+        final SocketChannel client = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        clients.add(client);
+        final ByteOrder otherByteOrder = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ?
+                ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        write(client, Handshake.frame(otherByteOrder));
+        write(client, frame(TOPIC_ID, 7));
+        write(client, frame(NATIVE_ORDER_TOPIC_ID, 42));
+
+        final List<Integer> received = new ArrayList<>();
+        readMessages(1, data -> {
+            assertThat(data.getInt(), is(TOPIC_ID));
+            received.add(data.getInt());
+        });
+        assertThat(received.get(0), is(7));
+
+        awaitDisconnection(client);
+    }
+
+    @Test
+    public void shouldDisconnectPeerSendingFrameLengthThatWouldOverflow() throws Exception
+    {
+        shouldDisconnectPeerSendingFrameLength(Integer.MAX_VALUE - 1);
+    }
+
+    @Test
+    public void shouldDisconnectPeerSendingFrameLargerThanPage() throws Exception
+    {
+        shouldDisconnectPeerSendingFrameLength(PAGE_SIZE);
+    }
+
+    private void shouldDisconnectPeerSendingFrameLength(final int frameLength) throws Exception
+    {
+        startServer(SubscriberThreading.SINGLE_THREADED, 1);
+        final SocketChannel client = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        clients.add(client);
+        write(client, frame(TOPIC_ID, 7));
+        final ByteBuffer invalidFrame = ByteBuffer.allocate(3 * Integer.BYTES);
+        invalidFrame.putInt(frameLength).putInt(TOPIC_ID).putInt(42).flip();
+        write(client, invalidFrame);
+
+        awaitDisconnection(client);
+
+        final SocketChannel otherClient = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        clients.add(otherClient);
+        write(otherClient, frame(TOPIC_ID, 11));
+        final List<Integer> received = new ArrayList<>();
+        readMessages(2, data -> {
+            assertThat(data.getInt(), is(TOPIC_ID));
+            received.add(data.getInt());
+        });
+        assertThat(received.get(0), is(7));
+        assertThat(received.get(1), is(11));
+    }
+
+    private static void awaitDisconnection(final SocketChannel client) throws Exception
+    {
+        client.configureBlocking(false);
+        final long timeoutAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10L);
+        while (client.read(ByteBuffer.allocate(16)) != -1)
+        {
+            if (System.currentTimeMillis() > timeoutAt)
+            {
+                fail("Connection was not closed");
+            }
+            Thread.sleep(1L);
+        }
+    }
+
+    private static ByteBuffer frame(final int topicId, final int value)
+    {
+        final ByteBuffer frame = ByteBuffer.allocate(3 * Integer.BYTES);
+        frame.putInt(2 * Integer.BYTES).putInt(topicId).putInt(value).flip();
+        return frame;
+    }
+
+    private static void write(final SocketChannel client, final ByteBuffer data) throws Exception
+    {
+        while (data.remaining() != 0)
+        {
+            client.write(data);
+        }
+    }
+
+    private void startServer(final SubscriberThreading subscriberThreading, final int ioThreadCount)
+    {
+        final IntHashSet topicIds = new IntHashSet();
+        topicIds.add(TOPIC_ID);
+        topicIds.add(NATIVE_ORDER_TOPIC_ID);
+        final Int2ObjectHashMap<Class<?>> topicIdToTopic = new Int2ObjectHashMap<>();
+        topicIdToTopic.put(TOPIC_ID, Object.class);
+        topicIdToTopic.put(NATIVE_ORDER_TOPIC_ID, NativeOrderTopic.class);
+        final Server server = new Server(topicIds, topicId -> serverSocketChannel, subscriberPageCache,
+                subscriberThreading, topicIdToTopic, ioThreadCount);
+        server.start(executor);
+        server.waitForStartup(5, TimeUnit.SECONDS);
+    }
+
+    private void sendMessagesAndAwaitReceipt() throws Exception
+    {
+        for (int i = 0; i < CONNECTION_COUNT; i++)
+        {
+            clients.add(SocketChannel.open(serverSocketChannel.getLocalAddress()));
+        }
+        final ByteBuffer frame = ByteBuffer.allocate(64);
+        for (int i = 0; i < MESSAGES_PER_CONNECTION; i++)
+        {
+            for (SocketChannel client : clients)
+            {
+                frame.clear();
+                frame.putInt(2 * Integer.BYTES).putInt(TOPIC_ID).putInt(i).flip();
+                while (frame.remaining() != 0)
+                {
+                    client.write(frame);
+                }
+            }
+        }
+
+        final int expectedMessageCount = CONNECTION_COUNT * MESSAGES_PER_CONNECTION;
+        final long[] sequenceSum = new long[1];
+        readMessages(expectedMessageCount, data -> {
+            assertThat(data.getInt(), is(TOPIC_ID));
+            sequenceSum[0] += data.getInt();
+        });
+
+        assertThat(sequenceSum[0], is((long) CONNECTION_COUNT * (MESSAGES_PER_CONNECTION - 1) * MESSAGES_PER_CONNECTION / 2));
+    }
+
+    private void readMessages(final int expectedMessageCount, final Consumer<ByteBuffer> messageHandler)
+    {
+        final StreamingReader reader = new StreamingReader(subscriberPageCache,
+                (data, pageNumber, position) -> messageHandler.accept(data), false, Fixtures.testIdler());
+        final long timeoutAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10L);
+        while (reader.getMessageCount() < expectedMessageCount && System.currentTimeMillis() < timeoutAt)
+        {
+            reader.process();
+        }
+
+        assertThat(reader.getMessageCount(), is((long) expectedMessageCount));
+    }
+}
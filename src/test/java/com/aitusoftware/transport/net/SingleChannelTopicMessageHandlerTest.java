@@ -15,6 +15,14 @@
  */
 package com.aitusoftware.transport.net;
 
+import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.PageRetention;
+import com.aitusoftware.transport.buffer.RetentionAction;
+import com.aitusoftware.transport.buffer.RetentionPolicies;
+import com.aitusoftware.transport.buffer.WritableRecord;
+import com.aitusoftware.transport.messaging.RecordTimestamps;
+import com.aitusoftware.transport.reader.StreamingReader;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -30,10 +38,15 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.IntFunction;
 
 import static com.aitusoftware.transport.Action.executeQuietly;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class SingleChannelTopicMessageHandlerTest
 {
@@ -63,11 +76,305 @@ public class SingleChannelTopicMessageHandlerTest
     {
         final Future<byte[]> receiver = startReceiver();
 
-        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD));
+        messageHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD), 0, 0);
 
         assertArrayEquals(receiver.get(1, TimeUnit.SECONDS), PAYLOAD);
     }
 
+    @Test
+    public void shouldCoalesceMessagesUntilFlushed() throws Exception
+    {
+        final Future<byte[][]> receiver = startReceiver(3);
+        final SingleChannelTopicMessageHandler coalescingHandler = new SingleChannelTopicMessageHandler(
+                new TopicToChannelMapper(createChannel()), WriteCoalescing.coalesce(1024, 1, TimeUnit.MINUTES));
+
+        for (int i = 0; i < 3; i++)
+        {
+            coalescingHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD), 0, i * 64);
+        }
+        coalescingHandler.flush();
+
+        for (byte[] payload : receiver.get(1, TimeUnit.SECONDS))
+        {
+            assertArrayEquals(payload, PAYLOAD);
+        }
+    }
+
+    @Test
+    public void shouldWriteCoalescedMessagesWhenBatchIsFull() throws Exception
+    {
+        final Future<byte[][]> receiver = startReceiver(2);
+        final SingleChannelTopicMessageHandler coalescingHandler = new SingleChannelTopicMessageHandler(
+                new TopicToChannelMapper(createChannel()),
+                WriteCoalescing.coalesce(2 * (Integer.BYTES + PAYLOAD.length), 1, TimeUnit.MINUTES));
+
+        coalescingHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD), 0, 0);
+        coalescingHandler.onTopicMessage(17, ByteBuffer.wrap(PAYLOAD), 0, 64);
+
+        for (byte[] payload : receiver.get(1, TimeUnit.SECONDS))
+        {
+            assertArrayEquals(payload, PAYLOAD);
+        }
+    }
+
+    @Test
+    public void shouldSendTimestampedRecordWithoutModifyingIt() throws Exception
+    {
+        final Future<ByteBuffer[]> receiver = receiveFrames(1);
+        final ByteBuffer record = timestampedRecord();
+
+        messageHandler.onTopicMessage(17, record, 0, 0);
+
+        assertFrameTimestamps(receiver.get(1, TimeUnit.SECONDS)[0], record);
+    }
+
+    @Test
+    public void shouldSendCoalescedTimestampedRecordsWithoutModifyingThem() throws Exception
+    {
+        final Future<ByteBuffer[]> receiver = receiveFrames(2);
+        final SingleChannelTopicMessageHandler coalescingHandler = new SingleChannelTopicMessageHandler(
+                new TopicToChannelMapper(createChannel()), WriteCoalescing.coalesce(1024, 1, TimeUnit.MINUTES));
+        final ByteBuffer first = timestampedRecord();
+        final ByteBuffer second = timestampedRecord();
+
+        coalescingHandler.onTopicMessage(17, first, 0, 0);
+        coalescingHandler.onTopicMessage(17, second, 0, 64);
+        coalescingHandler.flush();
+
+        final ByteBuffer[] frames = receiver.get(1, TimeUnit.SECONDS);
+        assertFrameTimestamps(frames[0], first);
+        assertFrameTimestamps(frames[1], second);
+    }
+
+    @Test
+    public void shouldNotBlockReaderWhenSocketIsFull() throws Exception
+    {
+        final int messageCount = 256;
+        final PageCache pageCache = writeRecords(messageCount, 32 * 1024);
+        final StreamingReader reader = new StreamingReader(pageCache,
+                new OutputChannel(new SingleChannelTopicMessageHandler(new TopicToChannelMapper(createNonBlockingChannel()))),
+                false, Fixtures.testIdler());
+
+        reader.process();
+
+        assertThat(reader.getMessageCount() < messageCount, is(true));
+        assertSequencesReceived(receiveSequences(messageCount), reader, messageCount);
+    }
+
+    @Test
+    public void shouldRetryRecordsWhenConnectionCannotBeEstablished() throws Exception
+    {
+        final int messageCount = 10;
+        final PageCache pageCache = writeRecords(messageCount, 64);
+        final IntFunction<SocketChannel> connector = createNonBlockingChannel();
+        final AtomicInteger connectionAttempts = new AtomicInteger();
+        final StreamingReader reader = new StreamingReader(pageCache,
+                new OutputChannel(new SingleChannelTopicMessageHandler(new TopicToChannelMapper(i -> {
+                    if (connectionAttempts.getAndIncrement() == 0)
+                    {
+                        throw new UncheckedIOException(new IOException("Connection refused"));
+                    }
+                    return connector.apply(i);
+                }))), false, Fixtures.testIdler());
+
+        reader.process();
+
+        assertThat(reader.getMessageCount(), is(0L));
+        assertSequencesReceived(receiveSequences(messageCount), reader, messageCount);
+    }
+
+    @Test
+    public void shouldRetainPagesRequiredToResendBufferedRecords() throws Exception
+    {
+        final int messageCount = 10;
+        final PageCache pageCache = writeRecords(PageCache.create(Fixtures.tempDirectory(), 4096), messageCount, 1000);
+        final ResendPositions resendPositions = new ResendPositions();
+        final IntFunction<SocketChannel> connector = createNonBlockingChannel();
+        final AtomicInteger connectionAttempts = new AtomicInteger();
+        final StreamingReader reader = new StreamingReader(pageCache,
+                new OutputChannel(new SingleChannelTopicMessageHandler(new TopicToChannelMapper(i -> {
+                    if (connectionAttempts.getAndIncrement() == 0)
+                    {
+                        // records from the first page are buffered; give retention a chance to remove it,
+                        // allowing for pages only being unmapped some seconds after their last use
+                        final long waitUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5L);
+                        while (pageCache.getLowestRetainedPageNumber() == 0 && System.currentTimeMillis() < waitUntil)
+                        {
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10L));
+                        }
+                        throw new UncheckedIOException(new IOException("Connection refused"));
+                    }
+                    return connector.apply(i);
+                }), WriteCoalescing.coalesce(64 * 1024, 1, TimeUnit.MINUTES), resendPositions)),
+                false, Fixtures.testIdler());
+        final PageRetention retention = new PageRetention(
+                pageCache, RetentionPolicies.pageCount(1), RetentionAction.DELETE);
+        retention.registerReader(() -> resendPositions.lowestPageNumber(reader.getPageNumber()));
+        final Thread unmapperThread = new Thread(pageCache.getUnmapper()::execute);
+        final Thread retentionThread = new Thread(retention::execute);
+        unmapperThread.start();
+        retentionThread.start();
+        try
+        {
+            reader.process();
+
+            assertThat(connectionAttempts.get(), is(1));
+            assertThat(reader.getPageNumber(), is(0));
+            assertSequencesReceived(receiveSequences(messageCount), reader, messageCount);
+        }
+        finally
+        {
+            retentionThread.interrupt();
+            unmapperThread.interrupt();
+        }
+    }
+
+    private static ByteBuffer timestampedRecord()
+    {
+        final ByteBuffer record = ByteBuffer.allocate(RecordTimestamps.HEADER_LENGTH + PAYLOAD.length);
+        RecordTimestamps.putHeader(record, 17, (byte) 3, System.nanoTime());
+        record.put(PAYLOAD).flip();
+        return record;
+    }
+
+    private static void assertFrameTimestamps(final ByteBuffer frame, final ByteBuffer record)
+    {
+        assertThat(frame.remaining(), is(record.remaining()));
+        assertThat(RecordTimestamps.publishNanos(frame, 0), is(RecordTimestamps.publishNanos(record, 0)));
+        if (RecordTimestamps.ENABLED)
+        {
+            assertTrue(RecordTimestamps.sendNanos(frame, 0) >= RecordTimestamps.publishNanos(record, 0));
+        }
+        else
+        {
+            assertThat(RecordTimestamps.sendNanos(frame, 0), is(0L));
+        }
+        assertThat(RecordTimestamps.sendNanos(record, 0), is(0L));
+        assertThat(frame.get(RecordTimestamps.HEADER_LENGTH), is(PAYLOAD[0]));
+    }
+
+    private static void assertSequencesReceived(
+            final Future<int[]> receiver, final StreamingReader reader, final int messageCount) throws Exception
+    {
+        final long timeoutAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10L);
+        while (!receiver.isDone() && System.currentTimeMillis() < timeoutAt)
+        {
+            reader.process();
+        }
+        final int[] sequences = receiver.get(1, TimeUnit.SECONDS);
+        for (int i = 0; i < messageCount; i++)
+        {
+            assertThat(sequences[i], is(i));
+        }
+    }
+
+    private static PageCache writeRecords(final int messageCount, final int recordLength) throws IOException
+    {
+        return writeRecords(PageCache.create(Fixtures.tempDirectory(), 1 << 20), messageCount, recordLength);
+    }
+
+    private static PageCache writeRecords(final PageCache pageCache, final int messageCount, final int recordLength)
+    {
+        for (int i = 0; i < messageCount; i++)
+        {
+            final WritableRecord record = pageCache.acquireRecordBuffer(recordLength);
+            record.buffer().putInt(17).putInt(i);
+            record.commit();
+        }
+        return pageCache;
+    }
+
+    private Future<int[]> receiveSequences(final int messageCount)
+    {
+        return executor.submit(() -> {
+            try
+            {
+                final SocketChannel client = server.accept();
+                client.configureBlocking(true);
+                final ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+                final int[] sequences = new int[messageCount];
+                for (int i = 0; i < messageCount; i++)
+                {
+                    lengthBuffer.clear();
+                    readFully(client, lengthBuffer);
+                    final ByteBuffer frame = ByteBuffer.allocate(lengthBuffer.getInt(0));
+                    readFully(client, frame);
+                    sequences[i] = frame.getInt(Integer.BYTES);
+                }
+                return sequences;
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Future<ByteBuffer[]> receiveFrames(final int frameCount)
+    {
+        return executor.submit(() -> {
+            try
+            {
+                final SocketChannel client = server.accept();
+                client.configureBlocking(true);
+                final ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+                final ByteBuffer[] frames = new ByteBuffer[frameCount];
+                for (int i = 0; i < frameCount; i++)
+                {
+                    lengthBuffer.clear();
+                    readFully(client, lengthBuffer);
+                    frames[i] = ByteBuffer.allocate(lengthBuffer.getInt(0));
+                    readFully(client, frames[i]);
+                    frames[i].flip();
+                }
+                return frames;
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void readFully(final SocketChannel channel, final ByteBuffer buffer) throws IOException
+    {
+        while (buffer.remaining() != 0)
+        {
+            if (channel.read(buffer) < 0)
+            {
+                throw new IOException("Connection closed");
+            }
+        }
+    }
+
+    private Future<byte[][]> startReceiver(final int messageCount)
+    {
+        return executor.submit(() -> {
+            try
+            {
+                final SocketChannel client = server.accept();
+                client.configureBlocking(true);
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(messageCount * (Integer.BYTES + PAYLOAD.length));
+                while (buffer.remaining() != 0)
+                {
+                    client.read(buffer);
+                }
+                buffer.flip();
+                final byte[][] payloads = new byte[messageCount][];
+                for (int i = 0; i < messageCount; i++)
+                {
+                    payloads[i] = new byte[buffer.getInt()];
+                    buffer.get(payloads[i]);
+                }
+                return payloads;
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     private Future<byte[]> startReceiver()
     {
         return executor.submit(() -> {
@@ -89,6 +396,23 @@ public class SingleChannelTopicMessageHandlerTest
         });
     }
 
+    private IntFunction<SocketChannel> createNonBlockingChannel()
+    {
+        final IntFunction<SocketChannel> connector = createChannel();
+        return i -> {
+            final SocketChannel channel = connector.apply(i);
+            try
+            {
+                channel.configureBlocking(false);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            return channel;
+        };
+    }
+
     private IntFunction<SocketChannel> createChannel()
     {
         return i -> {
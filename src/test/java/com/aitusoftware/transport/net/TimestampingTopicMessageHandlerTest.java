@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.net;
+
+import com.aitusoftware.transport.messaging.RecordTimestamps;
+import com.aitusoftware.transport.metrics.LatencyStage;
+import com.aitusoftware.transport.metrics.StageLatencies;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public final class TimestampingTopicMessageHandlerTest
+{
+    private static final int TOPIC_ID = 37;
+
+    private final StageLatencies stageLatencies = new StageLatencies();
+    private final List<Integer> receivedTopicIds = new ArrayList<>();
+    private final TopicMessageHandler handler = TimestampingTopicMessageHandler.timestamp(stageLatencies,
+            (topicId, data, pageNumber, position) -> receivedTopicIds.add(topicId));
+
+    @Test
+    public void shouldRecordSendLatencyWithoutModifyingRecord() throws Exception
+    {
+        stageLatencies.register(TOPIC_ID, Object.class);
+        final ByteBuffer data = ByteBuffer.allocate(64);
+        final long publishNanos = System.nanoTime();
+        RecordTimestamps.putHeader(data, TOPIC_ID, (byte) 3, publishNanos);
+        data.flip();
+
+        handler.onTopicMessage(TOPIC_ID, data, 0, 0);
+
+        assertThat(receivedTopicIds.size(), is(1));
+        assertThat(data.position(), is(0));
+        assertThat(RecordTimestamps.publishNanos(data, 0), is(publishNanos));
+        assertThat(RecordTimestamps.sendNanos(data, 0), is(0L));
+        assertThat(publishToSendCount(), is(1L));
+    }
+
+    @Test
+    public void shouldPassThroughRecordWithoutTimestamps() throws Exception
+    {
+        stageLatencies.register(TOPIC_ID, Object.class);
+        final ByteBuffer data = ByteBuffer.allocate(64);
+        data.putInt(TOPIC_ID).put((byte) 3).putLong(17L);
+        data.clear();
+
+        handler.onTopicMessage(TOPIC_ID, data, 0, 0);
+
+        assertThat(receivedTopicIds.size(), is(1));
+        assertThat(data.getLong(5), is(17L));
+        assertThat(publishToSendCount(), is(0L));
+    }
+
+    private long publishToSendCount()
+    {
+        final long[] count = new long[1];
+        stageLatencies.snapshot((topic, stage, histogram) -> {
+            if (stage == LatencyStage.PUBLISH_TO_SEND)
+            {
+                count[0] = histogram.getTotalCount();
+            }
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.reader;
+
+import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.metrics.Counter;
+import com.aitusoftware.transport.metrics.Counters;
+import com.aitusoftware.transport.threads.Idlers;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public final class ReaderLagMonitorTest
+{
+    private static final int MESSAGE_LENGTH = 60;
+    private static final int RECORD_FOOTPRINT = 64;
+
+    private final List<String> events = new ArrayList<>();
+    private final ByteBuffer message = ByteBuffer.allocate(MESSAGE_LENGTH);
+    private PageCache pageCache;
+    private StreamingReader reader;
+    private Counter lagBytes;
+    private Counter slowConsumerEvents;
+    private ReaderLagMonitor monitor;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        pageCache = PageCache.create(Fixtures.tempDirectory(), 4096);
+        reader = new StreamingReader(pageCache, (data, pageNumber, position) -> {},
+                false, Idlers.staticPause(1, TimeUnit.MILLISECONDS));
+        final Counters counters = Counters.create(Fixtures.tempDirectory().resolve(Counters.FILE_NAME), 2);
+        lagBytes = counters.newCounter("lag");
+        slowConsumerEvents = counters.newCounter("slow");
+        monitor = new ReaderLagMonitor(10 * RECORD_FOOTPRINT, Long.MAX_VALUE, new ReaderLagListener()
+        {
+            @Override
+            public void onLagThresholdExceeded(final String readerName, final long lagBytes, final long lagRecords)
+            {
+                events.add("exceeded:" + readerName + ":" + lagBytes);
+            }
+
+            @Override
+            public void onLagRecovered(final String readerName, final long lagBytes, final long lagRecords)
+            {
+                events.add("recovered:" + readerName + ":" + lagBytes);
+            }
+        }, Idlers.staticPause(1, TimeUnit.MILLISECONDS));
+        monitor.registerReader("test-reader", reader, lagBytes, slowConsumerEvents);
+    }
+
+    @Test
+    public void shouldNotifyOnceWhenReaderExceedsThreshold() throws Exception
+    {
+        Fixtures.writeMessages(message, pageCache, 10);
+        monitor.checkLag();
+
+        assertThat(events.size(), is(0));
+        assertThat(lagBytes.get(), is(10L * RECORD_FOOTPRINT));
+
+        Fixtures.writeMessages(message, pageCache, 1);
+        monitor.checkLag();
+        Fixtures.writeMessages(message, pageCache, 1);
+        monitor.checkLag();
+
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0), is(equalTo("exceeded:test-reader:" + 11 * RECORD_FOOTPRINT)));
+        assertThat(slowConsumerEvents.get(), is(1L));
+        assertThat(lagBytes.get(), is(12L * RECORD_FOOTPRINT));
+    }
+
+    @Test
+    public void shouldNotifyWhenReaderRecovers() throws Exception
+    {
+        Fixtures.writeMessages(message, pageCache, 11);
+        monitor.checkLag();
+        reader.process();
+        monitor.checkLag();
+
+        assertThat(events.size(), is(2));
+        assertThat(events.get(1), is(equalTo("recovered:test-reader:0")));
+
+        Fixtures.writeMessages(message, pageCache, 11);
+        monitor.checkLag();
+
+        assertThat(events.size(), is(3));
+        assertThat(slowConsumerEvents.get(), is(2L));
+    }
+
+    @Test
+    public void shouldNotRecoverUntilLagIsBelowHalfOfThreshold() throws Exception
+    {
+        final StreamingReader partialReader = new StreamingReader(pageCache, (data, pageNumber, position) -> {},
+                false, Idlers.staticPause(1, TimeUnit.MILLISECONDS));
+        final ReaderLagMonitor recordMonitor = new ReaderLagMonitor(Long.MAX_VALUE, 10,
+                (readerName, lag, lagRecords) -> events.add("exceeded:" + lagRecords),
+                Idlers.staticPause(1, TimeUnit.MILLISECONDS));
+        recordMonitor.registerReader("partial", partialReader, null, null);
+
+        Fixtures.writeMessages(message, pageCache, 11);
+        recordMonitor.checkLag();
+        partialReader.process();
+        Fixtures.writeMessages(message, pageCache, 6);
+        recordMonitor.checkLag();
+        Fixtures.writeMessages(message, pageCache, 5);
+        recordMonitor.checkLag();
+
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0), is(equalTo("exceeded:11")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidThreshold() throws Exception
+    {
+        new ReaderLagMonitor(0, 10, (readerName, lag, lagRecords) -> {}, Idlers.busy());
+    }
+}
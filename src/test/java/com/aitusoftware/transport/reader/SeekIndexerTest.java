@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 - 2018 Aitu Software Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aitusoftware.transport.reader;
+
+import com.aitusoftware.transport.Fixtures;
+import com.aitusoftware.transport.buffer.PageCache;
+import com.aitusoftware.transport.buffer.SeekIndex;
+import com.aitusoftware.transport.threads.Idlers;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SeekIndexerTest
+{
+    private static final int MESSAGE_COUNT = 500;
+    private static final int RECORD_INTERVAL = 16;
+    private final ByteBuffer message = ByteBuffer.allocate(337);
+    private PageCache pageCache;
+    private SeekIndex seekIndex;
+    private long timestamp = 1_000L;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        pageCache = PageCache.create(Fixtures.tempDirectory(), 4096);
+        seekIndex = SeekIndex.forPageCache(pageCache.getPath());
+    }
+
+    @Test
+    public void shouldIndexEveryNthRecord() throws Exception
+    {
+        Fixtures.writeMessages(message, pageCache, MESSAGE_COUNT);
+
+        index(0L);
+
+        assertThat(seekIndex.getEntryCount(), is((MESSAGE_COUNT + RECORD_INTERVAL - 1) / RECORD_INTERVAL));
+        assertThat(seekIndex.sequenceAt(3), is(3L * RECORD_INTERVAL));
+    }
+
+    @Test
+    public void shouldStartReaderFromSequence() throws Exception
+    {
+        Fixtures.writeMessages(message, pageCache, MESSAGE_COUNT);
+        index(0L);
+
+        final int startSequence = 271;
+        final ValidatingRecordHandler handler = new ValidatingRecordHandler(startSequence);
+        StreamingReader.fromSequence(pageCache, seekIndex, startSequence, handler, false,
+                Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        assertThat(handler.messageCount, is(MESSAGE_COUNT - startSequence));
+    }
+
+    @Test
+    public void shouldStartReaderFromTimestamp() throws Exception
+    {
+        Fixtures.writeMessages(message, pageCache, MESSAGE_COUNT);
+        index(0L);
+
+        final int entry = 7;
+        final ValidatingRecordHandler handler = new ValidatingRecordHandler(entry * RECORD_INTERVAL);
+        StreamingReader.fromTimestamp(pageCache, seekIndex, seekIndex.timestampAt(entry), handler, false,
+                Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+
+        assertThat(handler.messageCount, is(MESSAGE_COUNT - entry * RECORD_INTERVAL));
+    }
+
+    @Test
+    public void shouldResumeIndexingFromLastEntry() throws Exception
+    {
+        Fixtures.writeMessages(message, pageCache, MESSAGE_COUNT);
+        index(0L);
+        final int lastEntry = seekIndex.getEntryCount() - 1;
+        Fixtures.writeMessages(message, pageCache, MESSAGE_COUNT);
+
+        new StreamingReader(pageCache,
+                new SeekIndexer(seekIndex, RECORD_INTERVAL, () -> timestamp++, seekIndex.sequenceAt(lastEntry)),
+                false, Idlers.staticPause(1, TimeUnit.MILLISECONDS),
+                ReaderCursor.transientCursor(seekIndex.pageNumberAt(lastEntry), seekIndex.positionAt(lastEntry)))
+                .process();
+
+        assertThat(seekIndex.getEntryCount(), is((2 * MESSAGE_COUNT + RECORD_INTERVAL - 1) / RECORD_INTERVAL));
+    }
+
+    private void index(final long initialSequence)
+    {
+        new StreamingReader(pageCache,
+                new SeekIndexer(seekIndex, RECORD_INTERVAL, () -> timestamp++, initialSequence),
+                false, Idlers.staticPause(1, TimeUnit.MILLISECONDS)).process();
+    }
+
+    private static final class ValidatingRecordHandler implements RecordHandler
+    {
+        private final int startSequence;
+        private int messageCount;
+
+        ValidatingRecordHandler(final int startSequence)
+        {
+            this.startSequence = startSequence;
+        }
+
+        @Override
+        public void onRecord(final ByteBuffer data, final int pageNumber, final int position)
+        {
+            assertTrue("Bad message at: " + (startSequence + messageCount),
+                    Fixtures.isValidMessage(data, startSequence + messageCount));
+            messageCount++;
+        }
+    }
+}
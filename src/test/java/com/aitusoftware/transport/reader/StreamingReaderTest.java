@@ -22,6 +22,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -61,6 +62,89 @@ public class StreamingReaderTest
         assertThat(handler.messageCount, is(MESSAGE_COUNT));
     }
 
+    @Test
+    public void shouldResumeFromDurableCursor() throws Exception
+    {
+        final Path cursorDirectory = Fixtures.tempDirectory();
+        Fixtures.writeMessages(message, pageCache, MESSAGE_COUNT);
+
+        new StreamingReader(pageCache, handler, false, Idlers.staticPause(1, TimeUnit.MILLISECONDS),
+                ReaderCursor.forReader(cursorDirectory, "test-reader")).process();
+
+        assertThat(handler.messageCount, is(MESSAGE_COUNT));
+
+        final int additionalMessageCount = 17;
+        Fixtures.writeMessages(message, pageCache, additionalMessageCount);
+
+        final ReaderCursor cursor = ReaderCursor.forReader(cursorDirectory, "test-reader");
+        final StreamingReader resumedReader = new StreamingReader(pageCache, (data, pageNumber, position) -> {},
+                false, Idlers.staticPause(1, TimeUnit.MILLISECONDS), cursor);
+        resumedReader.process();
+
+        assertThat(resumedReader.getMessageCount(), is((long) additionalMessageCount));
+        assertThat(cursor.getPageNumber(), is(resumedReader.getPageNumber()));
+    }
+
+    @Test
+    public void shouldNotifyHandlerWhenCaughtUp() throws Exception
+    {
+        final int[] caughtUpCount = new int[1];
+        final StreamingReader reader = new StreamingReader(pageCache, new RecordHandler()
+        {
+            @Override
+            public void onRecord(final ByteBuffer data, final int pageNumber, final int position)
+            {
+                // no-op
+            }
+
+            @Override
+            public void onCaughtUp()
+            {
+                caughtUpCount[0]++;
+            }
+        }, false, Idlers.staticPause(1, TimeUnit.MILLISECONDS));
+
+        reader.process();
+        assertThat(caughtUpCount[0], is(0));
+
+        Fixtures.writeMessages(message, pageCache, MESSAGE_COUNT);
+        reader.process();
+        reader.process();
+
+        assertThat(caughtUpCount[0], is(1));
+    }
+
+    @Test
+    public void shouldReportLag() throws Exception
+    {
+        final StreamingReader reader = createReader();
+        Fixtures.writeMessages(message, pageCache, MESSAGE_COUNT);
+
+        assertThat(reader.getLag(), is(pageCache.estimateTotalLength()));
+
+        reader.process();
+
+        assertThat(reader.getLag(), is(0L));
+    }
+
+    @Test
+    public void shouldEstimateLagInRecords() throws Exception
+    {
+        final StreamingReader reader = createReader();
+        Fixtures.writeMessages(message, pageCache, 100);
+
+        // before any records are read, records are assumed to occupy the minimum space
+        assertTrue(reader.getLagRecords() > 100L);
+
+        reader.process();
+        assertThat(reader.getLagRecords(), is(0L));
+
+        Fixtures.writeMessages(message, pageCache, 50);
+        final long lagRecords = reader.getLagRecords();
+
+        assertTrue("lag: " + lagRecords, lagRecords >= 50L && lagRecords <= 52L);
+    }
+
     private StreamingReader createReader()
     {
         return new StreamingReader(pageCache, handler, false, Idlers.staticPause(1, TimeUnit.MILLISECONDS));